@@ -0,0 +1,90 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONStringer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.cosmocode.json.JSON;
+import de.cosmocode.json.benchmark.Payloads.Shape;
+import de.cosmocode.json.benchmark.Payloads.Size;
+
+/**
+ * Measures embedding pre-rendered json using
+ * {@link org.json.extension.JSONConstructor#plain(String)}.
+ */
+@SuppressWarnings("deprecation")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructorBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    private Size size;
+
+    @Param({"FLAT", "NESTED"})
+    private Shape shape;
+
+    private String fragment;
+
+    /**
+     * Renders the payload.
+     */
+    @Setup
+    public void setUp() {
+        fragment = Payloads.create(size, shape).toString();
+    }
+
+    /**
+     * Embeds the fragment using a {@link de.cosmocode.rendering.Renderer} based constructor.
+     *
+     * @return the output
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public String rendererConstructor() throws JSONException {
+        return JSON.newConstructor().array().plain(fragment).endArray().toString();
+    }
+
+    /**
+     * Embeds the fragment using a {@link org.json.JSONWriter} based constructor.
+     *
+     * @return the output
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public String writerConstructor() throws JSONException {
+        return JSON.asJSONConstructor(new JSONStringer()).array().plain(fragment).endArray().toString();
+    }
+
+}
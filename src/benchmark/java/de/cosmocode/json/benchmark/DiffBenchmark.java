@@ -0,0 +1,204 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.diff.JSONDiff;
+import org.json.diff.JSONDiffEngine;
+import org.json.diff.JSONHashCache;
+import org.json.diff.JSONDiffResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.cosmocode.json.benchmark.Payloads.Shape;
+import de.cosmocode.json.benchmark.Payloads.Size;
+
+/**
+ * Measures {@link JSONDiff}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBenchmark {
+
+    /**
+     * Every n-th scalar will be modified.
+     */
+    private static final int MODIFICATION_INTERVAL = 50;
+
+    /**
+     * Minimum number of entries of objects and arrays compared in parallel.
+     */
+    private static final int THRESHOLD = 1024;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    private Size size;
+
+    @Param({"FLAT", "NESTED"})
+    private Shape shape;
+
+    private JSONObject oldJson;
+
+    private JSONObject newJson;
+
+    private ExecutorService executor;
+
+    private JSONDiffEngine parallel;
+
+    private JSONDiffEngine hashed;
+
+    /**
+     * Creates the payloads and the parallel engine.
+     */
+    @Setup
+    public void setUp() {
+        oldJson = Payloads.create(size, shape);
+        newJson = Payloads.modify(oldJson, MODIFICATION_INTERVAL);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        parallel = JSONDiffEngine.getDefault().parallel(executor, THRESHOLD);
+        hashed = JSONDiffEngine.getDefault().hashedBy(new JSONHashCache());
+    }
+
+    /**
+     * Stops the executor used by the parallel engine.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Measures {@link JSONDiff#getDifferences()}.
+     *
+     * @return the differences
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONObject getDifferences() throws JSONException {
+        return new JSONDiff(oldJson, newJson).getDifferences();
+    }
+
+    /**
+     * Measures {@link JSONDiff#getUpdated()}.
+     *
+     * @return the updated pairs
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONObject getUpdated() throws JSONException {
+        return new JSONDiff(oldJson, newJson).getUpdated();
+    }
+
+    /**
+     * Measures {@link JSONDiff#getUpdatedExt()}.
+     *
+     * @return the updated pairs
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONObject getUpdatedExt() throws JSONException {
+        return new JSONDiff(oldJson, newJson).getUpdatedExt();
+    }
+
+    /**
+     * Measures {@link JSONDiff#getInserted()}.
+     *
+     * @return the inserted pairs
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONObject getInserted() throws JSONException {
+        return new JSONDiff(oldJson, newJson).getInserted();
+    }
+
+    /**
+     * Measures {@link JSONDiff#getDeleted()}.
+     *
+     * @return the deleted pairs
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONObject getDeleted() throws JSONException {
+        return new JSONDiff(oldJson, newJson).getDeleted();
+    }
+
+    /**
+     * Measures {@link JSONDiff#getResult()}.
+     *
+     * @return the result
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONDiffResult getResult() throws JSONException {
+        return new JSONDiff(oldJson, newJson).getResult();
+    }
+
+    /**
+     * Measures {@link JSONDiff#getPatch()}.
+     *
+     * @return the patch
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONArray getPatch() throws JSONException {
+        return new JSONDiff(oldJson, newJson).getPatch();
+    }
+
+    /**
+     * Measures {@link JSONDiffEngine#getResult(JSONObject, JSONObject)} using
+     * a {@link JSONDiffEngine#parallel(ExecutorService, int) parallel} engine.
+     *
+     * @return the result
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONDiffResult getResultParallel() throws JSONException {
+        return parallel.getResult(oldJson, newJson);
+    }
+
+    /**
+     * Measures repeated {@link JSONDiffEngine#getResult(JSONObject, JSONObject)} calls
+     * using a {@link JSONDiffEngine#hashedBy(JSONHashCache) hashing} engine.
+     *
+     * @return the result
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public JSONDiffResult getResultHashed() throws JSONException {
+        return hashed.getResult(oldJson, newJson);
+    }
+
+}
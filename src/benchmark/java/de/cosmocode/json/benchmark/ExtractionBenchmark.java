@@ -0,0 +1,122 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.json.JSON;
+import de.cosmocode.json.MappedJson;
+import de.cosmocode.json.benchmark.Payloads.Shape;
+import de.cosmocode.json.benchmark.Payloads.Size;
+
+/**
+ * Measures extracting a single value of a json text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    private Size size;
+
+    @Param({"FLAT", "NESTED"})
+    private Shape shape;
+
+    private String text;
+
+    private String key;
+
+    private ByteBuffer bytes;
+
+    /**
+     * Renders the payload.
+     */
+    @Setup
+    public void setUp() {
+        final JSONObject object = Payloads.create(size, shape);
+        text = object.toString();
+        key = object.keys().next().toString();
+        final byte[] encoded = text.getBytes(Charsets.UTF_8);
+        bytes = ByteBuffer.allocateDirect(encoded.length);
+        bytes.put(encoded).flip();
+    }
+
+    /**
+     * Parses the complete text using {@link JSONObject#JSONObject(String)}.
+     *
+     * @return the extracted value
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public Object parse() throws JSONException {
+        return new JSONObject(text).opt(key);
+    }
+
+    /**
+     * Indexes the text lazily using {@link JSON#asMap(CharSequence)}.
+     *
+     * @return the extracted value
+     */
+    @Benchmark
+    public Object lazy() {
+        return JSON.asMap(text).get(key);
+    }
+
+    /**
+     * Decodes the utf-8 encoded text into a string and indexes it lazily.
+     *
+     * @return the extracted value
+     */
+    @Benchmark
+    public Object decoded() {
+        final byte[] copy = new byte[bytes.remaining()];
+        bytes.duplicate().get(copy);
+        return JSON.asMap(new String(copy, Charsets.UTF_8)).get(key);
+    }
+
+    /**
+     * Indexes the utf-8 encoded text in a direct buffer lazily using {@link MappedJson#asMap(ByteBuffer)}.
+     *
+     * @return the extracted value
+     */
+    @Benchmark
+    public Object mapped() {
+        return MappedJson.asMap(bytes).get(key);
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.cosmocode.json.JSON;
+
+/**
+ * Measures positional inserts into the list view returned by {@link JSON#asList(JSONArray)}.
+ * These don't depend on a payload, hence they are kept apart from {@link ViewBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListInsertionBenchmark {
+
+    private static final int ADDS = 1000;
+
+    /**
+     * Adds {@value #ADDS} elements at the head of an empty list view.
+     *
+     * @return the list
+     */
+    @Benchmark
+    public List<Object> addAtHead() {
+        final List<Object> list = JSON.asList(new JSONArray());
+        for (int i = 0; i < ADDS; i++) {
+            list.add(0, Integer.valueOf(i));
+        }
+        return list;
+    }
+
+    /**
+     * Adds {@value #ADDS} elements in the middle of an empty list view.
+     *
+     * @return the list
+     */
+    @Benchmark
+    public List<Object> addInMiddle() {
+        final List<Object> list = JSON.asList(new JSONArray());
+        for (int i = 0; i < ADDS; i++) {
+            list.add(list.size() / 2, Integer.valueOf(i));
+        }
+        return list;
+    }
+
+}
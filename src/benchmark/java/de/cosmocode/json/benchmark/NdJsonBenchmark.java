@@ -0,0 +1,165 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+import de.cosmocode.collections.utility.UtilityMap;
+import de.cosmocode.json.JSON;
+import de.cosmocode.json.NdJson;
+import de.cosmocode.json.NdJsonWriter;
+import de.cosmocode.json.benchmark.Payloads.Shape;
+import de.cosmocode.json.benchmark.Payloads.Size;
+
+/**
+ * Measures reading and writing newline delimited json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NdJsonBenchmark {
+
+    @Param({"1000", "100000"})
+    private int count;
+
+    private List<JSONObject> records;
+
+    private String[] lines;
+
+    private ByteBuffer buffer;
+
+    private ExecutorService executor;
+
+    /**
+     * Creates the records and their encoded form.
+     *
+     * @throws IOException should not happen
+     */
+    @Setup
+    public void setUp() throws IOException {
+        records = Lists.newArrayListWithCapacity(count);
+        lines = new String[count];
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final NdJsonWriter writer = NdJson.newWriter(stream);
+        for (int i = 0; i < count; i++) {
+            final JSONObject record = Payloads.create(Size.SMALL, Shape.NESTED);
+            records.add(record);
+            lines[i] = record.toString();
+            writer.write(record);
+        }
+        writer.close();
+        final byte[] bytes = stream.toByteArray();
+        buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stops the executor.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Decodes every line using {@link JSONObject#JSONObject(String)} on a single thread.
+     *
+     * @return the records
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public List<UtilityMap<String, Object>> readLines() throws JSONException {
+        final List<UtilityMap<String, Object>> result = Lists.newArrayListWithCapacity(lines.length);
+        for (String line : lines) {
+            result.add(JSON.asMap(new JSONObject(line)));
+        }
+        return result;
+    }
+
+    /**
+     * Decodes all records using {@link NdJson#read(ByteBuffer, ExecutorService)}.
+     *
+     * @return the records
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public List<UtilityMap<String, Object>> read() throws JSONException {
+        return NdJson.read(buffer, executor);
+    }
+
+    /**
+     * Writes all records using {@link NdJsonWriter}.
+     *
+     * @return the number of bytes written
+     * @throws IOException should not happen
+     */
+    @Benchmark
+    public int write() throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream(buffer.capacity());
+        final NdJsonWriter writer = NdJson.newWriter(stream);
+        for (JSONObject record : records) {
+            writer.write(record);
+        }
+        writer.close();
+        return stream.size();
+    }
+
+    /**
+     * Writes all records using {@link JSONObject#toString()}.
+     *
+     * @return the number of bytes written
+     * @throws IOException should not happen
+     */
+    @Benchmark
+    public int writeLines() throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream(buffer.capacity());
+        for (JSONObject record : records) {
+            stream.write(record.toString().getBytes(Charsets.UTF_8));
+            stream.write('\n');
+        }
+        return stream.size();
+    }
+
+}
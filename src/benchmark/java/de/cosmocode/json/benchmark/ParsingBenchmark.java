@@ -0,0 +1,155 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.json.JSON;
+import de.cosmocode.json.JsonFeedParser;
+import de.cosmocode.json.JsonReader;
+import de.cosmocode.json.JsonTreeRenderer;
+import de.cosmocode.json.JsonUtf8Renderer;
+import de.cosmocode.json.KeyInterner;
+import de.cosmocode.json.benchmark.Payloads.Shape;
+import de.cosmocode.json.benchmark.Payloads.Size;
+
+/**
+ * Measures parsing utf-8 encoded json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    private Size size;
+
+    @Param({"FLAT", "NESTED"})
+    private Shape shape;
+
+    private byte[] bytes;
+
+    private KeyInterner interner;
+
+    /**
+     * Renders the payload.
+     */
+    @Setup
+    public void setUp() {
+        bytes = Payloads.create(size, shape).toString().getBytes(Charsets.UTF_8);
+        interner = new KeyInterner();
+    }
+
+    /**
+     * Decodes the bytes into a string and parses it using {@link JSONObject#JSONObject(String)}.
+     *
+     * @return the parsed object
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public Object jsonObject() throws JSONException {
+        return new JSONObject(new String(bytes, Charsets.UTF_8));
+    }
+
+    /**
+     * Streams the bytes into a {@link JsonTreeRenderer}.
+     *
+     * @return the parsed object
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public Object tree() throws IOException, JSONException {
+        final JsonReader reader = new JsonReader(ByteBuffer.wrap(bytes));
+        final JsonTreeRenderer renderer = JSON.newTreeRenderer();
+        reader.next();
+        reader.renderValue(renderer);
+        return renderer.build();
+    }
+
+    /**
+     * Feeds the bytes in chunks of 1 KiB into a {@link JsonFeedParser} building a tree.
+     *
+     * @return the parsed object
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public Object feed() throws JSONException {
+        final JsonFeedParser parser = new JsonFeedParser();
+        for (int i = 0; i < bytes.length; i += 1024) {
+            parser.feed(ByteBuffer.wrap(bytes, i, Math.min(1024, bytes.length - i)));
+        }
+        return parser.finish();
+    }
+
+    /**
+     * Like {@link #feed()}, but shares keys between all parsed trees using a {@link KeyInterner}.
+     *
+     * @return the parsed object
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public Object interned() throws JSONException {
+        final JsonFeedParser parser = new JsonFeedParser(interner);
+        for (int i = 0; i < bytes.length; i += 1024) {
+            parser.feed(ByteBuffer.wrap(bytes, i, Math.min(1024, bytes.length - i)));
+        }
+        return parser.finish();
+    }
+
+    /**
+     * Streams the bytes into a {@link JsonUtf8Renderer}, without building a tree.
+     *
+     * @return the rendered size
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Benchmark
+    public int transform() throws IOException, JSONException {
+        final JsonReader reader = new JsonReader(ByteBuffer.wrap(bytes));
+        final JsonUtf8Renderer renderer = JsonUtf8Renderer.acquire();
+        try {
+            reader.next();
+            reader.renderValue(renderer);
+            return renderer.size();
+        } finally {
+            renderer.release();
+        }
+    }
+
+}
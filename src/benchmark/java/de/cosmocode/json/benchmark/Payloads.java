@@ -0,0 +1,219 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Deterministic json fixtures used by all benchmarks.
+ */
+public final class Payloads {
+
+    /**
+     * Number of children per nested object.
+     */
+    private static final int FAN_OUT = 4;
+
+    private static final int SCALARS_PER_OBJECT = 4;
+
+    private static final int ARRAY_LENGTH = 4;
+
+    private static final long SEED = 42L;
+
+    /**
+     * The size of a payload in nodes.
+     */
+    public enum Size {
+
+        SMALL(16),
+
+        MEDIUM(1024),
+
+        LARGE(100000);
+
+        private final int nodes;
+
+        private Size(int nodes) {
+            this.nodes = nodes;
+        }
+
+        public int getNodes() {
+            return nodes;
+        }
+
+    }
+
+    /**
+     * The shape of a payload.
+     */
+    public enum Shape {
+
+        /**
+         * One object containing only scalars and small arrays.
+         */
+        FLAT,
+
+        /**
+         * A tree of objects, each having a few scalars and {@link Payloads#FAN_OUT} children.
+         */
+        NESTED;
+
+    }
+
+    private Payloads() {
+
+    }
+
+    /**
+     * Creates a new payload.
+     *
+     * @param size the approximate number of nodes
+     * @param shape the shape
+     * @return a new json object
+     */
+    public static JSONObject create(Size size, Shape shape) {
+        final Random random = new Random(SEED);
+        try {
+            switch (shape) {
+                case FLAT: {
+                    return flat(random, size.getNodes());
+                }
+                case NESTED: {
+                    return nested(random, size.getNodes());
+                }
+                default: {
+                    throw new IllegalArgumentException("Unknown shape " + shape);
+                }
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JSONObject flat(Random random, int nodes) throws JSONException {
+        final JSONObject object = new JSONObject();
+        for (int i = 0; i < nodes; i++) {
+            object.put("key" + i, i % 8 == 0 ? array(random) : scalar(random, i));
+        }
+        return object;
+    }
+
+    private static JSONObject nested(Random random, int nodes) throws JSONException {
+        final JSONObject object = new JSONObject();
+        final int scalars = Math.min(SCALARS_PER_OBJECT, nodes);
+        for (int i = 0; i < scalars; i++) {
+            object.put("field" + i, scalar(random, i));
+        }
+        // split the remaining nodes evenly, resulting in a depth of log(nodes)
+        final int remaining = nodes - scalars;
+        final int children = Math.min(FAN_OUT, remaining);
+        for (int i = 0; i < children; i++) {
+            final int share = remaining / children + (i < remaining % children ? 1 : 0);
+            object.put("child" + i, nested(random, share - 1));
+        }
+        return object;
+    }
+
+    private static JSONArray array(Random random) throws JSONException {
+        final JSONArray array = new JSONArray();
+        for (int i = 0; i < ARRAY_LENGTH; i++) {
+            array.put(scalar(random, i));
+        }
+        return array;
+    }
+
+    private static Object scalar(Random random, int index) {
+        switch (index % 4) {
+            case 0: {
+                return Long.valueOf(random.nextLong());
+            }
+            case 1: {
+                return Double.valueOf(random.nextDouble());
+            }
+            case 2: {
+                return Boolean.valueOf(random.nextBoolean());
+            }
+            default: {
+                return "value-" + random.nextInt(1000) + " \"quoted\"";
+            }
+        }
+    }
+
+    /**
+     * Creates a deep copy of the given object.
+     *
+     * @param object the object to copy
+     * @return a deep copy
+     */
+    public static JSONObject copy(JSONObject object) {
+        try {
+            return new JSONObject(object.toString());
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a deep copy of the given object and modifies every n-th scalar
+     * value, removes every n-th key and adds a new key to every modified object.
+     *
+     * @param object the source object
+     * @param n the modification interval
+     * @return a modified deep copy
+     */
+    public static JSONObject modify(JSONObject object, int n) {
+        final JSONObject copy = copy(object);
+        try {
+            modify(copy, n, new int[1]);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return copy;
+    }
+
+    private static void modify(JSONObject object, int n, int[] counter) throws JSONException {
+        final Object[] keys = new Object[object.length()];
+        final Iterator<?> iterator = object.keys();
+        for (int i = 0; iterator.hasNext(); i++) {
+            keys[i] = iterator.next();
+        }
+        boolean modified = false;
+        for (Object k : keys) {
+            final String key = k.toString();
+            final Object value = object.get(key);
+            if (value instanceof JSONObject) {
+                modify(JSONObject.class.cast(value), n, counter);
+            } else if (++counter[0] % n == 0) {
+                modified = true;
+                if (counter[0] % (2 * n) == 0) {
+                    object.remove(key);
+                } else {
+                    object.put(key, "modified-" + counter[0]);
+                }
+            }
+        }
+        if (modified) {
+            object.put("added" + counter[0], counter[0]);
+        }
+    }
+
+}
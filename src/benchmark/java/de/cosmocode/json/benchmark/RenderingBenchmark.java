@@ -0,0 +1,129 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.cosmocode.json.JSON;
+import de.cosmocode.json.JsonRenderer;
+import de.cosmocode.json.JsonUtf8Renderer;
+import de.cosmocode.json.benchmark.Payloads.Shape;
+import de.cosmocode.json.benchmark.Payloads.Size;
+
+/**
+ * Measures the throughput of the json {@link de.cosmocode.rendering.Renderer}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingBenchmark {
+
+    /**
+     * A writer which discards everything.
+     */
+    private static final Writer NULL_WRITER = new Writer() {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+        }
+
+        @Override
+        public void close() throws IOException {
+
+        }
+
+    };
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    private Size size;
+
+    @Param({"FLAT", "NESTED"})
+    private Shape shape;
+
+    private Map<String, Object> payload;
+
+    /**
+     * Creates the payload.
+     */
+    @Setup
+    public void setUp() {
+        final JSONObject object = Payloads.create(size, shape);
+        payload = JSON.asMap(object);
+    }
+
+    /**
+     * Renders using {@link JsonRenderer}.
+     *
+     * @return the output
+     */
+    @Benchmark
+    public Object jsonRenderer() {
+        return new JsonRenderer().value(payload).build();
+    }
+
+    /**
+     * Renders using {@link JSON#newRenderer(Writer)} and discards the output.
+     *
+     * @return the writer
+     */
+    @Benchmark
+    public Object streamingRenderer() {
+        return JSON.newRenderer(NULL_WRITER).value(payload).build();
+    }
+
+    /**
+     * Renders using a pooled {@link JsonUtf8Renderer}.
+     *
+     * @return the output size
+     */
+    @Benchmark
+    public int utf8Renderer() {
+        final JsonUtf8Renderer renderer = JsonUtf8Renderer.acquire();
+        try {
+            renderer.value(payload);
+            return renderer.size();
+        } finally {
+            renderer.release();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.cosmocode.json.EntryVisitor;
+import de.cosmocode.json.JSON;
+import de.cosmocode.json.benchmark.Payloads.Shape;
+import de.cosmocode.json.benchmark.Payloads.Size;
+
+/**
+ * Measures traversal and modification of the views returned
+ * by {@link JSON#asMap(JSONObject)} and {@link JSON#asList(JSONArray)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    private Size size;
+
+    @Param({"FLAT", "NESTED"})
+    private Shape shape;
+
+    private JSONObject object;
+
+    private Map<String, Object> map;
+
+    /**
+     * Creates the payload.
+     */
+    @Setup
+    public void setUp() {
+        object = Payloads.create(size, shape);
+        map = JSON.asMap(object);
+    }
+
+    /**
+     * Traverses the complete payload using the map and list views.
+     *
+     * @param hole the blackhole consuming all values
+     */
+    @Benchmark
+    public void traverse(Blackhole hole) {
+        traverse(JSON.asMap(object), hole);
+    }
+
+    private void traverse(Object value, Blackhole hole) {
+        if (value instanceof Map<?, ?>) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                hole.consume(entry.getKey());
+                traverse(entry.getValue(), hole);
+            }
+        } else if (value instanceof List<?>) {
+            for (Object element : (List<?>) value) {
+                traverse(element, hole);
+            }
+        } else {
+            hole.consume(value);
+        }
+    }
+
+    /**
+     * Traverses the complete payload using {@link JSON#forEach(Map, EntryVisitor)}
+     * for maps.
+     *
+     * @param hole the blackhole consuming all values
+     */
+    @Benchmark
+    public void visit(Blackhole hole) {
+        visit(JSON.asMap(object), new Visitor(hole));
+    }
+
+    private static void visit(Object value, Visitor visitor) {
+        if (value instanceof Map<?, ?>) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> map = (Map<String, Object>) value;
+            JSON.forEach(map, visitor);
+        } else if (value instanceof List<?>) {
+            for (Object element : (List<?>) value) {
+                visit(element, visitor);
+            }
+        } else {
+            visitor.hole.consume(value);
+        }
+    }
+
+    /**
+     * Consumes all visited pairs recursively.
+     */
+    private static final class Visitor implements EntryVisitor<String, Object> {
+
+        private final Blackhole hole;
+
+        public Visitor(Blackhole hole) {
+            this.hole = hole;
+        }
+
+        @Override
+        public void visit(String key, Object value) {
+            hole.consume(key);
+            ViewBenchmark.visit(value, this);
+        }
+
+    }
+
+    /**
+     * Repeatedly navigates the first path of nested objects, using the same view.
+     *
+     * @return the innermost value
+     */
+    @Benchmark
+    public Object navigate() {
+        Object value = map;
+        while (value instanceof Map<?, ?>) {
+            value = ((Map<?, ?>) value).get("child0");
+        }
+        return value;
+    }
+
+}
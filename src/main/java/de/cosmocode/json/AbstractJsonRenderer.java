@@ -0,0 +1,422 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import org.json.JSONException;
+import org.json.JSONWriter;
+import org.json.extension.JSONConstructor;
+import org.json.extension.JSONEncoder;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.rendering.AbstractRenderer;
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Abstract base class for json {@link Renderer}s which produce
+ * the json text on their own instead of delegating to a {@link JSONWriter}.
+ *
+ * <p>
+ *   Nesting and separators are handled by this class, following the same
+ *   rules as {@link JSONWriter}. Subclasses only have to provide the
+ *   low level write operations for their specific sink.
+ * </p>
+ *
+ * <p>
+ *   <b>Note:</b> Unlike {@link JSONWriter}, duplicate keys are not detected.
+ * </p>
+ *
+ * @since 2.2
+ */
+@SuppressWarnings("deprecation")
+abstract class AbstractJsonRenderer extends AbstractRenderer implements RawRenderer {
+
+    private static final char INIT = 'i';
+    private static final char ARRAY = 'a';
+    private static final char KEY = 'k';
+    private static final char OBJECT = 'o';
+    private static final char DONE = 'd';
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Doubles below this bound are printed in plain notation by {@link Double#toString(double)}.
+     */
+    private static final double PLAIN_BOUND = 1e7;
+
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+    private final JSONConstructor adapter = JSON.asConstructor(this);
+
+    /**
+     * The modes of all enclosing structures.
+     */
+    private char[] stack = new char[INITIAL_DEPTH];
+
+    private int top;
+
+    private char mode = INIT;
+
+    private boolean comma;
+
+    /**
+     * Writes a single character which does not need escaping.
+     *
+     * @param c the character to write
+     * @throws RenderingException if writing failed
+     */
+    protected abstract void write(char c) throws RenderingException;
+
+    /**
+     * Writes a string consisting only of ascii characters
+     * which do not need escaping, e.g. numbers or literals.
+     *
+     * @param s the string to write
+     * @throws RenderingException if writing failed
+     */
+    protected abstract void write(String s) throws RenderingException;
+
+    /**
+     * Writes the given value as a quoted and escaped json string. The default
+     * implementation delegates every character to {@link #write(char)}. Subclasses
+     * are encouraged to override this method with a faster version.
+     *
+     * @param s the value to write
+     * @throws RenderingException if writing failed
+     */
+    protected void writeQuoted(CharSequence s) throws RenderingException {
+        write('"');
+        char previous = 0;
+        final int length = s.length();
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (isEscaped(c, previous)) {
+                writeEscape(c);
+            } else {
+                write(c);
+            }
+            previous = c;
+        }
+        write('"');
+    }
+
+    /**
+     * Writes the given pre-rendered json verbatim. The default implementation
+     * delegates every character to {@link #write(char)}.
+     *
+     * @param json the json to write
+     * @throws RenderingException if writing failed
+     */
+    protected void writeRaw(CharSequence json) throws RenderingException {
+        final int length = json.length();
+        for (int i = 0; i < length; i++) {
+            write(json.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the given utf-8 encoded json verbatim. The default implementation
+     * decodes json and delegates to {@link #writeRaw(CharSequence)}.
+     *
+     * @param json the utf-8 encoded json to write
+     * @throws RenderingException if writing failed
+     */
+    protected void writeUtf8(byte[] json) throws RenderingException {
+        writeRaw(new String(json, Charsets.UTF_8));
+    }
+
+    /**
+     * Writes the given long value. The default implementation uses
+     * {@link Long#toString(long)}.
+     *
+     * @param value the value to write
+     * @throws RenderingException if writing failed
+     */
+    protected void writeLong(long value) throws RenderingException {
+        write(Long.toString(value));
+    }
+
+    /**
+     * Checks whether the given character has to be escaped, using the same rules
+     * as {@link org.json.JSONObject#quote(String)}.
+     *
+     * @param c the character in question
+     * @param previous the character preceding c, or 0 if there is none
+     * @return true if c has to be escaped, false otherwise
+     */
+    static boolean isEscaped(char c, char previous) {
+        return c < ' ' || c == '"' || c == '\\' || (c == '/' && previous == '<') ||
+            (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100');
+    }
+
+    /**
+     * Writes the escape sequence of the given character.
+     *
+     * @param c the character to escape
+     * @throws RenderingException if writing failed
+     */
+    protected final void writeEscape(char c) throws RenderingException {
+        write('\\');
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/': {
+                write(c);
+                break;
+            }
+            case '\b': {
+                write('b');
+                break;
+            }
+            case '\t': {
+                write('t');
+                break;
+            }
+            case '\n': {
+                write('n');
+                break;
+            }
+            case '\f': {
+                write('f');
+                break;
+            }
+            case '\r': {
+                write('r');
+                break;
+            }
+            default: {
+                write('u');
+                write(HEX[(c >> 12) & 0xF]);
+                write(HEX[(c >> 8) & 0xF]);
+                write(HEX[(c >> 4) & 0xF]);
+                write(HEX[c & 0xF]);
+            }
+        }
+    }
+
+    /**
+     * Resets the nesting state, allowing this renderer
+     * to start a new document.
+     */
+    void reset() {
+        top = 0;
+        mode = INIT;
+        comma = false;
+    }
+
+    /**
+     * Terminates the current document with a line feed and resets the nesting
+     * state, keeping all output. Used to render newline delimited json.
+     *
+     * @throws RenderingException if the current document is incomplete
+     */
+    final void endLine() throws RenderingException {
+        if (mode != DONE) throw new RenderingException("Incomplete document");
+        write('\n');
+        mode = INIT;
+    }
+
+    private void push(char parent) {
+        if (top == stack.length) {
+            final char[] copy = new char[stack.length * 2];
+            System.arraycopy(stack, 0, copy, 0, top);
+            stack = copy;
+        }
+        stack[top++] = parent;
+    }
+
+    private void open(char c, char next, String message) {
+        switch (mode) {
+            case ARRAY: {
+                if (comma) write(',');
+                break;
+            }
+            case OBJECT: {
+                mode = KEY;
+                break;
+            }
+            case INIT: {
+                mode = DONE;
+                break;
+            }
+            default: {
+                throw new RenderingException(message);
+            }
+        }
+        push(mode);
+        write(c);
+        mode = next;
+        comma = false;
+    }
+
+    private void close(char expected, char c, String message) {
+        if (mode != expected) throw new RenderingException(message);
+        write(c);
+        mode = stack[--top];
+        comma = true;
+    }
+
+    /**
+     * Prepares the output for the next scalar value.
+     *
+     * @throws RenderingException if no value is allowed at the current position
+     */
+    private void beforeValue() throws RenderingException {
+        if (mode == ARRAY) {
+            if (comma) write(',');
+        } else if (mode == OBJECT) {
+            mode = KEY;
+        } else {
+            throw new RenderingException("Value out of sequence");
+        }
+        comma = true;
+    }
+
+    @Override
+    protected Renderer unknownValue(Object value) {
+        if (value instanceof JSONEncoder) {
+            try {
+                JSONEncoder.class.cast(value).encodeJSON(adapter);
+            } catch (JSONException e) {
+                throw new RenderingException(e);
+            }
+            return this;
+        } else {
+            return super.unknownValue(value);
+        }
+    }
+
+    @Override
+    public Renderer list() throws RenderingException {
+        open('[', ARRAY, "Misplaced list");
+        return this;
+    }
+
+    @Override
+    public Renderer endList() throws RenderingException {
+        close(ARRAY, ']', "Misplaced endList");
+        return this;
+    }
+
+    @Override
+    public Renderer map() throws RenderingException {
+        open('{', KEY, "Misplaced map");
+        return this;
+    }
+
+    @Override
+    public Renderer endMap() throws RenderingException {
+        close(KEY, '}', "Misplaced endMap");
+        return this;
+    }
+
+    @Override
+    public Renderer key(CharSequence key) throws RenderingException {
+        if (mode != KEY) throw new RenderingException("Misplaced key");
+        if (comma) write(',');
+        writeQuoted(key == null ? "null" : key);
+        write(':');
+        mode = OBJECT;
+        comma = false;
+        return this;
+    }
+
+    @Override
+    public Renderer nullValue() throws RenderingException {
+        beforeValue();
+        write("null");
+        return this;
+    }
+
+    @Override
+    public Renderer value(boolean value) throws RenderingException {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public Renderer value(long value) throws RenderingException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    @Override
+    public Renderer value(double value) throws RenderingException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new RenderingException("JSON does not allow non-finite numbers");
+        }
+        beforeValue();
+        if (value == (long) value && Math.abs(value) < PLAIN_BOUND &&
+            Double.doubleToRawLongBits(value) != NEGATIVE_ZERO) {
+            // integral values end with ".0" which would be stripped anyway
+            writeLong((long) value);
+            return this;
+        }
+        final String s = Double.toString(value);
+        if (s.indexOf('.') > 0 && s.indexOf('E') < 0) {
+            // same as JSONObject.numberToString: strip trailing zeros and dot
+            int end = s.length();
+            while (s.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (s.charAt(end - 1) == '.') {
+                end--;
+            }
+            write(end == s.length() ? s : s.substring(0, end));
+        } else {
+            write(s);
+        }
+        return this;
+    }
+
+    @Override
+    public Renderer value(CharSequence value) throws RenderingException {
+        if (value == null) return nullValue();
+        beforeValue();
+        writeQuoted(value);
+        return this;
+    }
+
+    /**
+     * Renders the given utf-8 encoded json value verbatim, without any validation.
+     *
+     * @param json the utf-8 encoded json value, rendered by a json renderer
+     * @throws RenderingException if no value is allowed at the current position
+     */
+    void rawUtf8(byte[] json) throws RenderingException {
+        beforeValue();
+        writeUtf8(json);
+    }
+
+    @Override
+    public RawRenderer raw(CharSequence json) throws RenderingException {
+        if (json == null) {
+            nullValue();
+            return this;
+        }
+        RawJson.validate(json);
+        beforeValue();
+        writeRaw(RawJson.escape(json));
+        return this;
+    }
+
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Encodes json objects and arrays into a binary format, which can be
+ * navigated lazily using {@link BinaryJsonMap} and {@link BinaryJsonList}.
+ * 
+ * <p>
+ *   Every value starts with a single tag byte. Objects and arrays store their
+ *   size followed by a table of offsets, one per pair or element, relative to
+ *   the start of the root value, which allows random access without decoding
+ *   any other values. Pairs are sorted by the unsigned bytes of their utf-8
+ *   encoded keys, so lookups use a binary search on the raw bytes:
+ * </p>
+ * <pre>
+ * object: OBJECT size offset[size] (key value)[size]
+ * array:  ARRAY size offset[size] value[size]
+ * key:    length utf-8[length]
+ * string: STRING length utf-8[length]
+ * </pre>
+ * 
+ * <p>
+ *   Sizes, lengths and offsets are 4 byte integers, all numbers are stored in
+ *   big endian byte order. Json nulls are encoded as {@link #NULL}.
+ * </p>
+ * 
+ * See also {@link JSON#toBinary(JSONObject)}.
+ * 
+ * @since 2.2
+ */
+final class BinaryJson {
+    
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte STRING = 6;
+    static final byte OBJECT = 7;
+    static final byte ARRAY = 8;
+    
+    private static final Comparator<byte[]> UNSIGNED = new Comparator<byte[]>() {
+        
+        @Override
+        public int compare(byte[] left, byte[] right) {
+            final int length = Math.min(left.length, right.length);
+            for (int i = 0; i < length; i++) {
+                final int difference = (left[i] & 0xff) - (right[i] & 0xff);
+                if (difference != 0) return difference;
+            }
+            return left.length - right.length;
+        }
+        
+    };
+    
+    private final ByteBuffer buffer;
+    
+    private BinaryJson(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    /**
+     * Encodes the given object or array into a new direct buffer. The encoded size is
+     * calculated up front, which allows writing straight into a direct buffer of the
+     * exact size, without keeping the encoding on the heap.
+     * 
+     * @param value the json object or array
+     * @return a new read only buffer, positioned at the start of the encoded value
+     * @throws IllegalArgumentException if value contains values which can't be encoded
+     */
+    static ByteBuffer encode(Object value) {
+        final long size = size(value);
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Encoded size " + size + " is too large");
+        final BinaryJson encoder = new BinaryJson(ByteBuffer.allocateDirect((int) size));
+        encoder.value(value);
+        final ByteBuffer direct = encoder.buffer;
+        direct.flip();
+        return direct.asReadOnlyBuffer();
+    }
+    
+    /**
+     * Calculates the number of bytes needed to encode the given value.
+     * 
+     * @param value the value
+     * @return the encoded size
+     * @throws IllegalArgumentException if value contains values which can't be encoded
+     */
+    private static long size(Object value) {
+        if (value instanceof JSONObject) {
+            final JSONObject object = JSONObject.class.cast(value);
+            long size = 5 + 4L * object.length();
+            final Iterator<?> iterator = object.keys();
+            while (iterator.hasNext()) {
+                final String key = iterator.next().toString();
+                size += 4 + length(key) + size(object.opt(key));
+            }
+            return size;
+        } else if (value instanceof JSONArray) {
+            final JSONArray array = JSONArray.class.cast(value);
+            long size = 5 + 4L * array.length();
+            for (int i = 0; i < array.length(); i++) {
+                size += size(array.opt(i));
+            }
+            return size;
+        } else if (value == null || JSONObject.NULL.equals(value) || value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof String) {
+            return 5 + length(String.class.cast(value));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return 5;
+        } else if (value instanceof Long || value instanceof Double || value instanceof Float) {
+            return 9;
+        } else {
+            throw new IllegalArgumentException("Unsupported value " + value + " of " + value.getClass());
+        }
+    }
+    
+    /**
+     * Calculates the length of the given string in utf-8. Like {@link String#getBytes(String)},
+     * unpaired surrogates are counted as a single replacement byte.
+     * 
+     * @param s the string
+     * @return the number of bytes
+     */
+    private static int length(String s) {
+        final int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // four bytes for two chars
+                bytes += 2;
+                i++;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+    
+    private void value(Object value) {
+        if (value instanceof JSONObject) {
+            object(JSONObject.class.cast(value));
+        } else if (value instanceof JSONArray) {
+            array(JSONArray.class.cast(value));
+        } else if (value == null || JSONObject.NULL.equals(value)) {
+            buffer.put(NULL);
+        } else if (value instanceof String) {
+            buffer.put(STRING);
+            bytes(String.class.cast(value).getBytes(Charsets.UTF_8));
+        } else if (value instanceof Boolean) {
+            buffer.put(Boolean.TRUE.equals(value) ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            buffer.put(INT).putInt(Number.class.cast(value).intValue());
+        } else if (value instanceof Long) {
+            buffer.put(LONG).putLong(Long.class.cast(value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            buffer.put(DOUBLE).putDouble(Number.class.cast(value).doubleValue());
+        } else {
+            throw new IllegalArgumentException("Unsupported value " + value + " of " + value.getClass());
+        }
+    }
+    
+    private void bytes(byte[] bytes) {
+        buffer.putInt(bytes.length).put(bytes);
+    }
+    
+    private void object(JSONObject object) {
+        final int size = object.length();
+        final String[] names = new String[size];
+        final byte[][] keys = new byte[size][];
+        final Iterator<?> iterator = object.keys();
+        for (int i = 0; i < size; i++) {
+            names[i] = iterator.next().toString();
+            keys[i] = names[i].getBytes(Charsets.UTF_8);
+        }
+        // sorts the positions, keys with unpaired surrogates don't survive decoding their bytes
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            
+            @Override
+            public int compare(Integer left, Integer right) {
+                return UNSIGNED.compare(keys[left.intValue()], keys[right.intValue()]);
+            }
+            
+        });
+        
+        final int table = header(OBJECT, size);
+        for (int i = 0; i < size; i++) {
+            final int pair = order[i].intValue();
+            buffer.putInt(table + 4 * i, buffer.position());
+            bytes(keys[pair]);
+            value(object.opt(names[pair]));
+        }
+    }
+    
+    private void array(JSONArray array) {
+        final int size = array.length();
+        final int table = header(ARRAY, size);
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(table + 4 * i, buffer.position());
+            value(array.opt(i));
+        }
+    }
+    
+    /**
+     * Writes tag and size and reserves the offset table.
+     * 
+     * @return the position of the offset table
+     */
+    private int header(byte tag, int size) {
+        buffer.put(tag).putInt(size);
+        final int table = buffer.position();
+        buffer.position(table + 4 * size);
+        return table;
+    }
+    
+    /**
+     * Decodes the value at the given position.
+     * 
+     * @param buffer the buffer
+     * @param base the position of the root value
+     * @param position the absolute position of the value
+     * @return the decoded value, objects and arrays as views
+     */
+    static Object decode(ByteBuffer buffer, int base, int position) {
+        switch (buffer.get(position)) {
+            case NULL: {
+                return null;
+            }
+            case FALSE: {
+                return Boolean.FALSE;
+            }
+            case TRUE: {
+                return Boolean.TRUE;
+            }
+            case INT: {
+                return Integer.valueOf(buffer.getInt(position + 1));
+            }
+            case LONG: {
+                return Long.valueOf(buffer.getLong(position + 1));
+            }
+            case DOUBLE: {
+                return Double.valueOf(buffer.getDouble(position + 1));
+            }
+            case STRING: {
+                return string(buffer, position + 1);
+            }
+            case OBJECT: {
+                return new BinaryJsonMap(buffer, base, position);
+            }
+            case ARRAY: {
+                return new BinaryJsonList(buffer, base, position);
+            }
+            default: {
+                throw new IllegalStateException("Unknown tag " + buffer.get(position) + " at " + position);
+            }
+        }
+    }
+    
+    /**
+     * Decodes the length prefixed utf-8 string at the given position.
+     * 
+     * @param buffer the buffer
+     * @param position the position of the length
+     * @return the decoded string
+     */
+    static String string(ByteBuffer buffer, int position) {
+        final int length = buffer.getInt(position);
+        final byte[] bytes = new byte[length];
+        final int start = position + 4;
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + start, bytes, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+        }
+        return new String(bytes, Charsets.UTF_8);
+    }
+    
+    /**
+     * Compares the length prefixed key at the given position with the given key
+     * by their unsigned bytes.
+     * 
+     * @param buffer the buffer
+     * @param position the position of the length
+     * @param key the utf-8 encoded key
+     * @return a negative value, zero or a positive value if the stored key is
+     *         less than, equal to or greater than key
+     */
+    static int compare(ByteBuffer buffer, int position, byte[] key) {
+        final int length = buffer.getInt(position);
+        final int start = position + 4;
+        final int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            final int difference = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0) return difference;
+        }
+        return length - key.length;
+    }
+    
+}
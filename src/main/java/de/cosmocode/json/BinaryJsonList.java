@@ -0,0 +1,63 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.cosmocode.collections.utility.AbstractUtilityList;
+
+/**
+ * A read only {@link List}-view on an array encoded by {@link BinaryJson}.
+ * 
+ * <p>
+ *   Elements are decoded on every access, nested objects and arrays are
+ *   returned as new views. Only absolute reads are used, which allows
+ *   sharing the underlying buffer between threads.
+ * </p>
+ * 
+ * See also {@link JSON#asList(ByteBuffer)}.
+ * 
+ * @since 2.2
+ */
+final class BinaryJsonList extends AbstractUtilityList<Object> implements RandomAccess {
+    
+    private final ByteBuffer buffer;
+    
+    private final int base;
+    
+    private final int position;
+    
+    BinaryJsonList(ByteBuffer buffer, int base, int position) {
+        this.buffer = buffer;
+        this.base = base;
+        this.position = position;
+    }
+    
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        return BinaryJson.decode(buffer, base, base + buffer.getInt(position + 5 + 4 * index));
+    }
+    
+    @Override
+    public int size() {
+        return buffer.getInt(position + 1);
+    }
+    
+}
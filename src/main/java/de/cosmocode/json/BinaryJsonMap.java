@@ -0,0 +1,173 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.collections.utility.AbstractUtilityMap;
+import de.cosmocode.collections.utility.Utility;
+import de.cosmocode.collections.utility.UtilitySet;
+
+/**
+ * A read only {@link Map}-view on an object encoded by {@link BinaryJson}.
+ * 
+ * <p>
+ *   Values are decoded on every access, nested objects and arrays are
+ *   returned as new views. Only absolute reads are used, which allows
+ *   sharing the underlying buffer between threads.
+ * </p>
+ * 
+ * See also {@link JSON#asMap(ByteBuffer)}.
+ * 
+ * @since 2.2
+ */
+final class BinaryJsonMap extends AbstractUtilityMap<String, Object> {
+    
+    private final ByteBuffer buffer;
+    
+    private final int base;
+    
+    private final int position;
+    
+    private UtilitySet<Map.Entry<String, Object>> entrySet;
+    
+    BinaryJsonMap(ByteBuffer buffer, int base, int position) {
+        this.buffer = buffer;
+        this.base = base;
+        this.position = position;
+    }
+    
+    /**
+     * Returns the absolute position of the key of the pair at the given index.
+     * 
+     * @param index the index
+     * @return the position of the key
+     */
+    private int key(int index) {
+        return base + buffer.getInt(position + 5 + 4 * index);
+    }
+    
+    /**
+     * Returns the absolute position of the value following the given key.
+     * 
+     * @param key the position of the key
+     * @return the position of the value
+     */
+    private int value(int key) {
+        return key + 4 + buffer.getInt(key);
+    }
+    
+    /**
+     * Finds the pair of the given key using a binary search.
+     * 
+     * @param key the key
+     * @return the position of the stored key or -1 if there is no such key
+     */
+    private int find(Object key) {
+        if (!(key instanceof String)) return -1;
+        final byte[] bytes = String.class.cast(key).getBytes(Charsets.UTF_8);
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int stored = key(middle);
+            final int comparison = BinaryJson.compare(buffer, stored, bytes);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return stored;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public Object get(Object key) {
+        final int stored = find(key);
+        return stored == -1 ? null : BinaryJson.decode(buffer, base, value(stored));
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != -1;
+    }
+    
+    @Override
+    public int size() {
+        return buffer.getInt(position + 1);
+    }
+    
+    @Override
+    public UtilitySet<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = Utility.asUtilitySet(new EntrySet());
+        }
+        return entrySet;
+    }
+    
+    /**
+     * Read only entry set, iterating in the order of the encoded keys.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new Iterator<Map.Entry<String, Object>>() {
+                
+                private final int size = size();
+                
+                private int index;
+                
+                @Override
+                public boolean hasNext() {
+                    return index < size;
+                }
+                
+                @Override
+                public Map.Entry<String, Object> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    final int stored = key(index++);
+                    final String key = BinaryJson.string(buffer, stored);
+                    final Object value = BinaryJson.decode(buffer, base, value(stored));
+                    return new AbstractMap.SimpleImmutableEntry<String, Object>(key, value);
+                }
+                
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+                
+            };
+        }
+        
+        @Override
+        public int size() {
+            return BinaryJsonMap.this.size();
+        }
+        
+    }
+    
+}
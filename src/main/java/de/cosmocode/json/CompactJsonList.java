@@ -0,0 +1,220 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.RandomAccess;
+
+import org.json.JSONArray;
+
+import de.cosmocode.collections.utility.AbstractUtilityList;
+
+/**
+ * An immutable, compact copy of a {@link JSONArray}.
+ * 
+ * <p>
+ *   Arrays consisting only of integers, longs, doubles or booleans
+ *   are packed into primitive arrays, all other arrays are copied into
+ *   a plain object array. Nested objects and arrays are copied recursively,
+ *   json nulls are converted into null.
+ * </p>
+ * 
+ * See also {@link JSON#compact(JSONArray)}.
+ * 
+ * @since 2.2
+ */
+abstract class CompactJsonList extends AbstractUtilityList<Object> implements RandomAccess {
+    
+    private CompactJsonList() {
+        
+    }
+    
+    /**
+     * Creates a compact copy of the given array.
+     * 
+     * @param array the array
+     * @return a new compact list
+     * @throws NullPointerException if array is null
+     */
+    static CompactJsonList of(JSONArray array) {
+        final int length = array.length();
+        final Class<?> type = length == 0 ? null : type(array);
+        if (type == Integer.class) {
+            final int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Integer.class.cast(array.opt(i)).intValue();
+            }
+            return new Ints(values);
+        } else if (type == Long.class) {
+            final long[] values = new long[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Long.class.cast(array.opt(i)).longValue();
+            }
+            return new Longs(values);
+        } else if (type == Double.class) {
+            final double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Double.class.cast(array.opt(i)).doubleValue();
+            }
+            return new Doubles(values);
+        } else if (type == Boolean.class) {
+            final boolean[] values = new boolean[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Boolean.class.cast(array.opt(i)).booleanValue();
+            }
+            return new Booleans(values);
+        } else {
+            final Object[] values = new Object[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = CompactJsonMap.compact(array.opt(i));
+            }
+            return new Elements(values);
+        }
+    }
+    
+    /**
+     * Returns the common type of all elements of the given non empty array.
+     * 
+     * @param array the array
+     * @return the type of all elements or null if they differ
+     */
+    private static Class<?> type(JSONArray array) {
+        final Object first = array.opt(0);
+        if (first == null) return null;
+        final Class<?> type = first.getClass();
+        for (int i = 1; i < array.length(); i++) {
+            final Object value = array.opt(i);
+            if (value == null || value.getClass() != type) return null;
+        }
+        return type;
+    }
+    
+    /**
+     * A list packed into an int array.
+     */
+    private static final class Ints extends CompactJsonList {
+        
+        private final int[] values;
+        
+        public Ints(int[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public Object get(int index) {
+            return Integer.valueOf(values[index]);
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+        
+    }
+    
+    /**
+     * A list packed into a long array.
+     */
+    private static final class Longs extends CompactJsonList {
+        
+        private final long[] values;
+        
+        public Longs(long[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public Object get(int index) {
+            return Long.valueOf(values[index]);
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+        
+    }
+    
+    /**
+     * A list packed into a double array.
+     */
+    private static final class Doubles extends CompactJsonList {
+        
+        private final double[] values;
+        
+        public Doubles(double[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public Object get(int index) {
+            return Double.valueOf(values[index]);
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+        
+    }
+    
+    /**
+     * A list packed into a boolean array.
+     */
+    private static final class Booleans extends CompactJsonList {
+        
+        private final boolean[] values;
+        
+        public Booleans(boolean[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public Object get(int index) {
+            return Boolean.valueOf(values[index]);
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+        
+    }
+    
+    /**
+     * A list of arbitrary, possibly compacted elements.
+     */
+    private static final class Elements extends CompactJsonList {
+        
+        private final Object[] values;
+        
+        public Elements(Object[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public Object get(int index) {
+            return values[index];
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import de.cosmocode.collections.utility.AbstractUtilityMap;
+import de.cosmocode.collections.utility.Utility;
+import de.cosmocode.collections.utility.UtilitySet;
+
+/**
+ * An immutable, compact copy of a {@link JSONObject}.
+ * 
+ * <p>
+ *   Keys are stored in a shared, sorted {@link CompactKeys} table and values
+ *   in a plain array, instead of a hash map per object. Lookups use a binary
+ *   search. Nested objects and arrays are copied recursively, json nulls are
+ *   converted into null.
+ * </p>
+ * 
+ * See also {@link JSON#compact(JSONObject)}.
+ * 
+ * @since 2.2
+ */
+final class CompactJsonMap extends AbstractUtilityMap<String, Object> {
+    
+    private static final Object NULL = null;
+    
+    private final CompactKeys keys;
+    
+    private final Object[] values;
+    
+    private UtilitySet<Map.Entry<String, Object>> entrySet;
+    
+    private CompactJsonMap(CompactKeys keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+    
+    /**
+     * Creates a compact copy of the given object.
+     * 
+     * @param object the object
+     * @return a new compact map
+     * @throws NullPointerException if object is null
+     */
+    static CompactJsonMap of(JSONObject object) {
+        final String[] names = new String[object.length()];
+        final Iterator<?> iterator = object.keys();
+        for (int i = 0; i < names.length; i++) {
+            names[i] = iterator.next().toString();
+        }
+        final CompactKeys table = CompactKeys.of(names);
+        final Object[] values = new Object[table.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = compact(object.opt(table.get(i)));
+        }
+        return new CompactJsonMap(table, values);
+    }
+    
+    /**
+     * Compacts the given value of a json object or array.
+     * 
+     * @param value the value
+     * @return the compacted value
+     */
+    static Object compact(Object value) {
+        if (value instanceof JSONObject) {
+            return of(JSONObject.class.cast(value));
+        } else if (value instanceof JSONArray) {
+            return CompactJsonList.of(JSONArray.class.cast(value));
+        } else if (value == null || value.equals(NULL)) {
+            return null;
+        } else {
+            return value;
+        }
+    }
+    
+    /**
+     * Returns the key table of this map.
+     * 
+     * @return the shared key table
+     */
+    CompactKeys getKeys() {
+        return keys;
+    }
+    
+    @Override
+    public Object get(Object key) {
+        final int index = keys.indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return keys.indexOf(key) >= 0;
+    }
+    
+    @Override
+    public int size() {
+        return values.length;
+    }
+    
+    @Override
+    public UtilitySet<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = Utility.asUtilitySet(new EntrySet());
+        }
+        return entrySet;
+    }
+    
+    /**
+     * Immutable entry set, iterating in key order.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new Iterator<Map.Entry<String, Object>>() {
+                
+                private int index;
+                
+                @Override
+                public boolean hasNext() {
+                    return index < values.length;
+                }
+                
+                @Override
+                public Map.Entry<String, Object> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    final Map.Entry<String, Object> entry =
+                        new AbstractMap.SimpleImmutableEntry<String, Object>(keys.get(index), values[index]);
+                    index++;
+                    return entry;
+                }
+                
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+                
+            };
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+        
+    }
+    
+}
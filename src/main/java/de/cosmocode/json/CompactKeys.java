@@ -0,0 +1,103 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Arrays;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * An immutable, sorted table of keys shared by all {@link CompactJsonMap}s
+ * having the same set of keys.
+ * 
+ * <p>
+ *   Tables and their keys are interned weakly, which means documents
+ *   consisting of many objects of the same structure store their keys once.
+ * </p>
+ * 
+ * @since 2.2
+ */
+final class CompactKeys {
+    
+    private static final Interner<String> KEYS = Interners.newWeakInterner();
+    
+    private static final Interner<CompactKeys> TABLES = Interners.newWeakInterner();
+    
+    private final String[] keys;
+    
+    private final int hash;
+    
+    private CompactKeys(String[] keys) {
+        this.keys = keys;
+        this.hash = Arrays.hashCode(keys);
+    }
+    
+    /**
+     * Returns the shared table containing the given keys.
+     * 
+     * @param keys the keys, will be sorted and must not be modified afterwards
+     * @return the shared table
+     */
+    static CompactKeys of(String[] keys) {
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = KEYS.intern(keys[i]);
+        }
+        return TABLES.intern(new CompactKeys(keys));
+    }
+    
+    /**
+     * Returns the index of the given key.
+     * 
+     * @param key the key
+     * @return the index or a negative value if this table doesn't contain key
+     */
+    int indexOf(Object key) {
+        if (key instanceof String) {
+            return Arrays.binarySearch(keys, key);
+        } else {
+            return -1;
+        }
+    }
+    
+    String get(int index) {
+        return keys[index];
+    }
+    
+    int size() {
+        return keys.length;
+    }
+    
+    @Override
+    public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        } else if (that instanceof CompactKeys) {
+            final CompactKeys other = CompactKeys.class.cast(that);
+            return hash == other.hash && Arrays.equals(keys, other.keys);
+        } else {
+            return false;
+        }
+    }
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Map;
+
+/**
+ * A callback receiving all pairs of a {@link Map}, without
+ * allocating a {@link Map.Entry} per pair.
+ *
+ * <p>
+ *   See also {@link JSON#forEach(Map, EntryVisitor)}.
+ * </p>
+ *
+ * @since 2.2
+ * @param <K> the generic key type
+ * @param <V> the generic value type
+ */
+public interface EntryVisitor<K, V> {
+
+    /**
+     * Visits a single pair.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    void visit(K key, V value);
+
+}
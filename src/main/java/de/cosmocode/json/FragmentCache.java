@@ -0,0 +1,283 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.rendering.Renderable;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * A thread-safe cache of the rendered output of values, usually
+ * {@link org.json.extension.JSONEncoder}s or {@link Renderable}s, which
+ * rarely change but are rendered frequently.
+ *
+ * <p>
+ *   Values are identified by identity and weakly referenced. Values implementing
+ *   {@link Versioned} are rendered again as soon as their version changes, all other
+ *   values are cached until being {@link #invalidate(Object) invalidated}. Fragments are
+ *   stored as utf-8 bytes and evicted in least recently used order as soon as the total
+ *   size exceeds the configured maximum. Cached fragments are copied into the output
+ *   of {@link RawRenderer}s, without rendering the values again.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class FragmentCache {
+
+    /**
+     * A value which provides a version, changing whenever its rendered output changes.
+     *
+     * @since 2.2
+     */
+    public interface Versioned {
+
+        /**
+         * Returns the current version of this value.
+         *
+         * @return the version
+         */
+        long getVersion();
+
+    }
+
+    private final long maximumBytes;
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    private final Map<Key, Fragment> fragments = new LinkedHashMap<Key, Fragment>(16, 0.75f, true);
+
+    private long bytes;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Creates a new {@link FragmentCache}.
+     *
+     * @param maximumBytes the maximum total size of all cached fragments in bytes
+     * @throws IllegalArgumentException if maximumBytes is not positive
+     */
+    public FragmentCache(long maximumBytes) {
+        Preconditions.checkArgument(maximumBytes > 0, "MaximumBytes must be positive");
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * Renders the given value using the cached fragment, if present and up to date.
+     * Otherwise the value is rendered and its fragment cached.
+     *
+     * @param renderer the renderer the value will be rendered to
+     * @param value the value, usually a {@link org.json.extension.JSONEncoder} or {@link Renderable}
+     * @return the given renderer
+     * @throws NullPointerException if renderer is null
+     * @throws RenderingException if rendering failed
+     */
+    public RawRenderer render(RawRenderer renderer, Object value) throws RenderingException {
+        Preconditions.checkNotNull(renderer, "Renderer");
+        if (value == null) return renderer.raw(null);
+        final long version = value instanceof Versioned ? Versioned.class.cast(value).getVersion() : 0L;
+        byte[] fragment = get(value, version);
+        if (fragment == null) {
+            fragment = encode(value);
+            put(value, version, fragment);
+        }
+        if (renderer instanceof AbstractJsonRenderer) {
+            AbstractJsonRenderer.class.cast(renderer).rawUtf8(fragment);
+            return renderer;
+        } else {
+            return renderer.raw(new String(fragment, Charsets.UTF_8));
+        }
+    }
+
+    private static byte[] encode(Object value) {
+        final JsonUtf8Renderer renderer = JsonUtf8Renderer.acquire();
+        try {
+            renderer.list().value(value).endList();
+            final byte[] list = renderer.toByteArray();
+            return Arrays.copyOfRange(list, 1, list.length - 1);
+        } finally {
+            renderer.release();
+        }
+    }
+
+    private synchronized byte[] get(Object value, long version) {
+        purge();
+        final Fragment fragment = fragments.get(new Key(value, null));
+        if (fragment == null || fragment.version != version) {
+            misses++;
+            return null;
+        } else {
+            hits++;
+            return fragment.bytes;
+        }
+    }
+
+    private synchronized void put(Object value, long version, byte[] fragment) {
+        final Fragment previous = fragments.put(new Key(value, queue), new Fragment(version, fragment));
+        if (previous != null) bytes -= previous.bytes.length;
+        bytes += fragment.length;
+        final Iterator<Fragment> iterator = fragments.values().iterator();
+        while (bytes > maximumBytes && iterator.hasNext()) {
+            bytes -= iterator.next().bytes.length;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes fragments of values which have been garbage collected.
+     */
+    private void purge() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            final Fragment fragment = fragments.remove(reference);
+            if (fragment != null) bytes -= fragment.bytes.length;
+        }
+    }
+
+    /**
+     * Removes the cached fragment of the given value.
+     *
+     * @param value the value which changed
+     */
+    public synchronized void invalidate(Object value) {
+        final Fragment fragment = fragments.remove(new Key(value, null));
+        if (fragment != null) bytes -= fragment.bytes.length;
+    }
+
+    /**
+     * Removes all cached fragments.
+     */
+    public synchronized void clear() {
+        fragments.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Returns the number of cached fragments.
+     *
+     * @return the number of fragments
+     */
+    public synchronized int size() {
+        purge();
+        return fragments.size();
+    }
+
+    /**
+     * Returns the total size of all cached fragments.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getBytes() {
+        purge();
+        return bytes;
+    }
+
+    /**
+     * Returns the number of values rendered using a cached fragment.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of values which had to be rendered.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of fragments evicted due to the size limit.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FragmentCache [size=" + fragments.size() + ", bytes=" + bytes + ", hits=" + hits + 
+            ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    /**
+     * A weak reference to a value, compared by identity.
+     */
+    private static final class Key extends WeakReference<Object> {
+
+        private final int hash;
+
+        public Key(Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.hash = System.identityHashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object that) {
+            if (this == that) {
+                return true;
+            } else if (that instanceof Key) {
+                final Object value = get();
+                return value != null && value == Key.class.cast(that).get();
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    /**
+     * A rendered fragment and the version of its value.
+     */
+    private static final class Fragment {
+
+        private final long version;
+
+        private final byte[] bytes;
+
+        public Fragment(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
@@ -16,6 +16,12 @@
 
 package de.cosmocode.json;
 
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.SortedMap;
@@ -24,6 +30,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONWriter;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 
 import de.cosmocode.collections.utility.UtilityList;
@@ -55,7 +62,13 @@ public final class JSON {
      * </p>
      * 
      * <p>
-     *   <b>Note:</b> The returned {@link UtilityList} does NOT support remove operations.
+     *   <b>Note:</b> Since 2.2 the returned {@link UtilityList} supports remove operations,
+     *   as long as the list backing the {@link JSONArray} is accessible.
+     * </p>
+     * 
+     * <p>
+     *   Creating the view takes constant time. Null elements are rejected
+     *   by throwing a {@link NullPointerException} when being accessed.
      * </p>
      * 
      * @param array the {@link JSONArray} which will be used as a {@link UtilityList}
@@ -88,6 +101,192 @@ public final class JSON {
         return new JsonObjectMap(object);
     }
     
+    /**
+     * Creates an immutable, compact copy of the given {@link JSONObject}.
+     * 
+     * <p>
+     *   The returned map shares its sorted key table with all compact maps having
+     *   the same keys and nested arrays of numbers or booleans are packed into
+     *   primitive arrays, which reduces the memory footprint of cached documents
+     *   considerably. Keys are iterated in natural order. Json nulls are converted
+     *   into null, like in the views returned by {@link #asMap(JSONObject)}. Values
+     *   other than objects and arrays are shared with the given object.
+     * </p>
+     * 
+     * @since 2.2
+     * @param object the json object to copy
+     * @return an immutable map containing all pairs of object
+     * @throws NullPointerException if object is null
+     */
+    public static UtilityMap<String, Object> compact(JSONObject object) {
+        return CompactJsonMap.of(object);
+    }
+    
+    /**
+     * Creates an immutable, compact copy of the given {@link JSONArray}.
+     * See {@link #compact(JSONObject)} for details.
+     * 
+     * @since 2.2
+     * @param array the json array to copy
+     * @return an immutable list containing all elements of array
+     * @throws NullPointerException if array is null
+     */
+    public static UtilityList<Object> compact(JSONArray array) {
+        return CompactJsonList.of(array);
+    }
+    
+    /**
+     * Encodes the given {@link JSONObject} into a compact binary format,
+     * stored in a direct buffer outside of the java heap.
+     * 
+     * <p>
+     *   The encoded size is calculated in a first pass over the object, the encoding is
+     *   then written straight into a direct buffer of that size. Only short lived copies
+     *   of single keys and strings are created on the heap.
+     * </p>
+     * 
+     * <p>
+     *   The returned buffer, or a copy of its content stored elsewhere, e.g. in a
+     *   memory mapped file, can be navigated using {@link #asMap(ByteBuffer)} without
+     *   decoding the whole document. Keys are iterated in the order of their utf-8 bytes.
+     *   Supported values are json objects, json arrays, json nulls, strings, booleans
+     *   and numbers of type byte, short, integer, long, float and double.
+     * </p>
+     * 
+     * @since 2.2
+     * @param object the object to encode
+     * @return a new read only direct buffer containing the encoded object
+     * @throws NullPointerException if object is null
+     * @throws IllegalArgumentException if object contains unsupported values
+     */
+    public static ByteBuffer toBinary(JSONObject object) {
+        Preconditions.checkNotNull(object, "Object");
+        return BinaryJson.encode(object);
+    }
+    
+    /**
+     * Encodes the given {@link JSONArray} into a compact binary format.
+     * See {@link #toBinary(JSONObject)} for details.
+     * 
+     * @since 2.2
+     * @param array the array to encode
+     * @return a new read only direct buffer containing the encoded array
+     * @throws NullPointerException if array is null
+     * @throws IllegalArgumentException if array contains unsupported values
+     */
+    public static ByteBuffer toBinary(JSONArray array) {
+        Preconditions.checkNotNull(array, "Array");
+        return BinaryJson.encode(array);
+    }
+    
+    /**
+     * Provides a read only {@link UtilityMap}-based view on an object encoded
+     * by {@link #toBinary(JSONObject)}, starting at the current position of the given buffer.
+     * 
+     * <p>
+     *   Values are decoded lazily on every access, nested objects and arrays are returned
+     *   as views as well. Json nulls are converted into null. Position, limit and byte
+     *   order of the given buffer are not used or modified afterwards.
+     * </p>
+     * 
+     * @since 2.2
+     * @param buffer the buffer containing the encoded object
+     * @return a read only map backed by the given buffer
+     * @throws NullPointerException if buffer is null
+     * @throws IllegalArgumentException if buffer contains no encoded object at its position
+     */
+    public static UtilityMap<String, Object> asMap(ByteBuffer buffer) {
+        final ByteBuffer duplicate = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        final int position = duplicate.position();
+        Preconditions.checkArgument(duplicate.hasRemaining() && duplicate.get(position) == BinaryJson.OBJECT, 
+            "No encoded object at %s", position);
+        return new BinaryJsonMap(duplicate, position, position);
+    }
+    
+    /**
+     * Provides a read only {@link UtilityList}-based view on an array encoded
+     * by {@link #toBinary(JSONArray)}. See {@link #asMap(ByteBuffer)} for details.
+     * 
+     * @since 2.2
+     * @param buffer the buffer containing the encoded array
+     * @return a read only list backed by the given buffer
+     * @throws NullPointerException if buffer is null
+     * @throws IllegalArgumentException if buffer contains no encoded array at its position
+     */
+    public static UtilityList<Object> asList(ByteBuffer buffer) {
+        final ByteBuffer duplicate = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        final int position = duplicate.position();
+        Preconditions.checkArgument(duplicate.hasRemaining() && duplicate.get(position) == BinaryJson.ARRAY, 
+            "No encoded array at %s", position);
+        return new BinaryJsonList(duplicate, position, position);
+    }
+    
+    /**
+     * Provides a read only {@link UtilityMap}-based view on the json object
+     * contained in the given text, without parsing it into a {@link JSONObject}.
+     * 
+     * <p>
+     *   The text is scanned once to find the end of the object, recording the boundaries
+     *   of large nested objects and arrays. Keys and the positions of their values are
+     *   indexed on first access without scanning nested values again, values are decoded
+     *   when being accessed, nested objects and arrays are lazy views as well. This makes extracting
+     *   a few values of large documents considerably cheaper than parsing them completely.
+     *   Json nulls are converted into null.
+     * </p>
+     * 
+     * <p>
+     *   Nested values are validated when being accessed, an {@link IllegalArgumentException}
+     *   is thrown in case of a syntax error. The given text must not be modified
+     *   while the view is in use. The returned view is not thread-safe.
+     * </p>
+     * 
+     * @since 2.2
+     * @param text the json text containing an object
+     * @return a read only map backed by the given text
+     * @throws NullPointerException if text is null
+     * @throws IllegalArgumentException if text doesn't contain a single json object
+     */
+    public static UtilityMap<String, Object> asMap(CharSequence text) {
+        return LazyJson.map(text);
+    }
+    
+    /**
+     * Provides a read only {@link UtilityList}-based view on the json array
+     * contained in the given text. See {@link #asMap(CharSequence)} for details.
+     * 
+     * @since 2.2
+     * @param text the json text containing an array
+     * @return a read only list backed by the given text
+     * @throws NullPointerException if text is null
+     * @throws IllegalArgumentException if text doesn't contain a single json array
+     */
+    public static UtilityList<Object> asList(CharSequence text) {
+        return LazyJson.list(text);
+    }
+    
+    /**
+     * Visits all pairs of the given map. Views created by {@link #asMap(JSONObject)}
+     * are visited without allocating a {@link Map.Entry} per pair, all other maps
+     * using their entry set.
+     * 
+     * @since 2.2
+     * @param <V> the generic value type
+     * @param map the map to visit
+     * @param visitor the visitor receiving all pairs
+     * @throws NullPointerException if map or visitor is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> void forEach(Map<String, V> map, EntryVisitor<? super String, ? super V> visitor) {
+        Preconditions.checkNotNull(visitor, "Visitor");
+        if (map instanceof JsonObjectMap) {
+            JsonObjectMap.class.cast(map).visitEntries((EntryVisitor<? super String, Object>) visitor);
+        } else {
+            for (Map.Entry<String, V> entry : map.entrySet()) {
+                visitor.visit(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
     /**
      * Creates a {@link JSONObject} based on a
      * {@link LinkedHashMap} which provides insertion
@@ -100,6 +299,21 @@ public final class JSON {
         return new JSONObject(map);
     }
     
+    /**
+     * Creates a {@link JSONObject} based on a
+     * {@link LinkedHashMap} which provides insertion
+     * order and shares keys using the given interner.
+     * 
+     * @since 2.2
+     * @param interner the interner used for keys
+     * @return a new {@link JSONObject} based on a {@link LinkedHashMap}
+     * @throws NullPointerException if interner is null
+     */
+    public static JSONObject createLinkedJSONObject(KeyInterner interner) {
+        Preconditions.checkNotNull(interner, "Interner");
+        return new JSONObject(new InterningLinkedHashMap(interner));
+    }
+    
     /**
      * Creates a {@link JSONObject} backed by a {@link SortedMap}
      * containing all pairs of the provided map.
@@ -125,6 +339,85 @@ public final class JSON {
         return new JsonRenderer();
     }
     
+    /**
+     * Creates a new {@link Renderer} which streams its output
+     * directly to the given {@link Writer} instead of buffering
+     * the complete result in memory.
+     * 
+     * <p>
+     *   {@link Renderer#build()} flushes all pending output
+     *   and returns the given writer.
+     * </p>
+     * 
+     * @since 2.2
+     * @param writer the writer the output will be written to
+     * @return a new {@link Renderer} backed by the given writer
+     * @throws NullPointerException if writer is null
+     */
+    public static Renderer newRenderer(Writer writer) {
+        return new JsonStreamingRenderer(writer);
+    }
+    
+    /**
+     * Creates a new {@link Renderer} which streams its output
+     * directly to the given {@link OutputStream} using the specified
+     * charset instead of buffering the complete result in memory.
+     * 
+     * <p>
+     *   {@link Renderer#build()} flushes all pending output.
+     * </p>
+     * 
+     * @since 2.2
+     * @param stream the stream the output will be written to
+     * @param charset the charset being used to encode the output
+     * @return a new {@link Renderer} backed by the given stream
+     * @throws NullPointerException if stream or charset is null
+     */
+    public static Renderer newRenderer(OutputStream stream, Charset charset) {
+        return newRenderer(new OutputStreamWriter(stream, charset));
+    }
+    
+    /**
+     * Creates a new {@link JsonTreeRenderer} which builds
+     * {@link JSONObject}s and {@link JSONArray}s.
+     * 
+     * @since 2.2
+     * @return a new {@link JsonTreeRenderer}
+     */
+    public static JsonTreeRenderer newTreeRenderer() {
+        return new JsonTreeRenderer();
+    }
+    
+    /**
+     * Creates a new {@link JsonTreeRenderer} which builds
+     * {@link JSONObject}s and {@link JSONArray}s and shares
+     * keys using the given interner.
+     * 
+     * @since 2.2
+     * @param interner the interner used for keys
+     * @return a new {@link JsonTreeRenderer}
+     * @throws NullPointerException if interner is null
+     */
+    public static JsonTreeRenderer newTreeRenderer(KeyInterner interner) {
+        return new JsonTreeRenderer(interner);
+    }
+    
+    /**
+     * Creates a new {@link JsonUtf8Renderer} which encodes
+     * directly into an utf-8 byte buffer.
+     * 
+     * <p>
+     *   Use {@link JsonUtf8Renderer#acquire()} to obtain a pooled instance
+     *   in frequently called code paths.
+     * </p>
+     * 
+     * @since 2.2
+     * @return a new {@link JsonUtf8Renderer}
+     */
+    public static JsonUtf8Renderer newUtf8Renderer() {
+        return new JsonUtf8Renderer();
+    }
+    
     /**
      * Creates a new {@link org.json.extension.JSONConstructor}.
      * 
@@ -137,6 +430,25 @@ public final class JSON {
         return new JsonRendererConstructor(newRenderer());
     }
 
+    /**
+     * Creates a new {@link org.json.extension.JSONConstructor}.
+     * 
+     * <p>
+     *   Values passed to {@link org.json.extension.JSONConstructor#plain(String)} are
+     *   copied verbatim after checking their structure, unless validating is true, in which
+     *   case they are parsed completely and invalid values are rejected.
+     * </p>
+     * 
+     * @deprecated use {@link Renderer}
+     * @since 2.2
+     * @param validating whether plain values are parsed completely
+     * @return a new {@link org.json.extension.JSONConstructor}
+     */
+    @Deprecated
+    public static org.json.extension.JSONConstructor newConstructor(boolean validating) {
+        return new JsonRendererConstructor(newRenderer(), validating);
+    }
+
     /**
      * Adapts {@link Renderer} to the {@link org.json.extension.JSONConstructor} interface.
      * 
@@ -167,4 +479,44 @@ public final class JSON {
         return new JsonWriterConstructor(writer);
     }
     
+    /**
+     * Provides a {@link org.json.extension.JSONConstructor}-based view on a {@link JSONWriter}.
+     * See {@link #newConstructor(boolean)} for the meaning of validating.
+     * 
+     * @deprecated use {@link Renderer}
+     * @since 2.2
+     * @param writer the {@link JSONWriter} which will be used as a {@link Renderer}
+     * @param validating whether plain values are parsed completely
+     * @throws NullPointerException if writer is null
+     * @return a {@link org.json.extension.JSONConstructor} backed by the writer
+     */
+    @Deprecated
+    public static org.json.extension.JSONConstructor asJSONConstructor(JSONWriter writer, boolean validating) {
+        return new JsonWriterConstructor(writer, validating);
+    }
+    
+    /**
+     * A {@link LinkedHashMap} which interns its keys.
+     * 
+     * @since 2.2
+     */
+    private static final class InterningLinkedHashMap extends LinkedHashMap<Object, Object> {
+        
+        private static final long serialVersionUID = -2687342187329153441L;
+        
+        private final transient KeyInterner interner;
+        
+        InterningLinkedHashMap(KeyInterner interner) {
+            this.interner = interner;
+        }
+        
+        @Override
+        public Object put(Object key, Object value) {
+            // the interner is lost by serialization
+            if (interner == null || !(key instanceof String)) return super.put(key, value);
+            return super.put(interner.intern((String) key), value);
+        }
+        
+    }
+    
 }
@@ -16,6 +16,9 @@
 
 package de.cosmocode.json;
 
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.json.JSONArray;
@@ -29,6 +32,24 @@ import de.cosmocode.patterns.Adapter;
  * An {@link Adapter} providing
  * a {@link List}-view on a {@link JSONArray}.
  *
+ * <p>
+ *   Views of nested objects and arrays are cached, so repeated navigation
+ *   doesn't allocate new views. Cached views are only returned as long as
+ *   they are backed by the current element at their index.
+ * </p>
+ *
+ * <p>
+ *   Inserting and removing elements operates directly on the list backing
+ *   the json array, shifting all following elements at once. If the backing
+ *   list is not accessible, elements are shifted one by one and removing
+ *   is not supported.
+ * </p>
+ *
+ * <p>
+ *   Null elements are rejected when being accessed instead of scanning
+ *   the whole array on construction, which makes creating views O(1).
+ * </p>
+ *
  * See also {@link JSON#asList(JSONArray)}.
  * 
  * @author schoenborn@cosmocode.de
@@ -38,8 +59,40 @@ final class JsonArrayList extends AbstractUtilityList<Object> {
     
     private static final Object NULL = null;
 
+    private static final int INITIAL_VIEWS = 8;
+
+    private static final Field LIST;
+    
+    static {
+        Field field;
+        try {
+            field = JSONArray.class.getDeclaredField("myArrayList");
+            if (!List.class.isAssignableFrom(field.getType())) throw new NoSuchFieldException(field.toString());
+            field.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            field = null;
+        } catch (SecurityException e) {
+            field = null;
+        }
+        LIST = field;
+    }
+
     private final JSONArray array;
     
+    /**
+     * The list backing the array, null if not accessible.
+     */
+    private final List<Object> list;
+    
+    /**
+     * Cached child views, indexed by position. Created on first access of a
+     * nested object or array and grown geometrically up to the accessed index.
+     * Inserting and removing elements shifts the cached views along.
+     * Concurrent readers may overwrite each others views, which is safe
+     * because every view is checked against the current element before being returned.
+     */
+    private Object[] views;
+    
     /**
      * Constructs a new {@link JsonArrayList} using the specified {@link JSONArray}.
      * 
@@ -48,19 +101,91 @@ final class JsonArrayList extends AbstractUtilityList<Object> {
     public JsonArrayList(JSONArray array) {
         if (array == null) throw new NullPointerException("JSONArray must not be null");
         this.array = array;
-        if (contains(null)) throw new NullPointerException("JSONList must not contain null values");
+        this.list = backingList(array);
+    }
+    
+    JSONArray getArray() {
+        return array;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Object> backingList(JSONArray array) {
+        if (LIST == null) return null;
+        try {
+            return (List<Object>) LIST.get(array);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Rejects values which can't be rendered, like {@link JSONArray#put(int, Object)} does.
+     * 
+     * @param element the new element
+     */
+    private static void checkValid(Object element) {
+        if (element == null) throw new NullPointerException("Element must not be null");
+        if (element instanceof Double) {
+            final Double value = Double.class.cast(element);
+            if (value.isInfinite() || value.isNaN()) {
+                throw new IllegalArgumentException("JSON does not allow non-finite numbers");
+            }
+        } else if (element instanceof Float) {
+            final Float value = Float.class.cast(element);
+            if (value.isInfinite() || value.isNaN()) {
+                throw new IllegalArgumentException("JSON does not allow non-finite numbers");
+            }
+        }
+    }
+    
+    /**
+     * Moves cached views after inserting or removing elements, instead of
+     * dropping them, which keeps interleaved edits and reads cheap.
+     *
+     * @param index the index of the first inserted or removed element
+     * @param distance the number of inserted elements, negative for removed ones
+     */
+    private void shifted(int index, int distance) {
+        Object[] cache = views;
+        if (cache != null && index < cache.length) {
+            if (distance > 0 && cache.length < size()) {
+                // keeps the views being shifted past the end
+                cache = grow(cache, cache.length + distance);
+                views = cache;
+            }
+            final int length = cache.length;
+            if (distance > 0) {
+                final int to = Math.min(index + distance, length);
+                System.arraycopy(cache, index, cache, to, length - to);
+                Arrays.fill(cache, index, to, null);
+            } else {
+                final int from = Math.min(index - distance, length);
+                System.arraycopy(cache, from, cache, index, length - from);
+                Arrays.fill(cache, length - (from - index), length, null);
+            }
+        }
+        modCount++;
     }
 
     @Override
     public Object get(int index) {
         if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        final Object value = element(index);
+        if (value == null) throw new NullPointerException("JSONList must not contain null values, found at " + index);
+        return value;
+    }
+    
+    /**
+     * Returns the element at the given index, converting nested objects
+     * and arrays into views and json nulls into null.
+     * 
+     * @param index the index
+     * @return the element, may be null
+     */
+    private Object element(int index) {
         final Object value = array.opt(index);
-        if (value instanceof JSONObject) {
-            final JSONObject json = JSONObject.class.cast(value);
-            return JSON.asMap(json);
-        } else if (value instanceof JSONArray) {
-            final JSONArray json = JSONArray.class.cast(value);
-            return JSON.asList(json);
+        if (value instanceof JSONObject || value instanceof JSONArray) {
+            return view(index, value);
         } else if (value == null || value.equals(NULL)) {
             return null;
         } else {
@@ -68,13 +193,51 @@ final class JsonArrayList extends AbstractUtilityList<Object> {
         }
     }
     
+    private Object view(int index, Object value) {
+        Object[] cache = views;
+        if (cache == null || cache.length <= index) {
+            cache = grow(cache, index + 1);
+            views = cache;
+        }
+        final Object cached = cache[index];
+        if (cached instanceof JsonObjectMap && JsonObjectMap.class.cast(cached).getObject() == value) {
+            return cached;
+        } else if (cached instanceof JsonArrayList && JsonArrayList.class.cast(cached).getArray() == value) {
+            return cached;
+        }
+        final Object view;
+        if (value instanceof JSONObject) {
+            view = JSON.asMap(JSONObject.class.cast(value));
+        } else {
+            view = JSON.asList(JSONArray.class.cast(value));
+        }
+        cache[index] = view;
+        return view;
+    }
+    
+    /**
+     * Copies the given cache into a geometrically grown one, which is never larger than this list.
+     *
+     * @param cache the current cache, may be null
+     * @param minimum the required length
+     * @return the new cache
+     */
+    private Object[] grow(Object[] cache, int minimum) {
+        final int length = cache == null ? INITIAL_VIEWS : cache.length * 2;
+        final Object[] grown = new Object[Math.min(Math.max(length, minimum), size())];
+        if (cache != null) System.arraycopy(cache, 0, grown, 0, cache.length);
+        return grown;
+    }
+
     @Override
     public Object set(int index, Object element) {
         if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
         if (element == null) throw new NullPointerException("Element must not be null");
         try {
-            final Object oldValue = get(index);
+            final Object oldValue = element(index);
             array.put(index, element);
+            final Object[] cache = views;
+            if (cache != null && index < cache.length) cache[index] = null;
             return oldValue;
         } catch (JSONException e) {
             throw new IllegalArgumentException(e);
@@ -86,6 +249,13 @@ final class JsonArrayList extends AbstractUtilityList<Object> {
         if (index < 0 || index > size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
         if (element == null) throw new NullPointerException("Element must not be null");
         
+        if (list != null) {
+            checkValid(element);
+            list.add(index, element);
+            shifted(index, 1);
+            return;
+        }
+        
         // save current position
         int i = index;
         
@@ -109,9 +279,43 @@ final class JsonArrayList extends AbstractUtilityList<Object> {
         }
     }
     
+    @Override
+    public boolean addAll(int index, Collection<? extends Object> c) {
+        if (list == null) return super.addAll(index, c);
+        if (index < 0 || index > size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        final Object[] elements = c.toArray();
+        for (Object element : elements) {
+            checkValid(element);
+        }
+        if (elements.length == 0) return false;
+        list.addAll(index, Arrays.asList(elements));
+        shifted(index, elements.length);
+        return true;
+    }
+    
     @Override
     public Object remove(int index) {
-        throw new UnsupportedOperationException("Unable to delegate to JSONArray");
+        if (list == null) throw new UnsupportedOperationException("Unable to delegate to JSONArray");
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        final Object oldValue = element(index);
+        list.remove(index);
+        shifted(index, -1);
+        return oldValue;
+    }
+    
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (list == null) throw new UnsupportedOperationException("Unable to delegate to JSONArray");
+        list.subList(fromIndex, toIndex).clear();
+        shifted(fromIndex, fromIndex - toIndex);
+    }
+    
+    @Override
+    public void clear() {
+        if (list == null) throw new UnsupportedOperationException("Unable to delegate to JSONArray");
+        list.clear();
+        views = null;
+        modCount++;
     }
 
     @Override
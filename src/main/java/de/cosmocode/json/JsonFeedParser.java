@@ -0,0 +1,636 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.nio.ByteBuffer;
+
+import org.json.JSONException;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.rendering.Renderer;
+
+/**
+ * A push based parser which reads a single utf-8 encoded json value from chunks
+ * of arbitrary size and renders it to a {@link Renderer} while reading.
+ *
+ * <p>
+ *   Unlike {@link JsonReader}, this parser never waits for input. Every chunk passed to
+ *   {@link #feed(ByteBuffer)} is consumed completely and all tokens completed by it are
+ *   rendered immediately, incomplete tokens are kept until the next chunk arrives. This
+ *   allows parsing request bodies received by non-blocking servers without
+ *   accumulating them first. {@link #finish()} has to be called after the last chunk.
+ * </p>
+ *
+ * <p>
+ *   Parsers created using {@link #JsonFeedParser()} or {@link #JsonFeedParser(KeyInterner)}
+ *   build a tree using a {@link JsonTreeRenderer}, which is returned by {@link #finish()} and can be
+ *   viewed using {@link JSON#asMap(org.json.JSONObject)} and
+ *   {@link JSON#asList(org.json.JSONArray)}.
+ * </p>
+ *
+ * <p>
+ *   The input has to conform to RFC 4627, except that any value is allowed on the
+ *   top level. Malformed utf-8 in strings is replaced by {@code U+FFFD}. A parser
+ *   can't be used anymore after an exception has been thrown.
+ * </p>
+ *
+ * <p>
+ *   This class is not thread-safe.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class JsonFeedParser {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final char REPLACEMENT = '\ufffd';
+
+    // structural states, see JsonReader
+    private static final char EMPTY_DOCUMENT = 'd';
+    private static final char NONEMPTY_DOCUMENT = 'D';
+    private static final char EMPTY_OBJECT = 'o';
+    private static final char NEXT_KEY = 'K';
+    private static final char DANGLING_KEY = 'k';
+    private static final char NEXT_VALUE = 'v';
+    private static final char NONEMPTY_OBJECT = 'O';
+    private static final char EMPTY_ARRAY = 'a';
+    private static final char NEXT_ELEMENT = 'V';
+    private static final char NONEMPTY_ARRAY = 'A';
+
+    // lexical states
+    private static final int BETWEEN = 0;
+    private static final int STRING = 1;
+    private static final int ESCAPE = 2;
+    private static final int UNICODE = 3;
+    private static final int NUMBER = 4;
+    private static final int LITERAL = 5;
+    private static final int FINISHED = 6;
+    private static final int FAILED = 7;
+
+    private final Renderer renderer;
+
+    private final KeyInterner keyInterner;
+
+    private char[] stack = new char[32];
+
+    private int top;
+
+    private int state = BETWEEN;
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Whether the current string is a key.
+     */
+    private boolean key;
+
+    private String literal;
+
+    /**
+     * The number of matched characters of the current literal or unicode escape.
+     */
+    private int matched;
+
+    private int unicode;
+
+    /**
+     * The number of missing continuation bytes of the current utf-8 sequence.
+     */
+    private int continuation;
+
+    private int codePoint;
+
+    private int minimum;
+
+    private byte[] bytes;
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * The number of bytes read before the first byte of the current chunk.
+     */
+    private long offset;
+
+    private byte[] chunk;
+
+    /**
+     * Creates a new {@link JsonFeedParser} which builds a tree of
+     * {@link org.json.JSONObject}s and {@link org.json.JSONArray}s.
+     */
+    public JsonFeedParser() {
+        this(new JsonTreeRenderer());
+    }
+
+    /**
+     * Creates a new {@link JsonFeedParser} which renders to the given renderer.
+     *
+     * @param renderer the renderer receiving the parsed value
+     * @throws NullPointerException if renderer is null
+     */
+    public JsonFeedParser(Renderer renderer) {
+        this(Preconditions.checkNotNull(renderer, "Renderer"), null);
+    }
+
+    /**
+     * Creates a new {@link JsonFeedParser} which builds a tree of
+     * {@link org.json.JSONObject}s and {@link org.json.JSONArray}s and
+     * shares keys using the given interner. Known keys are looked up
+     * without creating a new string.
+     *
+     * @param keyInterner the interner used for keys
+     * @throws NullPointerException if keyInterner is null
+     */
+    public JsonFeedParser(KeyInterner keyInterner) {
+        this(new JsonTreeRenderer(keyInterner), keyInterner);
+    }
+
+    private JsonFeedParser(Renderer renderer, KeyInterner keyInterner) {
+        this.renderer = renderer;
+        this.keyInterner = keyInterner;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Parses all remaining bytes of the given chunk. The position of chunk
+     * is set to its limit.
+     *
+     * @param buffer the next chunk
+     * @throws JSONException if the input is no valid json
+     * @throws NullPointerException if buffer is null
+     * @throws IllegalStateException if this parser has been finished or failed before
+     * @throws de.cosmocode.rendering.RenderingException if rendering failed
+     */
+    public void feed(ByteBuffer buffer) throws JSONException {
+        Preconditions.checkNotNull(buffer, "Buffer");
+        Preconditions.checkState(state != FINISHED, "Parser has been finished");
+        Preconditions.checkState(state != FAILED, "Parser failed before");
+        if (buffer.hasArray()) {
+            final int start = buffer.arrayOffset() + buffer.position();
+            final int end = buffer.arrayOffset() + buffer.limit();
+            buffer.position(buffer.limit());
+            parse(buffer.array(), start, end);
+        } else {
+            // direct and read only buffers are copied in chunks
+            if (chunk == null) chunk = new byte[CHUNK_SIZE];
+            while (buffer.hasRemaining()) {
+                final int length = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, length);
+                parse(chunk, 0, length);
+            }
+        }
+    }
+
+    private void parse(byte[] array, int start, int end) throws JSONException {
+        bytes = array;
+        position = start;
+        limit = end;
+        offset -= start;
+        boolean success = false;
+        try {
+            while (position < limit) {
+                switch (state) {
+                    case BETWEEN: {
+                        final byte c = bytes[position++];
+                        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') token(c & 0xFF);
+                        break;
+                    }
+                    case STRING: {
+                        readString();
+                        break;
+                    }
+                    case ESCAPE: {
+                        readEscape();
+                        break;
+                    }
+                    case UNICODE: {
+                        readUnicode();
+                        break;
+                    }
+                    case NUMBER: {
+                        readNumber();
+                        break;
+                    }
+                    case LITERAL: {
+                        readLiteral();
+                        break;
+                    }
+                    default: {
+                        throw new IllegalStateException("Unknown state " + state);
+                    }
+                }
+            }
+            success = true;
+        } finally {
+            if (!success) state = FAILED;
+            offset += limit;
+            bytes = null;
+            position = 0;
+            limit = 0;
+        }
+    }
+
+    private void token(int c) throws JSONException {
+        switch (stack[top]) {
+            case EMPTY_DOCUMENT: {
+                stack[top] = NONEMPTY_DOCUMENT;
+                value(c);
+                break;
+            }
+            case NONEMPTY_DOCUMENT: {
+                throw syntaxError("Expected end of input");
+            }
+            case EMPTY_OBJECT: {
+                if (c == '}') {
+                    top--;
+                    renderer.endMap();
+                } else {
+                    key(c);
+                }
+                break;
+            }
+            case NEXT_KEY: {
+                key(c);
+                break;
+            }
+            case DANGLING_KEY: {
+                if (c != ':') throw syntaxError("Expected ':'");
+                stack[top] = NEXT_VALUE;
+                break;
+            }
+            case NEXT_VALUE: {
+                stack[top] = NONEMPTY_OBJECT;
+                value(c);
+                break;
+            }
+            case NONEMPTY_OBJECT: {
+                if (c == '}') {
+                    top--;
+                    renderer.endMap();
+                } else if (c == ',') {
+                    stack[top] = NEXT_KEY;
+                } else {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                break;
+            }
+            case EMPTY_ARRAY: {
+                if (c == ']') {
+                    top--;
+                    renderer.endList();
+                } else {
+                    stack[top] = NONEMPTY_ARRAY;
+                    value(c);
+                }
+                break;
+            }
+            case NEXT_ELEMENT: {
+                stack[top] = NONEMPTY_ARRAY;
+                value(c);
+                break;
+            }
+            case NONEMPTY_ARRAY: {
+                if (c == ']') {
+                    top--;
+                    renderer.endList();
+                } else if (c == ',') {
+                    stack[top] = NEXT_ELEMENT;
+                } else {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                break;
+            }
+            default: {
+                throw new IllegalStateException("Unknown state " + stack[top]);
+            }
+        }
+    }
+
+    private void key(int c) throws JSONException {
+        if (c != '"') throw syntaxError("Expected key");
+        stack[top] = DANGLING_KEY;
+        text.setLength(0);
+        key = true;
+        state = STRING;
+    }
+
+    private void value(int c) throws JSONException {
+        switch (c) {
+            case '{': {
+                push(EMPTY_OBJECT);
+                renderer.map();
+                break;
+            }
+            case '[': {
+                push(EMPTY_ARRAY);
+                renderer.list();
+                break;
+            }
+            case '"': {
+                text.setLength(0);
+                key = false;
+                state = STRING;
+                break;
+            }
+            case 't': {
+                literal("true");
+                break;
+            }
+            case 'f': {
+                literal("false");
+                break;
+            }
+            case 'n': {
+                literal("null");
+                break;
+            }
+            default: {
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    text.setLength(0);
+                    text.append((char) c);
+                    state = NUMBER;
+                    break;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private void push(char mode) {
+        if (++top == stack.length) {
+            final char[] resized = new char[stack.length * 2];
+            System.arraycopy(stack, 0, resized, 0, stack.length);
+            stack = resized;
+        }
+        stack[top] = mode;
+    }
+
+    private void literal(String value) {
+        literal = value;
+        matched = 1;
+        state = LITERAL;
+    }
+
+    private void readLiteral() throws JSONException {
+        while (position < limit && matched < literal.length()) {
+            if (bytes[position++] != literal.charAt(matched++)) throw syntaxError("Invalid literal");
+        }
+        if (matched < literal.length()) return;
+        state = BETWEEN;
+        if (literal.charAt(0) == 'n') {
+            renderer.nullValue();
+        } else {
+            renderer.value(literal.charAt(0) == 't');
+        }
+    }
+
+    private void readString() throws JSONException {
+        while (position < limit) {
+            if (continuation > 0) {
+                final int b = bytes[position];
+                if ((b & 0xC0) == 0x80) {
+                    codePoint = (codePoint << 6) | (b & 0x3F);
+                    position++;
+                    if (--continuation == 0) appendCodePoint();
+                } else {
+                    // the truncated sequence is replaced, the current byte is read again
+                    continuation = 0;
+                    text.append(REPLACEMENT);
+                }
+                continue;
+            }
+            // copies ascii runs at once
+            final int start = position;
+            while (position < limit) {
+                final byte b = bytes[position];
+                if (b < ' ' || b == '"' || b == '\\') break;
+                position++;
+            }
+            for (int i = start; i < position; i++) {
+                text.append((char) bytes[i]);
+            }
+            if (position == limit) return;
+            final int c = bytes[position++] & 0xFF;
+            if (c == '"') {
+                state = BETWEEN;
+                if (key) {
+                    renderer.key(keyInterner == null ? text.toString() : keyInterner.intern(text));
+                } else {
+                    renderer.value(text.toString());
+                }
+                return;
+            } else if (c == '\\') {
+                state = ESCAPE;
+                return;
+            } else if (c < 0x80) {
+                position--;
+                throw syntaxError("Unescaped control character in string");
+            } else if (c >= 0xC2 && c < 0xE0) {
+                continuation = 1;
+                minimum = 0x80;
+                codePoint = c & 0x1F;
+            } else if (c >= 0xE0 && c < 0xF0) {
+                continuation = 2;
+                minimum = 0x800;
+                codePoint = c & 0x0F;
+            } else if (c >= 0xF0 && c < 0xF5) {
+                continuation = 3;
+                minimum = 0x10000;
+                codePoint = c & 0x07;
+            } else {
+                text.append(REPLACEMENT);
+            }
+        }
+    }
+
+    private void appendCodePoint() {
+        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT ||
+            (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            text.append(REPLACEMENT);
+        } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            text.append((char) codePoint);
+        } else {
+            final int supplementary = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+            text.append((char) (Character.MIN_HIGH_SURROGATE + (supplementary >>> 10)));
+            text.append((char) (Character.MIN_LOW_SURROGATE + (supplementary & 0x3FF)));
+        }
+    }
+
+    private void readEscape() throws JSONException {
+        final int c = bytes[position++];
+        state = STRING;
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/': {
+                text.append((char) c);
+                break;
+            }
+            case 'b': {
+                text.append('\b');
+                break;
+            }
+            case 'f': {
+                text.append('\f');
+                break;
+            }
+            case 'n': {
+                text.append('\n');
+                break;
+            }
+            case 'r': {
+                text.append('\r');
+                break;
+            }
+            case 't': {
+                text.append('\t');
+                break;
+            }
+            case 'u': {
+                unicode = 0;
+                matched = 0;
+                state = UNICODE;
+                break;
+            }
+            default: {
+                throw syntaxError("Invalid escape sequence");
+            }
+        }
+    }
+
+    private void readUnicode() throws JSONException {
+        while (position < limit && matched < 4) {
+            final int digit = Character.digit((char) (bytes[position++] & 0xFF), 16);
+            if (digit == -1) throw syntaxError("Invalid unicode escape");
+            unicode = (unicode << 4) | digit;
+            matched++;
+        }
+        if (matched < 4) return;
+        text.append((char) unicode);
+        state = STRING;
+    }
+
+    private void readNumber() throws JSONException {
+        while (position < limit) {
+            final byte c = bytes[position];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append((char) c);
+                position++;
+            } else {
+                // the delimiter is read as the next token
+                renderNumber();
+                return;
+            }
+        }
+    }
+
+    private void renderNumber() throws JSONException {
+        if (!isNumber(text)) throw syntaxError("Invalid number");
+        state = BETWEEN;
+        final Number number = JsonReader.parseNumber(text);
+        if (number instanceof Double) {
+            renderer.value(number.doubleValue());
+        } else {
+            renderer.value(number.longValue());
+        }
+    }
+
+    /**
+     * Checks whether the given text is a valid json number.
+     *
+     * @param number the text
+     * @return true if number is valid, false otherwise
+     */
+    private static boolean isNumber(CharSequence number) {
+        final int length = number.length();
+        int i = number.charAt(0) == '-' ? 1 : 0;
+        if (i == length) return false;
+        if (number.charAt(i) == '0') {
+            i++;
+        } else {
+            i = digits(number, i);
+        }
+        if (i < length && number.charAt(i) == '.') {
+            final int start = i + 1;
+            i = digits(number, start);
+            if (i == start) return false;
+        }
+        if (i < length && (number.charAt(i) == 'e' || number.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (number.charAt(i) == '+' || number.charAt(i) == '-')) i++;
+            final int start = i;
+            i = digits(number, start);
+            if (i == start) return false;
+        }
+        return i == length;
+    }
+
+    private static int digits(CharSequence number, int start) {
+        int i = start;
+        while (i < number.length() && number.charAt(i) >= '0' && number.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at byte " + (offset + position));
+    }
+
+    /**
+     * Checks whether the top level value has been read completely. Top level
+     * numbers are not complete before the next whitespace or {@link #finish()}.
+     *
+     * @return true if the value is complete, false otherwise
+     */
+    public boolean isComplete() {
+        return top == 0 && stack[0] == NONEMPTY_DOCUMENT && (state == BETWEEN || state == FINISHED);
+    }
+
+    /**
+     * Signals the end of the input and returns the result of {@link Renderer#build()}.
+     *
+     * @return the built value, the root value if this parser builds a tree
+     * @throws JSONException if the input ended before the value was complete
+     * @throws IllegalStateException if this parser failed before
+     * @throws de.cosmocode.rendering.RenderingException if rendering failed
+     */
+    public Object finish() throws JSONException {
+        Preconditions.checkState(state != FAILED, "Parser failed before");
+        if (state == NUMBER) {
+            try {
+                renderNumber();
+            } catch (JSONException e) {
+                state = FAILED;
+                throw e;
+            }
+        }
+        if (state != FINISHED) {
+            if (state != BETWEEN || !isComplete()) {
+                final String message = state == BETWEEN ? "Unexpected end of input" : "Unterminated value";
+                state = FAILED;
+                throw syntaxError(message);
+            }
+            state = FINISHED;
+        }
+        return renderer.build();
+    }
+
+}
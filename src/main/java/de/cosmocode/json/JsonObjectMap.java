@@ -16,7 +16,7 @@
 
 package de.cosmocode.json;
 
-import java.util.AbstractMap;
+import java.lang.reflect.Field;
 import java.util.AbstractSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -35,6 +35,18 @@ import de.cosmocode.patterns.Adapter;
  * An {@link Adapter} providing
  * a {@link Map}-view on a {@link JSONObject}.
  * 
+ * <p>
+ *   Views of nested objects and arrays are cached, so repeated navigation
+ *   doesn't allocate new views. Cached views are only returned as long as
+ *   they are backed by the current value of their key.
+ * </p>
+ * 
+ * <p>
+ *   Iteration walks the entries of the map backing the json object directly,
+ *   if accessible, which saves one lookup per pair.
+ *   {@link #visitEntries(EntryVisitor)} additionally avoids allocating entries.
+ * </p>
+ * 
  * See also {@link JSON#asMap(JSONObject)}.
  * 
  * @author Willi Schoenborn
@@ -43,10 +55,46 @@ import de.cosmocode.patterns.Adapter;
 final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
     
     private static final Object NULL = null;
+    
+    private static final int INITIAL_VIEWS = 8;
+    
+    private static final Field MAP;
+    
+    static {
+        Field field;
+        try {
+            field = JSONObject.class.getDeclaredField("map");
+            if (!Map.class.isAssignableFrom(field.getType())) throw new NoSuchFieldException(field.toString());
+            field.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            field = null;
+        } catch (SecurityException e) {
+            field = null;
+        }
+        MAP = field;
+    }
 
     private final JSONObject object;
     
-    private final UtilitySet<Map.Entry<String, Object>> entrySet;
+    /**
+     * The map backing the object, null if not accessible.
+     */
+    private final Map<?, ?> map;
+    
+    /**
+     * Lazily created on first access. Races may create multiple instances,
+     * which is safe because all of them are equal.
+     */
+    private UtilitySet<Map.Entry<String, Object>> entrySet;
+    
+    /**
+     * A direct mapped cache of child views, indexed by the hash of their key.
+     * Holds pairs of key and view at even and odd positions. Created small on first
+     * access of a nested object or array and grown geometrically on collisions, up to
+     * the size of this map. Concurrent readers may overwrite each others views,
+     * which is safe because every view is checked against the current value before being returned.
+     */
+    private Object[] views;
     
     /**
      * Constructs a new {@link JsonObjectMap} using the specified {@link JSONObject}.
@@ -56,7 +104,20 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
     public JsonObjectMap(JSONObject object) {
         if (object == null) throw new IllegalArgumentException("JSONObject must not be null");
         this.object = object;
-        this.entrySet = Utility.asUtilitySet(new EntrySet());
+        this.map = backingMap(object);
+    }
+    
+    private static Map<?, ?> backingMap(JSONObject object) {
+        if (MAP == null) return null;
+        try {
+            return (Map<?, ?>) MAP.get(object);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+    
+    JSONObject getObject() {
+        return object;
     }
 
     /**
@@ -84,8 +145,34 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
             @Override
             public Map.Entry<String, Object> next() {
                 final String key = iterator.next().toString();
-                final Object value = get(key);
-                return new AbstractMap.SimpleEntry<String, Object>(key, value);
+                return new Pair(key, get(key));
+            }
+            
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+            
+        }
+        
+        /**
+         * Iterates the entries of the backing map, instead of looking up
+         * every value by its key.
+         */
+        private class BackingEntrySetIterator implements Iterator<Map.Entry<String, Object>> {
+            
+            private final Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+            
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+            
+            @Override
+            public Map.Entry<String, Object> next() {
+                final Map.Entry<?, ?> entry = iterator.next();
+                final String key = entry.getKey().toString();
+                return new Pair(key, value(key, entry.getValue()));
             }
             
             @Override
@@ -97,7 +184,7 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
         
         @Override
         public Iterator<Map.Entry<String, Object>> iterator() {
-            return new EntrySetIterator();
+            return map == null ? new EntrySetIterator() : new BackingEntrySetIterator();
         }
 
         @Override
@@ -107,6 +194,83 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
         
     }
     
+    /**
+     * An entry which writes through to this map.
+     */
+    private final class Pair implements Map.Entry<String, Object> {
+        
+        private final String key;
+        
+        private Object value;
+        
+        public Pair(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        @Override
+        public String getKey() {
+            return key;
+        }
+        
+        @Override
+        public Object getValue() {
+            return value;
+        }
+        
+        @Override
+        public Object setValue(Object newValue) {
+            final Object oldValue = value;
+            put(key, newValue);
+            value = newValue;
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object that) {
+            if (this == that) {
+                return true;
+            } else if (that instanceof Map.Entry<?, ?>) {
+                final Map.Entry<?, ?> other = Map.Entry.class.cast(that);
+                return key.equals(other.getKey()) && 
+                    (value == null ? other.getValue() == null : value.equals(other.getValue()));
+            } else {
+                return false;
+            }
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+        
+    }
+    
+    /**
+     * Visits all pairs of this map without allocating entries.
+     * 
+     * @param visitor the visitor
+     */
+    void visitEntries(EntryVisitor<? super String, Object> visitor) {
+        if (map == null) {
+            final Iterator<?> iterator = object.keys();
+            while (iterator.hasNext()) {
+                final String key = iterator.next().toString();
+                visitor.visit(key, get(key));
+            }
+        } else {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                final String key = entry.getKey().toString();
+                visitor.visit(key, value(key, entry.getValue()));
+            }
+        }
+    }
+    
     @Override
     public int size() {
         return object.length();
@@ -119,13 +283,21 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
     
     @Override
     public Object get(Object key) {
-        final Object value = object.opt(Strings.toString(key));
-        if (value instanceof JSONObject) {
-            final JSONObject json = JSONObject.class.cast(value);
-            return JSON.asMap(json);
-        } else if (value instanceof JSONArray) {
-            final JSONArray json = JSONArray.class.cast(value);
-            return JSON.asList(json);
+        final String name = Strings.toString(key);
+        return value(name, object.opt(name));
+    }
+    
+    /**
+     * Converts the given raw value, converting nested objects
+     * and arrays into views and json nulls into null.
+     * 
+     * @param name the key of value
+     * @param value the raw value
+     * @return the converted value
+     */
+    private Object value(String name, Object value) {
+        if (value instanceof JSONObject || value instanceof JSONArray) {
+            return view(name, value);
         } else if (value == null || value.equals(NULL)) {
             return null;
         } else {
@@ -133,6 +305,67 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
         }
     }
     
+    private Object view(String name, Object value) {
+        Object[] cache = views;
+        if (cache == null) {
+            cache = new Object[2 * INITIAL_VIEWS];
+            views = cache;
+        }
+        int slot = 2 * slot(name, cache.length / 2);
+        final Object cached = cache[slot + 1];
+        if (cached instanceof JsonObjectMap && JsonObjectMap.class.cast(cached).getObject() == value) {
+            return cached;
+        } else if (cached instanceof JsonArrayList && JsonArrayList.class.cast(cached).getArray() == value) {
+            return cached;
+        }
+        if (cache[slot] != null && !name.equals(cache[slot]) && cache.length / 2 < object.length()) {
+            // another key occupies this slot, grows instead of evicting its view
+            cache = grow(cache);
+            views = cache;
+            slot = 2 * slot(name, cache.length / 2);
+        }
+        final Object view;
+        if (value instanceof JSONObject) {
+            view = JSON.asMap(JSONObject.class.cast(value));
+        } else {
+            view = JSON.asList(JSONArray.class.cast(value));
+        }
+        cache[slot] = name;
+        cache[slot + 1] = view;
+        return view;
+    }
+    
+    /**
+     * Rehashes the given cache into one having twice as many slots.
+     * 
+     * @param cache the current cache
+     * @return the new cache
+     */
+    private static Object[] grow(Object[] cache) {
+        final Object[] grown = new Object[cache.length * 2];
+        final int slots = grown.length / 2;
+        for (int i = 0; i < cache.length; i += 2) {
+            if (cache[i] == null) continue;
+            final int slot = 2 * slot(cache[i].toString(), slots);
+            grown[slot] = cache[i];
+            grown[slot + 1] = cache[i + 1];
+        }
+        return grown;
+    }
+    
+    private static int slot(String name, int length) {
+        final int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+    
+    private void invalidate(Object key) {
+        final Object[] cache = views;
+        if (cache == null || key == null) return;
+        final int slot = 2 * slot(key.toString(), cache.length / 2);
+        cache[slot] = null;
+        cache[slot + 1] = null;
+    }
+    
     @Override
     public Object put(String key, Object value) {
         if (key == null) throw new NullPointerException("Key must not be null");
@@ -140,6 +373,7 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
         try {
             final Object oldValue = get(key);
             object.put(key, value);
+            invalidate(key);
             return oldValue;
         } catch (JSONException e) {
             throw new IllegalArgumentException(e);
@@ -148,11 +382,15 @@ final class JsonObjectMap extends AbstractUtilityMap<String, Object> {
     
     @Override
     public Object remove(Object key) {
+        invalidate(key);
         return object.remove(Strings.toString(key));
     }
     
     @Override
     public UtilitySet<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = Utility.asUtilitySet(new EntrySet());
+        }
         return entrySet;
     }
     
@@ -0,0 +1,616 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+import org.json.JSONException;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.rendering.Renderer;
+
+/**
+ * A pull based tokenizer which reads a single json value from a {@link Reader}
+ * using a bounded buffer, without building objects or arrays. Memory usage
+ * only depends on the nesting depth and the length of single tokens.
+ *
+ * <p>
+ *   Utf-8 encoded input from an {@link InputStream} or a {@link ByteBuffer} is
+ *   decoded directly. Values can be streamed to any {@link Renderer} using
+ *   {@link #renderValue(Renderer)}, e.g. to transform json in a single pass or
+ *   to build a tree using {@link JsonTreeRenderer}.
+ * </p>
+ *
+ * <p>
+ *   The input has to conform to RFC 4627, except that any value
+ *   is allowed on the top level.
+ * </p>
+ *
+ * <p>
+ *   This class is not thread-safe.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class JsonReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final char EMPTY_DOCUMENT = 'd';
+    private static final char NONEMPTY_DOCUMENT = 'D';
+    private static final char EMPTY_OBJECT = 'o';
+    private static final char DANGLING_KEY = 'k';
+    private static final char NONEMPTY_OBJECT = 'O';
+    private static final char EMPTY_ARRAY = 'a';
+    private static final char NONEMPTY_ARRAY = 'A';
+
+    private final Reader reader;
+
+    private final char[] buffer;
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * The number of characters read before the current buffer content.
+     */
+    private long offset;
+
+    private char[] stack = new char[32];
+
+    private int top;
+
+    private JsonToken token;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private boolean value;
+
+    private KeyInterner keyInterner;
+
+    /**
+     * Creates a new {@link JsonReader} using the default buffer size.
+     *
+     * @param reader the source
+     * @throws NullPointerException if reader is null
+     */
+    public JsonReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link JsonReader} which decodes the given utf-8 encoded stream.
+     *
+     * @since 2.2
+     * @param stream the utf-8 encoded source
+     * @throws NullPointerException if stream is null
+     */
+    public JsonReader(InputStream stream) {
+        this(new Utf8Reader(stream));
+    }
+
+    /**
+     * Creates a new {@link JsonReader} which decodes the remaining bytes of the given
+     * utf-8 encoded buffer. The position of buffer is not modified.
+     *
+     * @since 2.2
+     * @param buffer the utf-8 encoded source
+     * @throws NullPointerException if buffer is null
+     */
+    public JsonReader(ByteBuffer buffer) {
+        this(new Utf8Reader(buffer));
+    }
+
+    /**
+     * Creates a new {@link JsonReader} using the specified buffer size.
+     *
+     * @param reader the source
+     * @param bufferSize the number of characters being read at once
+     * @throws NullPointerException if reader is null
+     * @throws IllegalArgumentException if bufferSize is not positive
+     */
+    public JsonReader(Reader reader, int bufferSize) {
+        this.reader = Preconditions.checkNotNull(reader, "Reader");
+        Preconditions.checkArgument(bufferSize > 0, "BufferSize must be positive");
+        this.buffer = new char[bufferSize];
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the next token, {@link JsonToken#END_DOCUMENT} if the input is exhausted
+     * @throws IOException if reading failed
+     * @throws JSONException if the input is no valid json
+     */
+    public JsonToken next() throws IOException, JSONException {
+        token = advance();
+        return token;
+    }
+
+    private JsonToken advance() throws IOException, JSONException {
+        switch (stack[top]) {
+            case EMPTY_DOCUMENT: {
+                stack[top] = NONEMPTY_DOCUMENT;
+                return value(nextClean());
+            }
+            case NONEMPTY_DOCUMENT: {
+                if (nextClean() == -1) return JsonToken.END_DOCUMENT;
+                throw syntaxError("Expected end of input");
+            }
+            case EMPTY_OBJECT: {
+                final int c = nextClean();
+                if (c == '}') return pop(JsonToken.END_OBJECT);
+                return key(c);
+            }
+            case NONEMPTY_OBJECT: {
+                final int c = nextClean();
+                if (c == '}') return pop(JsonToken.END_OBJECT);
+                if (c != ',') throw syntaxError("Expected ',' or '}'");
+                return key(nextClean());
+            }
+            case DANGLING_KEY: {
+                if (nextClean() != ':') throw syntaxError("Expected ':'");
+                stack[top] = NONEMPTY_OBJECT;
+                return value(nextClean());
+            }
+            case EMPTY_ARRAY: {
+                final int c = nextClean();
+                if (c == ']') return pop(JsonToken.END_ARRAY);
+                stack[top] = NONEMPTY_ARRAY;
+                return value(c);
+            }
+            case NONEMPTY_ARRAY: {
+                final int c = nextClean();
+                if (c == ']') return pop(JsonToken.END_ARRAY);
+                if (c != ',') throw syntaxError("Expected ',' or ']'");
+                return value(nextClean());
+            }
+            default: {
+                throw new IllegalStateException("Unknown state " + stack[top]);
+            }
+        }
+    }
+
+    private JsonToken key(int c) throws IOException, JSONException {
+        if (c != '"') throw syntaxError("Expected key");
+        readString();
+        stack[top] = DANGLING_KEY;
+        return JsonToken.KEY;
+    }
+
+    private JsonToken value(int c) throws IOException, JSONException {
+        switch (c) {
+            case '{': {
+                push(EMPTY_OBJECT);
+                return JsonToken.START_OBJECT;
+            }
+            case '[': {
+                push(EMPTY_ARRAY);
+                return JsonToken.START_ARRAY;
+            }
+            case '"': {
+                readString();
+                return JsonToken.STRING;
+            }
+            case 't': {
+                readLiteral("rue");
+                value = true;
+                return JsonToken.BOOLEAN;
+            }
+            case 'f': {
+                readLiteral("alse");
+                value = false;
+                return JsonToken.BOOLEAN;
+            }
+            case 'n': {
+                readLiteral("ull");
+                return JsonToken.NULL;
+            }
+            case -1: {
+                throw syntaxError("Unexpected end of input");
+            }
+            default: {
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber((char) c);
+                    return JsonToken.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private void push(char mode) {
+        if (++top == stack.length) {
+            final char[] resized = new char[stack.length * 2];
+            System.arraycopy(stack, 0, resized, 0, stack.length);
+            stack = resized;
+        }
+        stack[top] = mode;
+    }
+
+    private JsonToken pop(JsonToken end) {
+        top--;
+        return end;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        final int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        limit = read;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private int nextClean() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) return -1;
+            final char c = buffer[position++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+        }
+    }
+
+    private void readLiteral(String remainder) throws IOException, JSONException {
+        for (int i = 0; i < remainder.length(); i++) {
+            if (read() != remainder.charAt(i)) throw syntaxError("Invalid literal");
+        }
+    }
+
+    private void readString() throws IOException, JSONException {
+        text.setLength(0);
+        while (true) {
+            if (position == limit && !fill()) throw syntaxError("Unterminated string");
+            // copies unescaped runs at once
+            final int start = position;
+            while (position < limit) {
+                final char c = buffer[position];
+                if (c == '"' || c == '\\' || c < ' ') break;
+                position++;
+            }
+            text.append(buffer, start, position - start);
+            if (position == limit) continue;
+            final char c = buffer[position++];
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscape();
+            } else {
+                position--;
+                throw syntaxError("Unescaped control character in string");
+            }
+        }
+    }
+
+    private void readEscape() throws IOException, JSONException {
+        final int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/': {
+                text.append((char) c);
+                break;
+            }
+            case 'b': {
+                text.append('\b');
+                break;
+            }
+            case 'f': {
+                text.append('\f');
+                break;
+            }
+            case 'n': {
+                text.append('\n');
+                break;
+            }
+            case 'r': {
+                text.append('\r');
+                break;
+            }
+            case 't': {
+                text.append('\t');
+                break;
+            }
+            case 'u': {
+                int unicode = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(read(), 16);
+                    if (digit == -1) throw syntaxError("Invalid unicode escape");
+                    unicode = (unicode << 4) | digit;
+                }
+                text.append((char) unicode);
+                break;
+            }
+            default: {
+                throw syntaxError("Invalid escape sequence");
+            }
+        }
+    }
+
+    private void readNumber(char first) throws IOException, JSONException {
+        text.setLength(0);
+        text.append(first);
+        int digits = first == '-' ? 0 : 1;
+        boolean leadingZero = first == '0';
+        boolean fraction = false;
+        boolean exponent = false;
+        int exponentDigits = 0;
+        while (true) {
+            if (position == limit && !fill()) break;
+            final char c = buffer[position];
+            if (c >= '0' && c <= '9') {
+                if (exponent) {
+                    exponentDigits++;
+                } else if (!fraction) {
+                    if (leadingZero) throw syntaxError("Leading zeros are not allowed");
+                    leadingZero = digits == 0 && c == '0';
+                    digits++;
+                } else {
+                    digits++;
+                }
+            } else if (c == '.' && !fraction && !exponent && digits > 0) {
+                fraction = true;
+                digits = 0;
+            } else if ((c == 'e' || c == 'E') && !exponent && digits > 0) {
+                exponent = true;
+            } else if ((c == '+' || c == '-') && exponent && exponentDigits == 0 && isExponentStart()) {
+                // sign of the exponent
+                text.append(c);
+                position++;
+                continue;
+            } else {
+                break;
+            }
+            text.append(c);
+            position++;
+        }
+        if (digits == 0 || (exponent && exponentDigits == 0)) throw syntaxError("Invalid number");
+    }
+
+    private boolean isExponentStart() {
+        final char last = text.charAt(text.length() - 1);
+        return last == 'e' || last == 'E';
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (offset + position));
+    }
+
+    /**
+     * Returns the token read by the last call to {@link #next()}.
+     *
+     * @return the current token, null if {@link #next()} hasn't been called yet
+     */
+    public JsonToken getToken() {
+        return token;
+    }
+
+    /**
+     * Returns the current nesting depth, i.e. the number of objects and
+     * arrays containing the current token. Start and end tokens of
+     * objects and arrays are contained in themselves.
+     *
+     * @return the current depth
+     */
+    public int getDepth() {
+        return token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY ? top + 1 : top;
+    }
+
+    /**
+     * Returns the text of the current {@link JsonToken#KEY}, {@link JsonToken#STRING}
+     * or {@link JsonToken#NUMBER} token.
+     *
+     * @return the unescaped text
+     * @throws IllegalStateException if the current token has no text
+     */
+    public String getString() {
+        Preconditions.checkState(
+            token == JsonToken.KEY || token == JsonToken.STRING || token == JsonToken.NUMBER,
+            "No text available for %s", token
+        );
+        if (token == JsonToken.KEY && keyInterner != null) return keyInterner.intern(text);
+        return text.toString();
+    }
+
+    /**
+     * Sets the interner used to share the strings of {@link JsonToken#KEY} tokens
+     * returned by {@link #getString()}. Known keys are returned without creating a new string.
+     *
+     * @since 2.2
+     * @param keyInterner the interner, null to create a new string for every key
+     */
+    public void setKeyInterner(KeyInterner keyInterner) {
+        this.keyInterner = keyInterner;
+    }
+
+    /**
+     * Returns the value of the current {@link JsonToken#NUMBER} token, using the same
+     * types as {@link org.json.JSONObject}, i.e. {@link Integer} or {@link Long} for
+     * integral numbers and {@link Double} for all others.
+     *
+     * @return the number
+     * @throws IllegalStateException if the current token is no number
+     */
+    public Number getNumber() {
+        Preconditions.checkState(token == JsonToken.NUMBER, "No number available for %s", token);
+        return parseNumber(text);
+    }
+
+    /**
+     * Parses the given valid json number.
+     *
+     * @param number the number literal
+     * @return an Integer, Long or Double
+     */
+    static Number parseNumber(CharSequence number) {
+        final int length = number.length();
+        boolean integral = true;
+        for (int i = 0; i < length; i++) {
+            final char c = number.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+                break;
+            }
+        }
+        final String literal = number.toString();
+        if (integral && length < 19) {
+            final long value = Long.parseLong(literal);
+            if (value == (int) value) return Integer.valueOf((int) value);
+            return Long.valueOf(value);
+        } else if (integral) {
+            try {
+                return Long.valueOf(literal);
+            } catch (NumberFormatException e) {
+                return Double.valueOf(literal);
+            }
+        } else {
+            return Double.valueOf(literal);
+        }
+    }
+
+    /**
+     * Returns the value of the current {@link JsonToken#BOOLEAN} token.
+     *
+     * @return the boolean value
+     * @throws IllegalStateException if the current token is no boolean
+     */
+    public boolean getBoolean() {
+        Preconditions.checkState(token == JsonToken.BOOLEAN, "No boolean available for %s", token);
+        return value;
+    }
+
+    /**
+     * Skips the value starting with the current token, i.e. all tokens up to
+     * and including the matching end token if the current token starts an object
+     * or an array. Does nothing if the current token is a scalar value.
+     *
+     * @throws IOException if reading failed
+     * @throws JSONException if the input is no valid json
+     * @throws IllegalStateException if the current token doesn't start a value
+     */
+    public void skipValue() throws IOException, JSONException {
+        Preconditions.checkState(token != null && token.isValue(), "No value starts at %s", token);
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) return;
+        int depth = 1;
+        while (depth > 0) {
+            switch (next()) {
+                case START_OBJECT:
+                case START_ARRAY: {
+                    depth++;
+                    break;
+                }
+                case END_OBJECT:
+                case END_ARRAY: {
+                    depth--;
+                    break;
+                }
+                default: {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the value starting with the current token to the given renderer,
+     * i.e. all tokens up to and including the matching end token if the current
+     * token starts an object or an array.
+     *
+     * @since 2.2
+     * @param renderer the renderer receiving the value
+     * @throws IOException if reading failed
+     * @throws JSONException if the input is no valid json
+     * @throws IllegalStateException if the current token doesn't start a value
+     * @throws de.cosmocode.rendering.RenderingException if rendering failed
+     */
+    public void renderValue(Renderer renderer) throws IOException, JSONException {
+        Preconditions.checkState(token != null && token.isValue(), "No value starts at %s", token);
+        int depth = 0;
+        while (true) {
+            switch (token) {
+                case START_OBJECT: {
+                    renderer.map();
+                    depth++;
+                    break;
+                }
+                case END_OBJECT: {
+                    renderer.endMap();
+                    depth--;
+                    break;
+                }
+                case START_ARRAY: {
+                    renderer.list();
+                    depth++;
+                    break;
+                }
+                case END_ARRAY: {
+                    renderer.endList();
+                    depth--;
+                    break;
+                }
+                case KEY: {
+                    renderer.key(getString());
+                    break;
+                }
+                case STRING: {
+                    renderer.value(getString());
+                    break;
+                }
+                case NUMBER: {
+                    final Number number = getNumber();
+                    if (number instanceof Double) {
+                        renderer.value(number.doubleValue());
+                    } else {
+                        renderer.value(number.longValue());
+                    }
+                    break;
+                }
+                case BOOLEAN: {
+                    renderer.value(value);
+                    break;
+                }
+                case NULL: {
+                    renderer.nullValue();
+                    break;
+                }
+                default: {
+                    throw new IllegalStateException("Unexpected " + token);
+                }
+            }
+            if (depth == 0) return;
+            next();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -33,7 +33,7 @@ import de.cosmocode.rendering.RenderingException;
  * @author Willi Schoenborn
  */
 @SuppressWarnings("deprecation")
-public final class JsonRenderer extends AbstractRenderer {
+public final class JsonRenderer extends AbstractRenderer implements RawRenderer {
 
     private final JSONWriter writer = new JSONStringer();
     private final JSONConstructor adapter = JSON.asConstructor(this);
@@ -152,6 +152,21 @@ public final class JsonRenderer extends AbstractRenderer {
         return this;
     }
 
+    @Override
+    public RawRenderer raw(CharSequence json) throws RenderingException {
+        if (json == null) {
+            nullValue();
+            return this;
+        }
+        final RawJson raw = new RawJson(json);
+        try {
+            writer.value(raw);
+        } catch (JSONException e) {
+            throw new RenderingException(e);
+        }
+        return this;
+    }
+
     @Override
     public String build() throws RenderingException {
         return writer.toString();
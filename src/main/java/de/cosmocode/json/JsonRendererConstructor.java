@@ -16,9 +16,10 @@
 
 package de.cosmocode.json;
 
-import org.json.JSONArray;
+import java.io.IOException;
+import java.io.StringReader;
+
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.json.extension.JSONConstructor;
 import org.json.extension.JSONEncoder;
 
@@ -36,8 +37,15 @@ import de.cosmocode.rendering.Renderer;
 @Deprecated
 final class JsonRendererConstructor implements JSONConstructor {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private final Renderer renderer;
     
+    /**
+     * Whether plain values are parsed completely instead of being copied verbatim.
+     */
+    private final boolean validating;
+    
     /**
      * Creates a new {@link JsonRendererConstructor} which
      * delegates all calls to an underlying {@link Renderer} instance.
@@ -45,7 +53,20 @@ final class JsonRendererConstructor implements JSONConstructor {
      * @param renderer the renderer this instance relies on
      */
     public JsonRendererConstructor(Renderer renderer) {
+        this(renderer, false);
+    }
+    
+    /**
+     * Creates a new {@link JsonRendererConstructor} which
+     * delegates all calls to an underlying {@link Renderer} instance.
+     * 
+     * @param renderer the renderer this instance relies on
+     * @param validating true to parse plain values completely, false to copy them
+     *        verbatim into {@link RawRenderer}s after checking their structure
+     */
+    public JsonRendererConstructor(Renderer renderer, boolean validating) {
         this.renderer = Preconditions.checkNotNull(renderer, "Renderer");
+        this.validating = validating;
     }
 
     @Override
@@ -110,10 +131,26 @@ final class JsonRendererConstructor implements JSONConstructor {
     public JSONConstructor plain(String value) throws JSONException {
         if (value == null) {
             return value(null);
-        } else if (value.startsWith("{")) {
-            return value(JSON.asMap(new JSONObject(value)));
-        } else if (value.startsWith("[")) {
-            return value(JSON.asList(new JSONArray(value)));
+        } else if (!validating && renderer instanceof RawRenderer && (value.startsWith("{") || value.startsWith("["))) {
+            try {
+                RawRenderer.class.cast(renderer).raw(value);
+            } catch (IllegalArgumentException e) {
+                throw new JSONException(e.getMessage());
+            }
+            return this;
+        } else if (value.startsWith("{") || value.startsWith("[")) {
+            // parsed completely before rendering anything, invalid values leave no partial output
+            final JsonReader reader = new JsonReader(new StringReader(value), Math.min(value.length(), BUFFER_SIZE));
+            final JsonTreeRenderer tree = new JsonTreeRenderer();
+            try {
+                reader.next();
+                reader.renderValue(tree);
+                if (reader.next() != JsonToken.END_DOCUMENT) throw new JSONException("Expected end of input");
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            JsonTreeRenderer.render(renderer, tree.build());
+            return this;
         } else {
             throw new IllegalArgumentException("Illegal plain value '" + value + "'");
         }
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Json based {@link Renderer} implementation which streams
+ * all tokens to a {@link Writer} using a bounded buffer, instead of
+ * collecting the complete output in memory.
+ *
+ * <p>
+ *   See also {@link JSON#newRenderer(Writer)}.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class JsonStreamingRenderer extends AbstractJsonRenderer implements Flushable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+
+    private final char[] buffer;
+
+    private int position;
+
+    /**
+     * Creates a new {@link JsonStreamingRenderer} using the default buffer size.
+     *
+     * @param writer the writer all output will be written to
+     * @throws NullPointerException if writer is null
+     */
+    public JsonStreamingRenderer(Writer writer) {
+        this(writer, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link JsonStreamingRenderer} using the specified buffer size.
+     *
+     * @param writer the writer all output will be written to
+     * @param bufferSize the number of characters being buffered before writing to writer
+     * @throws NullPointerException if writer is null
+     * @throws IllegalArgumentException if bufferSize is not positive
+     */
+    public JsonStreamingRenderer(Writer writer, int bufferSize) {
+        this.writer = Preconditions.checkNotNull(writer, "Writer");
+        Preconditions.checkArgument(bufferSize > 0, "BufferSize must be positive");
+        this.buffer = new char[bufferSize];
+    }
+
+    private void drain() throws RenderingException {
+        try {
+            writer.write(buffer, 0, position);
+        } catch (IOException e) {
+            throw new RenderingException(e);
+        }
+        position = 0;
+    }
+
+    @Override
+    protected void write(char c) throws RenderingException {
+        if (position == buffer.length) drain();
+        buffer[position++] = c;
+    }
+
+    @Override
+    protected void write(String s) throws RenderingException {
+        final int length = s.length();
+        int offset = 0;
+        while (offset < length) {
+            if (position == buffer.length) drain();
+            final int count = Math.min(length - offset, buffer.length - position);
+            s.getChars(offset, offset + count, buffer, position);
+            position += count;
+            offset += count;
+        }
+    }
+
+    @Override
+    protected void writeRaw(CharSequence json) throws RenderingException {
+        if (!(json instanceof String)) {
+            super.writeRaw(json);
+            return;
+        }
+        // strings are copied in bulk, like ascii only strings
+        write(String.class.cast(json));
+    }
+
+    /**
+     * Writes all buffered characters to the underlying writer and flushes it.
+     *
+     * @throws RenderingException if flushing failed
+     */
+    @Override
+    public void flush() throws RenderingException {
+        drain();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new RenderingException(e);
+        }
+    }
+
+    /**
+     * Flushes all pending output.
+     *
+     * @return the underlying writer
+     * @throws RenderingException if flushing failed
+     */
+    @Override
+    public Writer build() throws RenderingException {
+        flush();
+        return writer;
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+/**
+ * The tokens produced by a {@link JsonReader}.
+ *
+ * @since 2.2
+ */
+public enum JsonToken {
+
+    START_OBJECT,
+
+    END_OBJECT,
+
+    START_ARRAY,
+
+    END_ARRAY,
+
+    /**
+     * The key of a pair, available using {@link JsonReader#getString()}.
+     */
+    KEY,
+
+    /**
+     * A string value, available using {@link JsonReader#getString()}.
+     */
+    STRING,
+
+    /**
+     * A number value, available using {@link JsonReader#getNumber()}
+     * and {@link JsonReader#getString()}.
+     */
+    NUMBER,
+
+    /**
+     * A boolean value, available using {@link JsonReader#getBoolean()}.
+     */
+    BOOLEAN,
+
+    NULL,
+
+    /**
+     * The end of the input, which will be returned for all subsequent calls.
+     */
+    END_DOCUMENT;
+
+    /**
+     * Checks whether this token starts a value.
+     *
+     * @return true if this is neither {@link #KEY}, nor an end token
+     */
+    public boolean isValue() {
+        return this != KEY && this != END_OBJECT && this != END_ARRAY && this != END_DOCUMENT;
+    }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Iterator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.json.extension.JSONConstructor;
+import org.json.extension.JSONEncoder;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.rendering.AbstractRenderer;
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * A {@link Renderer} which builds a tree of {@link JSONObject}s and {@link JSONArray}s
+ * instead of rendering json text.
+ *
+ * <p>
+ *   Combined with {@link JsonReader#renderValue(Renderer)} this allows building trees
+ *   from streams without reading the complete input into a string first.
+ *   {@link #build()} returns the root value, usually a {@link JSONObject} or a {@link JSONArray}.
+ *   {@link JSONObject}s, {@link JSONArray}s and {@link JSONString}s passed to
+ *   {@link #value(Object)} are inserted as is.
+ * </p>
+ *
+ * <p>
+ *   This class is not thread-safe.
+ * </p>
+ *
+ * @since 2.2
+ */
+@SuppressWarnings("deprecation")
+public final class JsonTreeRenderer extends AbstractRenderer {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final JSONConstructor adapter = JSON.asConstructor(this);
+
+    /**
+     * All open objects and arrays.
+     */
+    private Object[] stack = new Object[INITIAL_DEPTH];
+
+    private int top = -1;
+
+    private String key;
+
+    private Object root;
+
+    private boolean done;
+
+    private final KeyInterner interner;
+
+    /**
+     * Creates a new {@link JsonTreeRenderer}.
+     */
+    public JsonTreeRenderer() {
+        this.interner = null;
+    }
+
+    /**
+     * Creates a new {@link JsonTreeRenderer} which shares keys using the given interner.
+     *
+     * @param interner the interner used for keys
+     * @throws NullPointerException if interner is null
+     */
+    public JsonTreeRenderer(KeyInterner interner) {
+        this.interner = Preconditions.checkNotNull(interner, "Interner");
+    }
+
+    private void add(Object value) throws RenderingException {
+        if (top == -1) {
+            if (done) throw new RenderingException("Value out of sequence");
+            root = value;
+            done = true;
+        } else if (stack[top] instanceof JSONArray) {
+            JSONArray.class.cast(stack[top]).put(value);
+        } else {
+            if (key == null) throw new RenderingException("Value out of sequence");
+            try {
+                JSONObject.class.cast(stack[top]).put(key, value);
+            } catch (JSONException e) {
+                throw new RenderingException(e);
+            }
+            key = null;
+        }
+    }
+
+    private void open(Object container) throws RenderingException {
+        add(container);
+        if (++top == stack.length) {
+            final Object[] copy = new Object[stack.length * 2];
+            System.arraycopy(stack, 0, copy, 0, top);
+            stack = copy;
+        }
+        stack[top] = container;
+    }
+
+    private void close(Class<?> type, String message) throws RenderingException {
+        if (top == -1 || !type.isInstance(stack[top]) || key != null) throw new RenderingException(message);
+        stack[top--] = null;
+    }
+
+    @Override
+    protected Renderer unknownValue(Object value) {
+        if (value instanceof JSONObject || value instanceof JSONArray || value instanceof JSONString) {
+            add(value);
+            return this;
+        } else if (value instanceof JSONEncoder) {
+            try {
+                JSONEncoder.class.cast(value).encodeJSON(adapter);
+            } catch (JSONException e) {
+                throw new RenderingException(e);
+            }
+            return this;
+        } else {
+            return super.unknownValue(value);
+        }
+    }
+
+    @Override
+    public Renderer list() throws RenderingException {
+        open(new JSONArray());
+        return this;
+    }
+
+    @Override
+    public Renderer endList() throws RenderingException {
+        close(JSONArray.class, "Misplaced endList");
+        return this;
+    }
+
+    @Override
+    public Renderer map() throws RenderingException {
+        open(new JSONObject());
+        return this;
+    }
+
+    @Override
+    public Renderer endMap() throws RenderingException {
+        close(JSONObject.class, "Misplaced endMap");
+        return this;
+    }
+
+    @Override
+    public Renderer key(CharSequence name) throws RenderingException {
+        if (top == -1 || !(stack[top] instanceof JSONObject) || key != null) {
+            throw new RenderingException("Misplaced key");
+        }
+        if (name == null) {
+            key = "null";
+        } else if (interner == null) {
+            key = name.toString();
+        } else {
+            key = interner.intern(name);
+        }
+        return this;
+    }
+
+    @Override
+    public Renderer nullValue() throws RenderingException {
+        add(JSONObject.NULL);
+        return this;
+    }
+
+    @Override
+    public Renderer value(boolean value) throws RenderingException {
+        add(Boolean.valueOf(value));
+        return this;
+    }
+
+    @Override
+    public Renderer value(long value) throws RenderingException {
+        // same types as JSONObject#stringToValue
+        if (value == (int) value) {
+            add(Integer.valueOf((int) value));
+        } else {
+            add(Long.valueOf(value));
+        }
+        return this;
+    }
+
+    @Override
+    public Renderer value(double value) throws RenderingException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new RenderingException("JSON does not allow non-finite numbers");
+        }
+        add(Double.valueOf(value));
+        return this;
+    }
+
+    @Override
+    public Renderer value(CharSequence value) throws RenderingException {
+        if (value == null) return nullValue();
+        add(value.toString());
+        return this;
+    }
+
+    /**
+     * Returns the root value.
+     *
+     * @return the root value, null if nothing has been rendered yet
+     * @throws RenderingException if objects or arrays haven't been closed yet
+     */
+    @Override
+    public Object build() throws RenderingException {
+        if (top != -1) throw new RenderingException("Unclosed " + (stack[top] instanceof JSONArray ? "list" : "map"));
+        return root;
+    }
+
+    /**
+     * Renders the given tree, e.g. one built by this class, walking {@link JSONObject}s
+     * and {@link JSONArray}s directly and rendering {@link JSONObject#NULL}s as null.
+     *
+     * @param renderer the target renderer
+     * @param value the root value
+     * @throws RenderingException if rendering failed
+     */
+    static void render(Renderer renderer, Object value) throws RenderingException {
+        if (value instanceof JSONObject) {
+            final JSONObject object = JSONObject.class.cast(value);
+            renderer.map();
+            final Iterator<?> iterator = object.keys();
+            while (iterator.hasNext()) {
+                final String key = iterator.next().toString();
+                renderer.key(key);
+                render(renderer, object.opt(key));
+            }
+            renderer.endMap();
+        } else if (value instanceof JSONArray) {
+            final JSONArray array = JSONArray.class.cast(value);
+            renderer.list();
+            for (int i = 0; i < array.length(); i++) {
+                render(renderer, array.opt(i));
+            }
+            renderer.endList();
+        } else if (value == null || JSONObject.NULL.equals(value)) {
+            renderer.nullValue();
+        } else {
+            renderer.value(value);
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Json based {@link Renderer} implementation which encodes
+ * directly into a reusable utf-8 byte buffer.
+ *
+ * <p>
+ *   Numbers and strings are written without creating intermediate
+ *   objects. Instances can be recycled using {@link #acquire()} and
+ *   {@link #release()}, which keeps one renderer and its buffer per thread.
+ * </p>
+ *
+ * <p>
+ *   This class is not thread-safe.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class JsonUtf8Renderer extends AbstractJsonRenderer {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Buffers larger than this won't be kept in the pool.
+     */
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    /**
+     * Worst case number of bytes per character, "\\u0000".
+     */
+    private static final int MAX_BYTES_PER_CHAR = 6;
+
+    private static final int MAX_LONG_LENGTH = 20;
+
+    /**
+     * The number of characters being encoded per capacity check, which bounds
+     * the space reserved in advance for escaping and multi-byte characters.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * The largest array size supported by all virtual machines.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private static final ThreadLocal<JsonUtf8Renderer> POOL = new ThreadLocal<JsonUtf8Renderer>();
+
+    private byte[] buffer;
+
+    private int position;
+
+    /**
+     * Creates a new {@link JsonUtf8Renderer} using the default initial capacity.
+     */
+    public JsonUtf8Renderer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new {@link JsonUtf8Renderer} using the specified initial capacity.
+     *
+     * @param capacity the initial capacity of the buffer in bytes
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public JsonUtf8Renderer(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Provides a {@link JsonUtf8Renderer} from the pool of the current thread.
+     * Instances should be returned to the pool using {@link #release()} when
+     * the output is no longer needed.
+     *
+     * @return an empty renderer
+     */
+    public static JsonUtf8Renderer acquire() {
+        final JsonUtf8Renderer renderer = POOL.get();
+        if (renderer == null) {
+            return new JsonUtf8Renderer();
+        } else {
+            POOL.remove();
+            return renderer;
+        }
+    }
+
+    /**
+     * Resets this renderer and returns it to the pool of the current thread.
+     * This renderer must not be used by the caller afterwards.
+     */
+    public void release() {
+        reset();
+        if (buffer.length <= MAX_POOLED_CAPACITY) {
+            POOL.set(this);
+        }
+    }
+
+    /**
+     * Discards all output and resets this renderer, keeping the buffer.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        position = 0;
+    }
+
+    /**
+     * Discards all output following the given size and resets the nesting state.
+     *
+     * @param size the number of bytes to keep
+     */
+    void truncate(int size) {
+        super.reset();
+        position = size;
+    }
+
+    private void ensure(long additional) {
+        final long required = position + additional;
+        if (required > buffer.length) {
+            if (required > MAX_CAPACITY) throw new RenderingException("Output exceeds " + MAX_CAPACITY + " bytes");
+            final byte[] copy = new byte[(int) Math.min(Math.max(required, buffer.length * 2L), MAX_CAPACITY)];
+            System.arraycopy(buffer, 0, copy, 0, position);
+            buffer = copy;
+        }
+    }
+
+    @Override
+    protected void write(char c) throws RenderingException {
+        ensure(1);
+        buffer[position++] = (byte) c;
+    }
+
+    @Override
+    protected void write(String s) throws RenderingException {
+        final int length = s.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) s.charAt(i);
+        }
+    }
+
+    @Override
+    protected void writeLong(long value) throws RenderingException {
+        if (value == Long.MIN_VALUE) {
+            write("-9223372036854775808");
+            return;
+        }
+        ensure(MAX_LONG_LENGTH);
+        long remaining = value;
+        if (remaining < 0) {
+            buffer[position++] = '-';
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long bound = 10; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        int index = position + digits;
+        position = index;
+        do {
+            buffer[--index] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+    }
+
+    @Override
+    protected void writeQuoted(CharSequence s) throws RenderingException {
+        final int length = s.length();
+        // enough for the quotes and the ascii fast path, the tail reserves space per chunk
+        ensure(length + 2L);
+        final byte[] bytes = buffer;
+        int index = position;
+        bytes[index++] = '"';
+        int i = 0;
+
+        // fast path for ascii characters which don't need escaping
+        while (i < length) {
+            final char c = s.charAt(i);
+            if (c < ' ' || c >= 0x80 || c == '"' || c == '\\') break;
+            if (c == '/' && i > 0 && s.charAt(i - 1) == '<') break;
+            bytes[index++] = (byte) c;
+            i++;
+        }
+
+        if (i < length) {
+            position = index;
+            writeQuotedTail(s, i);
+            ensure(1);
+            buffer[position++] = '"';
+        } else {
+            bytes[index++] = '"';
+            position = index;
+        }
+    }
+
+    /**
+     * Writes the remaining characters of s, starting at from, including
+     * escaping and multi-byte characters.
+     *
+     * @param s the string being written
+     * @param from the index of the first character to write
+     */
+    private void writeQuotedTail(CharSequence s, int from) {
+        final int length = s.length();
+        char previous = from == 0 ? 0 : s.charAt(from - 1);
+        int reserved = from;
+        for (int i = from; i < length; i++) {
+            if (i >= reserved) {
+                reserved = Math.min(i + CHUNK_SIZE, length);
+                ensure((long) (reserved - i) * MAX_BYTES_PER_CHAR);
+            }
+            final char c = s.charAt(i);
+            if (isEscaped(c, previous)) {
+                writeEscape(c);
+            } else if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // unpaired surrogate, same replacement as String#getBytes
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            previous = c;
+        }
+    }
+
+    @Override
+    protected void writeUtf8(byte[] json) throws RenderingException {
+        ensure(json.length);
+        System.arraycopy(json, 0, buffer, position, json.length);
+        position += json.length;
+    }
+
+    @Override
+    protected void writeRaw(CharSequence json) throws RenderingException {
+        final int length = json.length();
+        int reserved = 0;
+        for (int i = 0; i < length; i++) {
+            if (i >= reserved) {
+                reserved = Math.min(i + CHUNK_SIZE, length);
+                ensure((reserved - i) * 3L);
+            }
+            final char c = json.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(json.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, json.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return the current size of the output in bytes
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Returns a single byte of the output.
+     *
+     * @param index the index of the byte, less than {@link #size()}
+     * @return the byte at index
+     */
+    byte byteAt(int index) {
+        return buffer[index];
+    }
+
+    /**
+     * Copies the output into a new byte array.
+     *
+     * @return the utf-8 encoded output
+     */
+    public byte[] toByteArray() {
+        final byte[] copy = new byte[position];
+        System.arraycopy(buffer, 0, copy, 0, position);
+        return copy;
+    }
+
+    /**
+     * Writes the output to the given stream without copying it.
+     *
+     * @param stream the stream to write to
+     * @throws IOException if writing to stream failed
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        stream.write(buffer, 0, position);
+    }
+
+    @Override
+    public String build() throws RenderingException {
+        return new String(buffer, 0, position, Charsets.UTF_8);
+    }
+
+}
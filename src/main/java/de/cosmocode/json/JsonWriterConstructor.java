@@ -38,8 +38,18 @@ final class JsonWriterConstructor implements JSONConstructor {
 
     private final JSONWriter json;
 
+    /**
+     * Whether plain values are parsed completely instead of being copied verbatim.
+     */
+    private final boolean validating;
+
     public JsonWriterConstructor(JSONWriter json) {
+        this(json, false);
+    }
+
+    public JsonWriterConstructor(JSONWriter json, boolean validating) {
         this.json = json;
+        this.validating = validating;
     }
     
     @Override
@@ -104,18 +114,22 @@ final class JsonWriterConstructor implements JSONConstructor {
     public JSONConstructor plain(String value) throws JSONException {
         if (value == null) {
             return value(null);
-        } else if (value.startsWith("{")) {
+        } else if (validating && value.startsWith("{")) {
             try {
                 return value(new JSONObject(value));
             } catch (JSONException e) {
                 throw new IllegalArgumentException(e);
             }
-        } else if (value.startsWith("[")) {
+        } else if (validating && value.startsWith("[")) {
             try {
                 return value(new JSONArray(value));
             } catch (JSONException e) {
                 throw new IllegalArgumentException(e);
             }
+        } else if (value.startsWith("{") || value.startsWith("[")) {
+            // copied verbatim instead of being parsed and rendered again
+            json.value(new RawJson(value));
+            return this;
         } else {
             throw new IllegalArgumentException("Illegal plain value '" + value + "'");
         }
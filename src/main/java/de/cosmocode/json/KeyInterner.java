@@ -0,0 +1,165 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded, thread-safe table of shared key instances.
+ *
+ * <p>
+ *   Documents consisting of many objects of the same structure repeat the same
+ *   keys over and over. Parsers using an interner, e.g. {@link JsonReader#setKeyInterner(KeyInterner)},
+ *   {@link JsonFeedParser#JsonFeedParser(KeyInterner)} and {@link JsonTreeRenderer#JsonTreeRenderer(KeyInterner)},
+ *   store every distinct key once and look up known keys without creating a new string.
+ *   Interned keys are equal by identity, which makes {@link String#equals(Object)} return early.
+ * </p>
+ *
+ * <p>
+ *   The table never shrinks. Once the maximum size has been reached, or all slots
+ *   probed for a key are taken, unknown keys are returned as new strings without
+ *   being interned. This bounds the memory used by documents containing arbitrary
+ *   keys, e.g. maps keyed by ids. Interners can be seeded with the keys of a schema
+ *   using {@link #seed(Iterable)}. Lookups and insertions are lock-free.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class KeyInterner {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The number of slots being probed for a single key.
+     */
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<String> table;
+
+    private final int mask;
+
+    private final int maximumSize;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates a new {@link KeyInterner} holding up to {@link #DEFAULT_MAXIMUM_SIZE} keys.
+     */
+    public KeyInterner() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new {@link KeyInterner} holding up to the given number of keys.
+     *
+     * @param maximumSize the maximum number of keys
+     * @throws IllegalArgumentException if maximumSize is not positive or too large
+     */
+    public KeyInterner(int maximumSize) {
+        Preconditions.checkArgument(maximumSize > 0, "MaximumSize must be positive");
+        Preconditions.checkArgument(maximumSize <= MAXIMUM_CAPACITY / 2, "MaximumSize is too large");
+        this.maximumSize = maximumSize;
+        // a load factor of at most 0.5 keeps probe sequences short
+        final int capacity = Integer.highestOneBit(maximumSize * 2 - 1) << 1;
+        this.table = new AtomicReferenceArray<String>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Interns all given keys, e.g. the field names of a schema.
+     *
+     * @param keys the keys
+     * @return this
+     * @throws NullPointerException if keys is or contains null
+     */
+    public KeyInterner seed(Iterable<? extends CharSequence> keys) {
+        for (CharSequence key : keys) {
+            intern(key);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the shared instance of the given key. The key is interned
+     * if it is unknown and this table is not full.
+     *
+     * @param key the key
+     * @return the shared instance or a new string containing key if it can't be interned
+     * @throws NullPointerException if key is null
+     */
+    public String intern(CharSequence key) {
+        final int hash = hash(key);
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            String current = table.get(slot);
+            if (current == null) {
+                if (size.incrementAndGet() > maximumSize) {
+                    size.decrementAndGet();
+                    break;
+                }
+                final String candidate = key.toString();
+                if (table.compareAndSet(slot, null, candidate)) return candidate;
+                // lost the race for this slot
+                size.decrementAndGet();
+                current = table.get(slot);
+            }
+            if (current.hashCode() == hash && current.contentEquals(key)) return current;
+            slot = (slot + 1) & mask;
+        }
+        return key.toString();
+    }
+
+    /**
+     * Calculates the same hash as {@link String#hashCode()}.
+     *
+     * @param key the key
+     * @return the hash of key
+     */
+    private static int hash(CharSequence key) {
+        if (key instanceof String) return key.hashCode();
+        int hash = 0;
+        final int length = key.length();
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of interned keys.
+     *
+     * @return the current size
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyInterner[size=" + size() + ", maximumSize=" + maximumSize + "]";
+    }
+
+}
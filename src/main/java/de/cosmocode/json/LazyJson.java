@@ -0,0 +1,468 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Arrays;
+
+/**
+ * Static helpers scanning and decoding json text for {@link LazyJsonMap}
+ * and {@link LazyJsonList}.
+ * 
+ * <p>
+ *   Scanning a value only tracks strings and brackets, without validating
+ *   or decoding nested values. The root value is scanned once, recording the
+ *   boundaries of nested objects and arrays in a {@link Structure}, which allows
+ *   views to skip them. Values are validated when being decoded.
+ *   Syntax errors are reported as {@link IllegalArgumentException}s, because
+ *   they occur while accessing the views.
+ * </p>
+ * 
+ * @since 2.2
+ */
+final class LazyJson {
+    
+    private LazyJson() {
+        
+    }
+    
+    /**
+     * Scans the given text containing a single object and creates a view on it.
+     * 
+     * @param text the text
+     * @return a new view on the object
+     */
+    static LazyJsonMap map(CharSequence text) {
+        final Structure structure = new Structure(text);
+        return new LazyJsonMap(structure, root(structure, '{'));
+    }
+    
+    /**
+     * Scans the given text containing a single array and creates a view on it.
+     * 
+     * @param text the text
+     * @return a new view on the array
+     */
+    static LazyJsonList list(CharSequence text) {
+        final Structure structure = new Structure(text);
+        return new LazyJsonList(structure, root(structure, '['));
+    }
+    
+    /**
+     * Finds the single value of the given text, which has to start with the given character,
+     * and records the boundaries of all nested objects and arrays in the same pass.
+     * 
+     * @param structure the empty structure of the text
+     * @param first the expected first character, '{' or '['
+     * @return the index of the first character of the value
+     */
+    private static int root(Structure structure, char first) {
+        final CharSequence text = structure.text;
+        final int start = skipWhitespace(text, 0);
+        if (start == text.length() || text.charAt(start) != first) {
+            throw syntaxError("Expected '" + first + "'", start);
+        }
+        final int end = skipWhitespace(text, structure.scan(start));
+        if (end != text.length()) throw syntaxError("Expected end of input", end);
+        return start;
+    }
+    
+    /**
+     * The boundaries of the objects and arrays of a single document, recorded
+     * by a single scan of the root value. Views use it to find the end of nested
+     * objects and arrays, without scanning them again. Short objects and arrays
+     * are not recorded, which bounds its size to a fraction of the text.
+     */
+    static final class Structure {
+        
+        /**
+         * Objects and arrays having fewer characters are scanned again instead.
+         */
+        private static final int MINIMUM_LENGTH = 64;
+        
+        private final CharSequence text;
+        
+        /**
+         * Start positions in document order, hence sorted.
+         */
+        private int[] starts = new int[16];
+        
+        private int[] ends = new int[16];
+        
+        private int size;
+        
+        private Structure(CharSequence text) {
+            this.text = text;
+        }
+        
+        CharSequence getText() {
+            return text;
+        }
+        
+        /**
+         * Scans the object or array starting at the given position.
+         * 
+         * @param start the index of the opening bracket
+         * @return the index after the closing bracket
+         */
+        private int scan(int start) {
+            int[] open = new int[16];
+            int depth = 0;
+            int i = start;
+            final int length = text.length();
+            while (i < length) {
+                final char c = text.charAt(i);
+                if (c == '"') {
+                    i = skipString(text, i);
+                    continue;
+                } else if (c == '{' || c == '[') {
+                    if (depth == open.length) open = Arrays.copyOf(open, depth * 2);
+                    open[depth++] = add(i);
+                } else if (c == '}' || c == ']') {
+                    close(open[--depth], i + 1);
+                    if (depth == 0) return i + 1;
+                }
+                i++;
+            }
+            throw syntaxError("Unterminated " + (text.charAt(start) == '{' ? "object" : "array"), start);
+        }
+        
+        private int add(int start) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            return size++;
+        }
+        
+        private void close(int entry, int end) {
+            // nested values are even shorter and have been dropped already
+            if (end - starts[entry] < MINIMUM_LENGTH && entry == size - 1) {
+                size--;
+            } else {
+                ends[entry] = end;
+            }
+        }
+        
+        /**
+         * Finds the end of the value starting at the given index, looking
+         * up the ends of recorded objects and arrays.
+         * 
+         * @param index the index of the first character of the value
+         * @return the index after the last character of the value
+         */
+        int skip(int index) {
+            if (index < text.length() && (text.charAt(index) == '{' || text.charAt(index) == '[')) {
+                final int entry = Arrays.binarySearch(starts, 0, size, index);
+                if (entry >= 0) return ends[entry];
+            }
+            return skipValue(text, index);
+        }
+        
+        /**
+         * Decodes the value in the given range.
+         * 
+         * @param start the index of the first character
+         * @param end the index after the last character
+         * @return the value, objects and arrays as lazy views, null for json nulls
+         */
+        Object decode(int start, int end) {
+            switch (text.charAt(start)) {
+                case '{': {
+                    return new LazyJsonMap(this, start);
+                }
+                case '[': {
+                    return new LazyJsonList(this, start);
+                }
+                default: {
+                    return LazyJson.decode(text, start, end);
+                }
+            }
+        }
+        
+    }
+    
+    /**
+     * Returns the index of the first non whitespace character at or after index.
+     * 
+     * @param text the text
+     * @param index the start index
+     * @return the index of the next non whitespace character or the length of text
+     */
+    static int skipWhitespace(CharSequence text, int index) {
+        int i = index;
+        while (i < text.length()) {
+            final char c = text.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') break;
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Expects the given character at the next non whitespace position.
+     * 
+     * @param text the text
+     * @param index the start index
+     * @param expected the expected character
+     * @return the index after the expected character
+     */
+    static int expect(CharSequence text, int index, char expected) {
+        final int i = skipWhitespace(text, index);
+        if (i == text.length() || text.charAt(i) != expected) {
+            throw syntaxError("Expected '" + expected + "'", i);
+        }
+        return i + 1;
+    }
+    
+    /**
+     * Finds the end of the value starting at the given index.
+     * 
+     * @param text the text
+     * @param index the index of the first character of the value
+     * @return the index after the last character of the value
+     */
+    static int skipValue(CharSequence text, int index) {
+        if (index == text.length()) throw syntaxError("Expected value", index);
+        final char first = text.charAt(index);
+        if (first == '"') {
+            return skipString(text, index);
+        } else if (first == '{' || first == '[') {
+            int depth = 0;
+            int i = index;
+            while (i < text.length()) {
+                final char c = text.charAt(i);
+                if (c == '"') {
+                    i = skipString(text, i);
+                    continue;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    if (depth == 0) return i + 1;
+                }
+                i++;
+            }
+            throw syntaxError("Unterminated " + (first == '{' ? "object" : "array"), index);
+        } else {
+            int i = index;
+            while (i < text.length()) {
+                final char c = text.charAt(i);
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r') break;
+                i++;
+            }
+            if (i == index) throw syntaxError("Expected value", index);
+            return i;
+        }
+    }
+    
+    private static int skipString(CharSequence text, int index) {
+        int i = index + 1;
+        while (i < text.length()) {
+            final char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '"') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        throw syntaxError("Unterminated string", index);
+    }
+    
+    /**
+     * Decodes the primitive value in the given range.
+     * 
+     * @param text the text
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the value, null for json nulls
+     */
+    static Object decode(CharSequence text, int start, int end) {
+        final char first = text.charAt(start);
+        switch (first) {
+            case '"': {
+                return string(text, start, end);
+            }
+            case 't': {
+                literal(text, start, end, "true");
+                return Boolean.TRUE;
+            }
+            case 'f': {
+                literal(text, start, end, "false");
+                return Boolean.FALSE;
+            }
+            case 'n': {
+                literal(text, start, end, "null");
+                return null;
+            }
+            default: {
+                if (!isNumber(text, start, end)) throw syntaxError("Invalid value", start);
+                return JsonReader.parseNumber(substring(text, start, end));
+            }
+        }
+    }
+    
+    private static void literal(CharSequence text, int start, int end, String literal) {
+        if (end - start != literal.length()) throw syntaxError("Invalid literal", start);
+        for (int i = 0; i < literal.length(); i++) {
+            if (text.charAt(start + i) != literal.charAt(i)) throw syntaxError("Invalid literal", start);
+        }
+    }
+    
+    private static boolean isNumber(CharSequence text, int start, int end) {
+        int i = start;
+        if (i < end && text.charAt(i) == '-') i++;
+        final int integral = i;
+        while (i < end && isDigit(text.charAt(i))) i++;
+        if (i == integral || (i - integral > 1 && text.charAt(integral) == '0')) return false;
+        if (i < end && text.charAt(i) == '.') {
+            final int fraction = ++i;
+            while (i < end && isDigit(text.charAt(i))) i++;
+            if (i == fraction) return false;
+        }
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) i++;
+            final int exponent = i;
+            while (i < end && isDigit(text.charAt(i))) i++;
+            if (i == exponent) return false;
+        }
+        return i == end;
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * Decodes the quoted string in the given range.
+     * 
+     * @param text the text
+     * @param start the index of the opening quote
+     * @param end the index after the closing quote
+     * @return the unescaped string
+     */
+    static String string(CharSequence text, int start, int end) {
+        int i = start + 1;
+        final int last = end - 1;
+        while (i < last && text.charAt(i) != '\\') {
+            if (text.charAt(i) < ' ') throw syntaxError("Unescaped control character", i);
+            i++;
+        }
+        if (i == last) return substring(text, start + 1, last);
+        
+        final StringBuilder builder = new StringBuilder(last - start);
+        int run = start + 1;
+        while (i < last) {
+            final char c = text.charAt(i);
+            if (c < ' ') {
+                throw syntaxError("Unescaped control character", i);
+            } else if (c != '\\') {
+                i++;
+                continue;
+            }
+            append(builder, text, run, i);
+            i++;
+            final char escaped = text.charAt(i++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/': {
+                    builder.append(escaped);
+                    break;
+                }
+                case 'b': {
+                    builder.append('\b');
+                    break;
+                }
+                case 'f': {
+                    builder.append('\f');
+                    break;
+                }
+                case 'n': {
+                    builder.append('\n');
+                    break;
+                }
+                case 'r': {
+                    builder.append('\r');
+                    break;
+                }
+                case 't': {
+                    builder.append('\t');
+                    break;
+                }
+                case 'u': {
+                    if (i + 4 > last) throw syntaxError("Invalid unicode escape", i - 2);
+                    int code = 0;
+                    for (int j = 0; j < 4; j++) {
+                        final int digit = Character.digit(text.charAt(i++), 16);
+                        if (digit == -1) throw syntaxError("Invalid unicode escape", i - 1);
+                        code = (code << 4) | digit;
+                    }
+                    builder.append((char) code);
+                    break;
+                }
+                default: {
+                    throw syntaxError("Invalid escape", i - 2);
+                }
+            }
+            run = i;
+        }
+        append(builder, text, run, last);
+        return builder.toString();
+    }
+    
+    /**
+     * Returns the characters in the given range as a string.
+     * 
+     * @param text the text
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the string, decoded if text contains utf-8
+     */
+    private static String substring(CharSequence text, int start, int end) {
+        if (text instanceof Utf8Sequence) {
+            return Utf8Sequence.class.cast(text).decode(start, end);
+        } else {
+            return text.subSequence(start, end).toString();
+        }
+    }
+    
+    /**
+     * Appends the unescaped run in the given range.
+     * 
+     * @param builder the builder
+     * @param text the text
+     * @param start the index of the first character
+     * @param end the index after the last character
+     */
+    private static void append(StringBuilder builder, CharSequence text, int start, int end) {
+        if (text instanceof Utf8Sequence) {
+            // runs of utf-8 text have to be decoded as a whole
+            builder.append(Utf8Sequence.class.cast(text).decode(start, end));
+        } else {
+            builder.append(text, start, end);
+        }
+    }
+    
+    static IllegalArgumentException syntaxError(String message, int index) {
+        return new IllegalArgumentException(message + " at character " + index);
+    }
+    
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.cosmocode.collections.utility.AbstractUtilityList;
+
+/**
+ * A read only {@link List}-view on a json array in raw text.
+ * 
+ * <p>
+ *   The array is scanned on first access, recording the ranges of all
+ *   elements, without decoding them. Elements are decoded and cached on
+ *   first access, nested objects and arrays become lazy views themselves.
+ *   Json nulls are returned as null. This class is not thread-safe.
+ * </p>
+ * 
+ * See also {@link JSON#asList(CharSequence)}.
+ * 
+ * @since 2.2
+ */
+final class LazyJsonList extends AbstractUtilityList<Object> implements RandomAccess {
+    
+    private static final Object ABSENT = new Object();
+    
+    private final LazyJson.Structure structure;
+    
+    private final CharSequence text;
+    
+    private final int start;
+    
+    private int size = -1;
+    
+    private int[] starts;
+    
+    private int[] ends;
+    
+    private Object[] values;
+    
+    LazyJsonList(LazyJson.Structure structure, int start) {
+        this.structure = structure;
+        this.text = structure.getText();
+        this.start = start;
+    }
+    
+    private void index() {
+        if (size != -1) return;
+        starts = new int[4];
+        ends = new int[4];
+        int count = 0;
+        int i = LazyJson.skipWhitespace(text, LazyJson.expect(text, start, '['));
+        if (i < text.length() && text.charAt(i) == ']') {
+            size = 0;
+            values = new Object[0];
+            return;
+        }
+        while (true) {
+            final int valueStart = LazyJson.skipWhitespace(text, i);
+            final int valueEnd = structure.skip(valueStart);
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = valueStart;
+            ends[count] = valueEnd;
+            count++;
+            i = LazyJson.skipWhitespace(text, valueEnd);
+            if (i < text.length() && text.charAt(i) == ',') {
+                i++;
+            } else if (i < text.length() && text.charAt(i) == ']') {
+                break;
+            } else {
+                throw LazyJson.syntaxError("Expected ',' or ']'", i);
+            }
+        }
+        values = new Object[count];
+        Arrays.fill(values, ABSENT);
+        size = count;
+    }
+    
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        Object value = values[index];
+        if (value == ABSENT) {
+            value = structure.decode(starts[index], ends[index]);
+            values[index] = value;
+        }
+        return value;
+    }
+    
+    @Override
+    public int size() {
+        index();
+        return size;
+    }
+    
+}
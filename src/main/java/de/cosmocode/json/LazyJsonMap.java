@@ -0,0 +1,228 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.Maps;
+
+import de.cosmocode.collections.utility.AbstractUtilityMap;
+import de.cosmocode.collections.utility.Utility;
+import de.cosmocode.collections.utility.UtilitySet;
+
+/**
+ * A read only {@link Map}-view on a json object in raw text.
+ * 
+ * <p>
+ *   The object is scanned on first access, recording the decoded keys and
+ *   the ranges of their values, without decoding nested values. Values are
+ *   decoded and cached on first access, nested objects and arrays become lazy
+ *   views themselves. Like in {@link org.json.JSONObject}, the last value of
+ *   duplicate keys wins. This class is not thread-safe.
+ * </p>
+ * 
+ * See also {@link JSON#asMap(CharSequence)}.
+ * 
+ * @since 2.2
+ */
+final class LazyJsonMap extends AbstractUtilityMap<String, Object> {
+    
+    private static final Object ABSENT = new Object();
+    
+    /**
+     * Objects having more keys use a hash map for lookups.
+     */
+    private static final int LINEAR = 8;
+    
+    private final LazyJson.Structure structure;
+    
+    private final CharSequence text;
+    
+    private final int start;
+    
+    private int size = -1;
+    
+    private String[] keys;
+    
+    private int[] starts;
+    
+    private int[] ends;
+    
+    private Object[] values;
+    
+    private Map<String, Integer> lookup;
+    
+    private UtilitySet<Map.Entry<String, Object>> entrySet;
+    
+    LazyJsonMap(LazyJson.Structure structure, int start) {
+        this.structure = structure;
+        this.text = structure.getText();
+        this.start = start;
+    }
+    
+    private void index() {
+        if (size != -1) return;
+        keys = new String[4];
+        starts = new int[4];
+        ends = new int[4];
+        int count = 0;
+        int i = LazyJson.skipWhitespace(text, LazyJson.expect(text, start, '{'));
+        if (i < text.length() && text.charAt(i) == '}') {
+            size = 0;
+            values = new Object[0];
+            return;
+        }
+        while (true) {
+            i = LazyJson.skipWhitespace(text, i);
+            if (i == text.length() || text.charAt(i) != '"') throw LazyJson.syntaxError("Expected key", i);
+            final int keyEnd = LazyJson.skipValue(text, i);
+            final String key = LazyJson.string(text, i, keyEnd);
+            final int valueStart = LazyJson.skipWhitespace(text, LazyJson.expect(text, keyEnd, ':'));
+            final int valueEnd = structure.skip(valueStart);
+            final int slot = find(key, count);
+            if (slot == -1) {
+                if (count == keys.length) grow();
+                keys[count] = key;
+                starts[count] = valueStart;
+                ends[count] = valueEnd;
+                if (lookup != null) {
+                    lookup.put(key, Integer.valueOf(count));
+                } else if (count == LINEAR) {
+                    lookup = Maps.newHashMap();
+                    for (int j = 0; j <= count; j++) {
+                        lookup.put(keys[j], Integer.valueOf(j));
+                    }
+                }
+                count++;
+            } else {
+                starts[slot] = valueStart;
+                ends[slot] = valueEnd;
+            }
+            i = LazyJson.skipWhitespace(text, valueEnd);
+            if (i < text.length() && text.charAt(i) == ',') {
+                i++;
+            } else if (i < text.length() && text.charAt(i) == '}') {
+                break;
+            } else {
+                throw LazyJson.syntaxError("Expected ',' or '}'", i);
+            }
+        }
+        values = new Object[count];
+        Arrays.fill(values, ABSENT);
+        size = count;
+    }
+    
+    private void grow() {
+        keys = Arrays.copyOf(keys, keys.length * 2);
+        starts = Arrays.copyOf(starts, starts.length * 2);
+        ends = Arrays.copyOf(ends, ends.length * 2);
+    }
+    
+    private int find(Object key, int count) {
+        if (lookup != null) {
+            final Integer slot = lookup.get(key);
+            return slot == null ? -1 : slot.intValue();
+        }
+        for (int i = 0; i < count; i++) {
+            if (keys[i].equals(key)) return i;
+        }
+        return -1;
+    }
+    
+    private Object value(int slot) {
+        Object value = values[slot];
+        if (value == ABSENT) {
+            value = structure.decode(starts[slot], ends[slot]);
+            values[slot] = value;
+        }
+        return value;
+    }
+    
+    @Override
+    public Object get(Object key) {
+        index();
+        final int slot = find(key, size);
+        return slot == -1 ? null : value(slot);
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        index();
+        return find(key, size) != -1;
+    }
+    
+    @Override
+    public int size() {
+        index();
+        return size;
+    }
+    
+    @Override
+    public UtilitySet<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = Utility.asUtilitySet(new EntrySet());
+        }
+        return entrySet;
+    }
+    
+    /**
+     * Read only entry set, iterating in document order.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            index();
+            return new Iterator<Map.Entry<String, Object>>() {
+                
+                private int slot;
+                
+                @Override
+                public boolean hasNext() {
+                    return slot < size;
+                }
+                
+                @Override
+                public Map.Entry<String, Object> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    final Map.Entry<String, Object> entry = 
+                        new AbstractMap.SimpleImmutableEntry<String, Object>(keys[slot], value(slot));
+                    slot++;
+                    return entry;
+                }
+                
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+                
+            };
+        }
+        
+        @Override
+        public int size() {
+            return LazyJsonMap.this.size();
+        }
+        
+    }
+    
+}
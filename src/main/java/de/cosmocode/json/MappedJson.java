@@ -0,0 +1,159 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.collections.utility.UtilityList;
+import de.cosmocode.collections.utility.UtilityMap;
+
+/**
+ * Static utility methods for reading large utf-8 encoded json files
+ * without copying them onto the heap.
+ *
+ * <p>
+ *   Files are memory mapped and either viewed lazily, like text using
+ *   {@link JSON#asMap(CharSequence)}, or read as a stream of tokens using a
+ *   {@link JsonReader}. Lazy views work directly on the mapped bytes, values
+ *   and strings are decoded when being accessed. Syntax errors of views are
+ *   reported with byte offsets. A leading byte order mark is skipped.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class MappedJson {
+
+    private MappedJson() {
+
+    }
+
+    /**
+     * Maps the given file read only into memory.
+     *
+     * @param file the file
+     * @return the mapped file
+     * @throws IOException if mapping failed or file is larger than 2 GiB
+     * @throws NullPointerException if file is null
+     */
+    public static MappedByteBuffer map(File file) throws IOException {
+        Preconditions.checkNotNull(file, "File");
+        final FileInputStream stream = new FileInputStream(file);
+        try {
+            final FileChannel channel = stream.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("File " + file + " is too large to be mapped");
+            // the mapping stays valid after closing the channel
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Provides a lazy read only view on the json object contained in the given file.
+     * See {@link #asMap(ByteBuffer)} for details.
+     *
+     * @param file the utf-8 encoded file
+     * @return a read only map backed by the mapped file
+     * @throws IOException if mapping failed or file is larger than 2 GiB
+     * @throws NullPointerException if file is null
+     * @throws IllegalArgumentException if file doesn't contain a single json object
+     */
+    public static UtilityMap<String, Object> asMap(File file) throws IOException {
+        return asMap(map(file));
+    }
+
+    /**
+     * Provides a lazy read only view on the json array contained in the given file.
+     * See {@link #asMap(ByteBuffer)} for details.
+     *
+     * @param file the utf-8 encoded file
+     * @return a read only list backed by the mapped file
+     * @throws IOException if mapping failed or file is larger than 2 GiB
+     * @throws NullPointerException if file is null
+     * @throws IllegalArgumentException if file doesn't contain a single json array
+     */
+    public static UtilityList<Object> asList(File file) throws IOException {
+        return asList(map(file));
+    }
+
+    /**
+     * Provides a lazy read only view on the json object contained in the remaining
+     * utf-8 encoded bytes of the given buffer, which behaves like {@link JSON#asMap(CharSequence)}.
+     * The buffer is scanned once, nested views don't scan it again. The position of buffer
+     * is not modified, its content must not be modified while the view is in use.
+     *
+     * @param buffer the utf-8 encoded json text
+     * @return a read only map backed by the given buffer
+     * @throws NullPointerException if buffer is null
+     * @throws IllegalArgumentException if buffer doesn't contain a single json object
+     */
+    public static UtilityMap<String, Object> asMap(ByteBuffer buffer) {
+        final CharSequence text = text(buffer);
+        return LazyJson.map(text);
+    }
+
+    /**
+     * Provides a lazy read only view on the json array contained in the remaining
+     * utf-8 encoded bytes of the given buffer. See {@link #asMap(ByteBuffer)} for details.
+     *
+     * @param buffer the utf-8 encoded json text
+     * @return a read only list backed by the given buffer
+     * @throws NullPointerException if buffer is null
+     * @throws IllegalArgumentException if buffer doesn't contain a single json array
+     */
+    public static UtilityList<Object> asList(ByteBuffer buffer) {
+        final CharSequence text = text(buffer);
+        return LazyJson.list(text);
+    }
+
+    private static CharSequence text(ByteBuffer buffer) {
+        final ByteBuffer text = buffer.duplicate();
+        final int position = text.position();
+        if (text.remaining() >= 3 && text.get(position) == (byte) 0xEF && text.get(position + 1) == (byte) 0xBB &&
+            text.get(position + 2) == (byte) 0xBF) {
+            text.position(position + 3);
+        }
+        return new Utf8Sequence(text);
+    }
+
+    /**
+     * Creates a {@link JsonReader} streaming the tokens of the given file. Files
+     * of up to 2 GiB are mapped, larger files are read using a stream.
+     *
+     * @param file the utf-8 encoded file
+     * @return a new reader, which should be closed after use
+     * @throws IOException if opening file failed
+     * @throws NullPointerException if file is null
+     */
+    public static JsonReader newReader(File file) throws IOException {
+        Preconditions.checkNotNull(file, "File");
+        if (file.length() > Integer.MAX_VALUE) {
+            return new JsonReader(new FileInputStream(file));
+        } else {
+            return new JsonReader(map(file));
+        }
+    }
+
+}
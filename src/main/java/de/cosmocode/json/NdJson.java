@@ -0,0 +1,287 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import de.cosmocode.collections.utility.UtilityMap;
+
+/**
+ * Static utility methods for newline delimited json, i.e. files containing
+ * one json object per line, as used by log files and exports.
+ *
+ * <p>
+ *   Files are memory mapped and split into partitions at line boundaries. The records
+ *   of all partitions are decoded in parallel using {@link JsonFeedParser} and
+ *   returned in file order as views created by {@link JSON#asMap(JSONObject)}.
+ *   Empty lines are skipped, lines may end with {@code "\r\n"}. Keys are shared
+ *   between all records of a single read using a {@link KeyInterner}.
+ *   Records can be written using {@link NdJsonWriter}.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class NdJson {
+
+    /**
+     * The minimum size of a partition in bytes.
+     */
+    static final int PARTITION_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum size of a single mapping.
+     */
+    private static final long SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private NdJson() {
+
+    }
+
+    /**
+     * Reads all records of the given file using a temporary thread pool
+     * having one thread per available processor.
+     *
+     * @param file the utf-8 encoded file
+     * @return a list of all records in file order
+     * @throws IOException if reading file failed
+     * @throws JSONException if any line contains no valid json object
+     * @throws NullPointerException if file is null
+     */
+    public static List<UtilityMap<String, Object>> read(File file) throws IOException, JSONException {
+        Preconditions.checkNotNull(file, "File");
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return read(file, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads all records of the given file using the given executor.
+     *
+     * @param file the utf-8 encoded file
+     * @param executor the executor decoding partitions
+     * @return a list of all records in file order
+     * @throws IOException if reading file failed
+     * @throws JSONException if any line contains no valid json object or the calling thread has been interrupted
+     * @throws NullPointerException if file or executor is null
+     */
+    public static List<UtilityMap<String, Object>> read(File file, ExecutorService executor)
+        throws IOException, JSONException {
+
+        Preconditions.checkNotNull(file, "File");
+        Preconditions.checkNotNull(executor, "Executor");
+        final FileInputStream stream = new FileInputStream(file);
+        try {
+            final FileChannel channel = stream.getChannel();
+            final long size = channel.size();
+            final List<UtilityMap<String, Object>> records = Lists.newArrayList();
+            final KeyInterner interner = new KeyInterner();
+            long offset = 0;
+            while (offset < size) {
+                final MappedByteBuffer segment = channel.map(
+                    FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, SEGMENT_SIZE)
+                );
+                int end = segment.limit();
+                if (offset + end < size) {
+                    // segments end after the last complete line
+                    while (end > 0 && segment.get(end - 1) != '\n') end--;
+                    if (end == 0) throw new JSONException("Line at byte " + offset + " is too long");
+                    segment.limit(end);
+                }
+                read(segment, executor, interner, offset, PARTITION_SIZE, records);
+                offset += end;
+            }
+            return records;
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads all records contained in the remaining bytes of the given buffer,
+     * e.g. a mapped region of a file. The position of buffer is not modified.
+     *
+     * @param buffer the utf-8 encoded records
+     * @param executor the executor decoding partitions
+     * @return a list of all records in order
+     * @throws JSONException if any line contains no valid json object or the calling thread has been interrupted
+     * @throws NullPointerException if buffer or executor is null
+     */
+    public static List<UtilityMap<String, Object>> read(ByteBuffer buffer, ExecutorService executor)
+        throws JSONException {
+
+        return read(buffer, executor, new KeyInterner());
+    }
+
+    /**
+     * Reads all records contained in the remaining bytes of the given buffer,
+     * sharing keys using the given interner, e.g. one seeded with the keys of a schema.
+     * The position of buffer is not modified.
+     *
+     * @param buffer the utf-8 encoded records
+     * @param executor the executor decoding partitions
+     * @param interner the interner used for keys
+     * @return a list of all records in order
+     * @throws JSONException if any line contains no valid json object or the calling thread has been interrupted
+     * @throws NullPointerException if buffer, executor or interner is null
+     */
+    public static List<UtilityMap<String, Object>> read(ByteBuffer buffer, ExecutorService executor,
+        KeyInterner interner) throws JSONException {
+
+        Preconditions.checkNotNull(buffer, "Buffer");
+        Preconditions.checkNotNull(executor, "Executor");
+        Preconditions.checkNotNull(interner, "Interner");
+        final List<UtilityMap<String, Object>> records = Lists.newArrayList();
+        read(buffer, executor, interner, 0, PARTITION_SIZE, records);
+        return records;
+    }
+
+    /**
+     * Splits the remaining bytes of the given buffer into partitions of at least
+     * the given size, decodes them in parallel and adds all records in order.
+     *
+     * @param buffer the buffer
+     * @param executor the executor
+     * @param interner the interner shared by all partitions
+     * @param offset the offset of the buffer's position in the input, used in error messages
+     * @param partitionSize the minimum size of a partition
+     * @param records the list receiving all records
+     * @throws JSONException if decoding failed
+     */
+    static void read(ByteBuffer buffer, ExecutorService executor, KeyInterner interner, long offset,
+        int partitionSize, List<UtilityMap<String, Object>> records) throws JSONException {
+
+        final int position = buffer.position();
+        final int limit = buffer.limit();
+        final List<Future<List<UtilityMap<String, Object>>>> futures = Lists.newArrayList();
+        try {
+            int start = position;
+            while (start < limit) {
+                int end = Math.min(start + partitionSize, limit);
+                while (end < limit && buffer.get(end - 1) != '\n') end++;
+                final ByteBuffer partition = buffer.duplicate();
+                partition.limit(end).position(start);
+                futures.add(executor.submit(new Partition(partition, interner, offset + start - position)));
+                start = end;
+            }
+            for (Future<List<UtilityMap<String, Object>>> future : futures) {
+                records.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSONException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JSONException) {
+                throw (JSONException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw new JSONException(e.getCause());
+            }
+        } finally {
+            for (Future<List<UtilityMap<String, Object>>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Creates a new {@link NdJsonWriter} writing to the given stream.
+     *
+     * @param stream the stream receiving utf-8 encoded records
+     * @return a new writer
+     * @throws NullPointerException if stream is null
+     */
+    public static NdJsonWriter newWriter(OutputStream stream) {
+        return new NdJsonWriter(stream);
+    }
+
+    /**
+     * Decodes all lines of a single partition.
+     */
+    private static final class Partition implements Callable<List<UtilityMap<String, Object>>> {
+
+        private final ByteBuffer buffer;
+
+        private final KeyInterner interner;
+
+        private final long offset;
+
+        public Partition(ByteBuffer buffer, KeyInterner interner, long offset) {
+            this.buffer = buffer;
+            this.interner = interner;
+            this.offset = offset;
+        }
+
+        @Override
+        public List<UtilityMap<String, Object>> call() throws JSONException {
+            // a single bulk copy is cheaper than reading mapped memory byte by byte
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            final List<UtilityMap<String, Object>> records = Lists.newArrayList();
+            int start = 0;
+            while (start < bytes.length) {
+                int end = start;
+                boolean blank = true;
+                while (end < bytes.length && bytes[end] != '\n') {
+                    final byte b = bytes[end++];
+                    if (b != ' ' && b != '\r' && b != '\t') blank = false;
+                }
+                if (!blank) records.add(decode(bytes, start, end));
+                start = end + 1;
+            }
+            return records;
+        }
+
+        private UtilityMap<String, Object> decode(byte[] bytes, int start, int end) throws JSONException {
+            final JsonFeedParser parser = new JsonFeedParser(interner);
+            final Object root;
+            try {
+                parser.feed(ByteBuffer.wrap(bytes, start, end - start));
+                root = parser.finish();
+            } catch (JSONException e) {
+                throw new JSONException("Invalid line at byte " + (offset + start) + ": " + e.getMessage());
+            }
+            if (root instanceof JSONObject) return JSON.asMap((JSONObject) root);
+            throw new JSONException("Expected object in line at byte " + (offset + start));
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.json.JSONObject;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Writes newline delimited json, one record per line, to an {@link OutputStream}.
+ *
+ * <p>
+ *   Records are rendered by a {@link JsonUtf8Renderer} into a single block, which is
+ *   written to the stream once it exceeds the block size. Records which can't be
+ *   rendered are discarded completely, i.e. the output never contains partial lines.
+ *   Every record is a json object, hence files written by this class can be read
+ *   using {@link NdJson#read(java.io.File)}.
+ * </p>
+ *
+ * <p>
+ *   This class is not thread-safe.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class NdJsonWriter implements Closeable, Flushable {
+
+    private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final OutputStream stream;
+
+    private final int blockSize;
+
+    private final JsonUtf8Renderer renderer;
+
+    private long count;
+
+    /**
+     * Creates a new {@link NdJsonWriter} using the default block size of 64 KiB.
+     *
+     * @param stream the stream receiving utf-8 encoded records
+     * @throws NullPointerException if stream is null
+     */
+    public NdJsonWriter(OutputStream stream) {
+        this(stream, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new {@link NdJsonWriter} using the specified block size.
+     *
+     * @param stream the stream receiving utf-8 encoded records
+     * @param blockSize the number of bytes being written at once
+     * @throws NullPointerException if stream is null
+     * @throws IllegalArgumentException if blockSize is not positive
+     */
+    public NdJsonWriter(OutputStream stream, int blockSize) {
+        this.stream = Preconditions.checkNotNull(stream, "Stream");
+        Preconditions.checkArgument(blockSize > 0, "BlockSize must be positive");
+        this.blockSize = blockSize;
+        this.renderer = new JsonUtf8Renderer(blockSize);
+    }
+
+    /**
+     * Writes the given record as a single line. Records may be {@link JSONObject}s
+     * and all values accepted by {@link JsonUtf8Renderer#value(Object)} which render
+     * an object, e.g. maps and {@link de.cosmocode.rendering.Renderable}s.
+     * Records failing for any reason are discarded completely.
+     *
+     * @param record the record to write
+     * @return this
+     * @throws IOException if writing a complete block failed
+     * @throws NullPointerException if record is null
+     * @throws RenderingException if record can't be rendered or renders no object
+     */
+    public NdJsonWriter write(Object record) throws IOException {
+        Preconditions.checkNotNull(record, "Record");
+        final int mark = renderer.size();
+        boolean written = false;
+        try {
+            if (record instanceof JSONObject) {
+                // the list views of JSON.asMap reject json nulls
+                JsonTreeRenderer.render(renderer, record);
+            } else {
+                renderer.value(record);
+            }
+            if (renderer.size() > mark && renderer.byteAt(mark) != '{') {
+                throw new RenderingException("Record must be an object");
+            }
+            renderer.endLine();
+            written = true;
+        } finally {
+            // covers runtime exceptions and errors of nested values as well
+            if (!written) renderer.truncate(mark);
+        }
+        count++;
+        if (renderer.size() >= blockSize) drain();
+        return this;
+    }
+
+    private void drain() throws IOException {
+        renderer.writeTo(stream);
+        renderer.reset();
+    }
+
+    /**
+     * Returns the number of records written so far.
+     *
+     * @return the number of records
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        stream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            stream.close();
+        }
+    }
+
+}
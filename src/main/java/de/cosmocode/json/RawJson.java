@@ -0,0 +1,113 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import org.json.JSONString;
+
+/**
+ * A pre-rendered json value, which is written verbatim by {@link org.json.JSONWriter}.
+ *
+ * @since 2.2
+ */
+final class RawJson implements JSONString {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final CharSequence json;
+
+    RawJson(CharSequence json) {
+        this.json = escape(validate(json));
+    }
+
+    /**
+     * Escapes all occurrences of {@code "</"} as {@code "<\/"}, like all json renderers of this
+     * package do, which allows embedding the output into html. These can only occur inside
+     * of strings of valid json.
+     *
+     * @param json the json text
+     * @return json if it doesn't contain {@code "</"}, an escaped copy otherwise
+     */
+    static CharSequence escape(CharSequence json) {
+        final int length = json.length();
+        StringBuilder escaped = null;
+        int copied = 0;
+        for (int i = 1; i < length; i++) {
+            if (json.charAt(i) == '/' && json.charAt(i - 1) == '<') {
+                if (escaped == null) escaped = new StringBuilder(length + 16);
+                escaped.append(json, copied, i).append('\\');
+                copied = i;
+            }
+        }
+        if (escaped == null) return json;
+        return escaped.append(json, copied, length).toString();
+    }
+
+    /**
+     * Checks that the given text contains a single json value having balanced
+     * strings, objects and arrays. Nested values are not parsed.
+     *
+     * @param json the json text
+     * @return json
+     * @throws IllegalArgumentException if json is structurally invalid
+     */
+    static CharSequence validate(CharSequence json) {
+        final int start = LazyJson.skipWhitespace(json, 0);
+        if (start == json.length()) throw LazyJson.syntaxError("Expected value", start);
+        char[] stack = new char[INITIAL_DEPTH];
+        int top = 0;
+        int i = start;
+        while (true) {
+            final char c = json.charAt(i);
+            if (c == '"') {
+                i = LazyJson.skipValue(json, i);
+            } else if (c == '{' || c == '[') {
+                if (top == stack.length) {
+                    final char[] copy = new char[stack.length * 2];
+                    System.arraycopy(stack, 0, copy, 0, top);
+                    stack = copy;
+                }
+                stack[top++] = c == '{' ? '}' : ']';
+                i++;
+            } else if (c == '}' || c == ']') {
+                if (top == 0 || stack[top - 1] != c) throw LazyJson.syntaxError("Unexpected '" + c + "'", i);
+                top--;
+                i++;
+            } else if (top == 0) {
+                i = LazyJson.skipValue(json, i);
+                LazyJson.decode(json, start, i);
+            } else {
+                i++;
+            }
+            if (top == 0) break;
+            if (i == json.length()) throw LazyJson.syntaxError("Unterminated value", start);
+        }
+        final int end = LazyJson.skipWhitespace(json, i);
+        if (end != json.length()) throw LazyJson.syntaxError("Expected end of input", end);
+        return json;
+    }
+
+    @Override
+    public String toJSONString() {
+        return json.toString();
+    }
+
+    @Override
+    public String toString() {
+        return json.toString();
+    }
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * A {@link Renderer} which is able to copy pre-rendered json values
+ * into its output without parsing them.
+ *
+ * @since 2.2
+ */
+public interface RawRenderer extends Renderer {
+
+    /**
+     * Renders the given json value verbatim. The value is checked for balanced
+     * strings, objects and arrays and for not containing more than one value,
+     * but not parsed. Hence syntax errors inside of objects and arrays,
+     * e.g. missing commas, are not detected. Occurrences of {@code "</"} are
+     * escaped, like in values rendered by this renderer.
+     *
+     * @param json the rendered json value, null renders a null value
+     * @return this
+     * @throws IllegalArgumentException if json is structurally invalid
+     * @throws RenderingException if no value is allowed at the current position
+     */
+    RawRenderer raw(CharSequence json) throws RenderingException;
+
+}
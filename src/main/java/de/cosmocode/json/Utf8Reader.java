@@ -0,0 +1,180 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Reader} decoding utf-8 directly from an {@link InputStream}
+ * or a {@link ByteBuffer}, without a {@link java.nio.charset.CharsetDecoder}.
+ *
+ * <p>
+ *   Malformed input is replaced by {@code U+FFFD}, like in {@link java.io.InputStreamReader}.
+ *   A leading byte order mark is skipped. Heap buffers are decoded in place,
+ *   direct buffers are copied in chunks. This class is not thread-safe.
+ * </p>
+ *
+ * @since 2.2
+ */
+final class Utf8Reader extends Reader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final char REPLACEMENT = '\ufffd';
+
+    private final InputStream stream;
+
+    private final ByteBuffer source;
+
+    private final byte[] bytes;
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * The second half of a surrogate pair which didn't fit into the last read.
+     */
+    private int pending = -1;
+
+    private boolean started;
+
+    Utf8Reader(InputStream stream) {
+        if (stream == null) throw new NullPointerException("Stream");
+        this.stream = stream;
+        this.source = null;
+        this.bytes = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    Utf8Reader(ByteBuffer buffer) {
+        this.stream = null;
+        if (buffer.hasArray()) {
+            this.source = null;
+            this.bytes = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.source = buffer.duplicate();
+            this.bytes = new byte[Math.max(4, Math.min(DEFAULT_BUFFER_SIZE, buffer.remaining()))];
+        }
+    }
+
+    /**
+     * Tries to provide at least the given number of bytes.
+     *
+     * @param needed the number of bytes needed
+     * @return true if enough bytes are available, false if the input ended before
+     */
+    private boolean fill(int needed) throws IOException {
+        if (limit - position >= needed) return true;
+        if (stream == null && source == null) return false;
+        System.arraycopy(bytes, position, bytes, 0, limit - position);
+        limit -= position;
+        position = 0;
+        while (limit < needed) {
+            final int read;
+            if (stream == null) {
+                read = Math.min(bytes.length - limit, source.remaining());
+                source.get(bytes, limit, read);
+            } else {
+                read = stream.read(bytes, limit, bytes.length - limit);
+            }
+            if (read <= 0) return false;
+            limit += read;
+        }
+        return true;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (!started) {
+            started = true;
+            if (fill(3) && bytes[position] == (byte) 0xEF && bytes[position + 1] == (byte) 0xBB &&
+                bytes[position + 2] == (byte) 0xBF) {
+                position += 3;
+            }
+        }
+        int n = 0;
+        if (pending != -1) {
+            chars[offset + n++] = (char) pending;
+            pending = -1;
+        }
+        while (n < length) {
+            if (position == limit && (n > 0 || !fill(1))) break;
+            final int lead = bytes[position] & 0xFF;
+            if (lead < 0x80) {
+                chars[offset + n++] = (char) lead;
+                position++;
+                continue;
+            }
+            final int needed;
+            final int minimum;
+            int codePoint;
+            if (lead >= 0xC2 && lead < 0xE0) {
+                needed = 2;
+                minimum = 0x80;
+                codePoint = lead & 0x1F;
+            } else if (lead >= 0xE0 && lead < 0xF0) {
+                needed = 3;
+                minimum = 0x800;
+                codePoint = lead & 0x0F;
+            } else if (lead >= 0xF0 && lead < 0xF5) {
+                needed = 4;
+                minimum = 0x10000;
+                codePoint = lead & 0x07;
+            } else {
+                chars[offset + n++] = REPLACEMENT;
+                position++;
+                continue;
+            }
+            // truncated sequences at the end of the input are replaced below
+            fill(needed);
+            int i = 1;
+            while (i < needed && position + i < limit && (bytes[position + i] & 0xC0) == 0x80) {
+                codePoint = (codePoint << 6) | (bytes[position + i] & 0x3F);
+                i++;
+            }
+            position += i;
+            if (i < needed || codePoint < minimum || codePoint > Character.MAX_CODE_POINT ||
+                (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                chars[offset + n++] = REPLACEMENT;
+            } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[offset + n++] = (char) codePoint;
+            } else {
+                final int supplementary = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+                chars[offset + n++] = (char) (Character.MIN_HIGH_SURROGATE + (supplementary >>> 10));
+                final char low = (char) (Character.MIN_LOW_SURROGATE + (supplementary & 0x3FF));
+                if (n < length) {
+                    chars[offset + n++] = low;
+                } else {
+                    pending = low;
+                }
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (stream != null) stream.close();
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A {@link CharSequence} over utf-8 encoded bytes, which allows {@link LazyJsonMap}
+ * and {@link LazyJsonList} to work on buffers without decoding them first.
+ *
+ * <p>
+ *   {@link #charAt(int)} returns single bytes, i.e. indices are byte offsets.
+ *   This is sufficient for scanning json, because all structural characters are
+ *   ascii and bytes of multi byte sequences never are. {@link #toString()} decodes
+ *   the bytes, malformed input is replaced by {@code U+FFFD}. This class is not thread-safe.
+ * </p>
+ *
+ * @since 2.2
+ */
+final class Utf8Sequence implements CharSequence {
+
+    private static final int WINDOW_SIZE = 16 * 1024;
+
+    private final ByteBuffer buffer;
+
+    private final int length;
+
+    /**
+     * The backing array of heap buffers or a copy of the bytes of direct buffers
+     * around the last accessed index, because reading direct buffers byte by byte is slow.
+     */
+    private byte[] window;
+
+    /**
+     * The difference between indices into the window and indices of this sequence.
+     */
+    private int shift;
+
+    private int windowStart;
+
+    private int windowEnd;
+
+    /**
+     * Creates a sequence over the remaining bytes of the given buffer,
+     * which must not be modified afterwards.
+     *
+     * @param buffer the buffer
+     */
+    Utf8Sequence(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        this.length = this.buffer.limit();
+        if (this.buffer.hasArray()) {
+            window = this.buffer.array();
+            shift = this.buffer.arrayOffset();
+            windowEnd = length;
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < windowStart || index >= windowEnd) slide(index);
+        return (char) (window[index + shift] & 0xFF);
+    }
+
+    private void slide(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index: " + index);
+        if (window == null) window = new byte[Math.min(WINDOW_SIZE, length)];
+        final ByteBuffer range = buffer.duplicate();
+        windowStart = Math.min(index, length - window.length);
+        windowEnd = windowStart + window.length;
+        shift = -windowStart;
+        range.position(windowStart);
+        range.get(window);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") of " + length);
+        }
+        final ByteBuffer range = buffer.duplicate();
+        range.limit(end).position(start);
+        return new Utf8Sequence(range);
+    }
+
+    /**
+     * Decodes the bytes in the given range.
+     *
+     * @param start the index of the first byte
+     * @param end the index after the last byte
+     * @return the decoded string
+     */
+    String decode(int start, int end) {
+        final int count = end - start;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, count, Charsets.UTF_8);
+        }
+        // most strings are ascii, which is cheaper to copy than to decode
+        final char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            final byte b = (byte) charAt(start + i);
+            if (b < 0) {
+                final byte[] bytes = new byte[count];
+                final ByteBuffer range = buffer.duplicate();
+                range.position(start);
+                range.get(bytes);
+                return new String(bytes, Charsets.UTF_8);
+            }
+            chars[i] = (char) b;
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return decode(0, length);
+    }
+
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Calculates the shortest edit script of two json arrays using
+ * Myers' O(ND) difference algorithm.
+ *
+ * <p>
+ *   Elements are considered the same if they are structurally equal or,
+ *   if an identity key is given, if both are objects having equal values
+ *   for that key. If a {@link JSONHashCache} is given, objects and arrays
+ *   are compared using their structural hashes. Common prefixes and suffixes
+ *   are skipped before running the algorithm, which makes small changes in
+ *   large arrays cheap.
+ * </p>
+ *
+ * @since 2.2
+ */
+final class ArrayDiff {
+
+    /**
+     * The maximum number of inserted and deleted elements, more
+     * differing arrays are not diffed to bound time and memory.
+     */
+    static final int MAX_EDITS = 1024;
+
+    /**
+     * A single step of an edit script.
+     */
+    static final class Edit {
+
+        static final char SAME = '=';
+        static final char INSERT = '+';
+        static final char DELETE = '-';
+
+        private final char type;
+        private final int oldIndex;
+        private final int newIndex;
+
+        private Edit(char type, int oldIndex, int newIndex) {
+            this.type = type;
+            this.oldIndex = oldIndex;
+            this.newIndex = newIndex;
+        }
+
+        public char getType() {
+            return type;
+        }
+
+        /**
+         * Returns the index in the old array, -1 for inserts.
+         *
+         * @return the old index
+         */
+        public int getOldIndex() {
+            return oldIndex;
+        }
+
+        /**
+         * Returns the index in the new array, -1 for deletes.
+         *
+         * @return the new index
+         */
+        public int getNewIndex() {
+            return newIndex;
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + oldIndex + "," + newIndex + ")";
+        }
+
+    }
+
+    private final JSONArray oldArray;
+    private final JSONArray newArray;
+    private final String key;
+    private final JSONHashCache hashes;
+
+    private ArrayDiff(JSONArray oldArray, JSONArray newArray, String key, JSONHashCache hashes) {
+        this.oldArray = oldArray;
+        this.newArray = newArray;
+        this.key = key;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Calculates the edit script transforming oldArray into newArray.
+     *
+     * @param oldArray the old array
+     * @param newArray the new array
+     * @param key the identity key of objects, may be null
+     * @param hashes the cache of structural hashes, may be null
+     * @return the edit script in order or null if the arrays differ in more
+     *         than {@link #MAX_EDITS} elements
+     */
+    static List<Edit> diff(JSONArray oldArray, JSONArray newArray, String key, JSONHashCache hashes) {
+        return new ArrayDiff(oldArray, newArray, key, hashes).diff();
+    }
+
+    private List<Edit> diff() {
+        int start = 0;
+        int oldEnd = oldArray.length();
+        int newEnd = newArray.length();
+        while (start < oldEnd && start < newEnd && same(start, start)) {
+            start++;
+        }
+        while (oldEnd > start && newEnd > start && same(oldEnd - 1, newEnd - 1)) {
+            oldEnd--;
+            newEnd--;
+        }
+
+        final List<Edit> middle = myers(start, oldEnd - start, newEnd - start);
+        if (middle == null) return null;
+
+        final List<Edit> script = Lists.newArrayListWithCapacity(start + middle.size() + oldArray.length() - oldEnd);
+        for (int i = 0; i < start; i++) {
+            script.add(new Edit(Edit.SAME, i, i));
+        }
+        script.addAll(middle);
+        for (int i = oldEnd, j = newEnd; i < oldArray.length(); i++, j++) {
+            script.add(new Edit(Edit.SAME, i, j));
+        }
+        return script;
+    }
+
+    private List<Edit> myers(int offset, int n, int m) {
+        final int limit = Math.min(n + m, MAX_EDITS);
+        // v[limit + 1 + k] holds the furthest x on diagonal k
+        final int center = limit + 1;
+        final int[] v = new int[2 * limit + 3];
+        final List<int[]> trace = Lists.newArrayList();
+
+        for (int d = 0; d <= limit; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[center + k - 1] < v[center + k + 1])) {
+                    x = v[center + k + 1];
+                } else {
+                    x = v[center + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && same(offset + x, offset + y)) {
+                    x++;
+                    y++;
+                }
+                v[center + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, center, offset, n, m);
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<Edit> backtrack(List<int[]> trace, int center, int offset, int n, int m) {
+        final List<Edit> script = Lists.newArrayList();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            final int[] v = trace.get(d);
+            final int k = x - y;
+            final int previousK;
+            if (k == -d || (k != d && v[center + k - 1] < v[center + k + 1])) {
+                previousK = k + 1;
+            } else {
+                previousK = k - 1;
+            }
+            final int previousX = v[center + previousK];
+            final int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+                script.add(new Edit(Edit.SAME, offset + x, offset + y));
+            }
+            if (d > 0) {
+                if (x == previousX) {
+                    script.add(new Edit(Edit.INSERT, -1, offset + previousY));
+                } else {
+                    script.add(new Edit(Edit.DELETE, offset + previousX, -1));
+                }
+            }
+            x = previousX;
+            y = previousY;
+        }
+        Collections.reverse(script);
+        return script;
+    }
+
+    private boolean same(int oldIndex, int newIndex) {
+        final Object oldValue = oldArray.opt(oldIndex);
+        final Object newValue = newArray.opt(newIndex);
+        if (key != null && oldValue instanceof JSONObject && newValue instanceof JSONObject) {
+            final Object oldId = ((JSONObject) oldValue).opt(key);
+            final Object newId = ((JSONObject) newValue).opt(key);
+            if (oldId != null && newId != null) return equal(oldId, newId);
+        }
+        return equal(oldValue, newValue);
+    }
+
+    private boolean equal(Object oldValue, Object newValue) {
+        if (hashes == null) {
+            return deepEquals(oldValue, newValue);
+        } else if (oldValue instanceof JSONObject || oldValue instanceof JSONArray) {
+            return oldValue.getClass().isInstance(newValue) && hashes.equal(oldValue, newValue);
+        } else {
+            return deepEquals(oldValue, newValue);
+        }
+    }
+
+    /**
+     * Checks whether both values are structurally equal. Objects and arrays are
+     * compared recursively, all other values using {@link Object#equals(Object)}.
+     *
+     * @param first the first value
+     * @param second the second value
+     * @return true if both are equal, false otherwise
+     */
+    static boolean deepEquals(Object first, Object second) {
+        if (first == second) {
+            return true;
+        } else if (first instanceof JSONObject && second instanceof JSONObject) {
+            final JSONObject left = (JSONObject) first;
+            final JSONObject right = (JSONObject) second;
+            if (left.length() != right.length()) return false;
+            final Iterator<?> keyIt = left.keys();
+            while (keyIt.hasNext()) {
+                final String name = (String) keyIt.next();
+                final Object value = right.opt(name);
+                if (value == null || !deepEquals(left.opt(name), value)) return false;
+            }
+            return true;
+        } else if (first instanceof JSONArray && second instanceof JSONArray) {
+            final JSONArray left = (JSONArray) first;
+            final JSONArray right = (JSONArray) second;
+            if (left.length() != right.length()) return false;
+            for (int i = 0; i < left.length(); i++) {
+                if (!deepEquals(left.opt(i), right.opt(i))) return false;
+            }
+            return true;
+        } else {
+            return first != null && first.equals(second);
+        }
+    }
+
+}
@@ -16,8 +16,6 @@
 
 package org.json.diff;
 
-import java.util.Iterator;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -32,6 +30,11 @@ import org.json.JSONObject;
  * Adapted also getDifferences to match the splitted cases get inserted,
  * updated and deleted. Implemented required minor methods. 
  * 
+ * <p>
+ *   Since 2.2 all calculations are delegated to the stateless
+ *   {@link JSONDiffEngine}, which may be shared between threads.
+ * </p>
+ * 
  * @author Michael Schøler
  * @author Jesus Ortiz
  * 
@@ -39,11 +42,9 @@ import org.json.JSONObject;
  */
 public class JSONDiff {
 
-    private JSONObject oldJ;
-    private JSONObject newJ;
-    private JSONArray diffCyclic;
-    private int changes;
-    private int level;
+    private final JSONObject oldJ;
+    private final JSONObject newJ;
+    private final JSONDiffEngine engine = JSONDiffEngine.getDefault();
     
     public JSONDiff(JSONObject oldJson, JSONObject newJson) {
         if (oldJson == null || newJson == null) {
@@ -60,73 +61,7 @@ public class JSONDiff {
      * @throws JSONException if something failed
      */
     public JSONObject getDifferences() throws JSONException {
-        changes = 0;
-        return getDifferences(oldJ, newJ);
-    }
-    
-    /* CHECKSTYLE:OFF */
-    private JSONObject getDifferences(JSONObject oldJSON, JSONObject newJSON) throws JSONException {
-    /* CHECKSTYLE:ON */
-        final JSONObject result = new JSONObject();
-        boolean diff;
-        if (level == 0) {
-            diffCyclic = new JSONArray();
-        }
-        level += 1;
-        Iterator<?> keyIt = newJSON.keys();
-        String key = null;
-        while (keyIt.hasNext()) {
-            key = (String) keyIt.next();
-            if (!newJSON.isNull(key)) {
-                diff = false;
-                if (oldJSON.isNull(key) || !oldJSON.opt(key).getClass().isInstance(newJSON.opt(key))) {
-                    diff = true;
-                } else if (!oldJSON.opt(key).equals(newJSON.opt(key))) {
-                    if (newJSON.opt(key) instanceof JSONArray || newJSON.opt(key) instanceof JSONObject) {
-                        if (indexOf(diffCyclic, newJSON.opt(key)) >= 0) {
-                            break;
-                        } else if (newJSON.opt(key) instanceof JSONArray) { 
-                            if (((JSONArray) oldJSON.opt(key)).length() != ((JSONArray) newJSON.opt(key)).length() || 
-                                oldJSON.opt(key) != newJSON.opt(key)) {
-                                if (!compare(oldJSON.optJSONArray(key), newJSON.optJSONArray(key))) {
-                                    diff = true;
-                                }
-                            }
-                        } else if (oldJSON.opt(key) instanceof JSONArray || oldJSON.opt(key) instanceof JSONObject) {
-                            final JSONObject recursiveDiff = getDifferences(
-                                    oldJSON.optJSONObject(key), newJSON.optJSONObject(key));
-                            if (recursiveDiff.keys().hasNext()) { 
-                                result.put(key, recursiveDiff);
-                            }
-                        } else {
-                            diff = true;
-                        }
-                        diffCyclic.put(newJSON.opt(key));
-                    }  else if (!oldJSON.opt(key).equals(newJSON.opt(key))) {
-                        diff = true;
-                    }
-                }
-                if (diff) { 
-                    result.put(key, newJSON.opt(key));
-                    changes++;
-                }
-            }
-        }
-
-        keyIt = oldJSON.keys();
-        key = null;
-        while (keyIt.hasNext()) {
-            key = (String) keyIt.next();
-            if (!oldJSON.isNull(key)) {
-                if (newJSON.isNull(key)) {
-                    result.put(key, oldJSON.opt(key));
-                    changes++;
-                }
-            }
-        }
-        level -= 1;
-        return result;
-        
+        return engine.getDifferences(oldJ, newJ);
     }
         
     /**
@@ -136,67 +71,7 @@ public class JSONDiff {
      * @throws JSONException if something failed
      */
     public JSONObject getUpdated() throws JSONException {
-        changes = 0;
-        return getUpdated(oldJ, newJ);
-        
-    }
-
-    /* CHECKSTYLE:OFF */
-    private JSONObject getUpdated(JSONObject oldJSON, JSONObject newJSON) throws JSONException{
-    /* CHECKSTYLE:ON */
-        final JSONObject updated = new JSONObject();
-        boolean diff;
-        if (level == 0) {
-            diffCyclic = new JSONArray();
-        }
-        level += 1;
-
-        final Iterator<?> keyIt = newJSON.keys();
-        String key = null;
-        while (keyIt.hasNext()) {
-            key = (String) keyIt.next();
-            if (!newJSON.isNull(key)) {
-                diff = false;
-                if (! oldJSON.isNull(key)) {
-                    if (! oldJSON.opt(key).getClass().isInstance(newJSON.opt(key))) {
-                        diff = true;
-                    } else if (!oldJSON.opt(key).equals(
-                            newJSON.opt(key))) {
-                        if (newJSON.opt(key) instanceof JSONArray || newJSON.opt(key) instanceof JSONObject) {
-                            if (indexOf(diffCyclic, newJSON.opt(key)) >= 0) {
-                                break;
-                            } else if (newJSON.opt(key) instanceof JSONArray) {
-                                if ((oldJSON.optJSONArray(key)).length() != newJSON.optJSONArray(key).length() 
-                                    || oldJSON.opt(key) != newJSON.opt(key)) {
-                                    if (!compare(oldJSON.optJSONArray(key), newJSON.optJSONArray(key))) {
-                                        diff = true;
-                                    }
-                                }
-                            } else if (oldJSON.opt(key) instanceof JSONArray || 
-                                    oldJSON.opt(key) instanceof JSONObject) {
-                                final JSONObject recursiveUpd = getUpdated(
-                                    oldJSON.optJSONObject(key),
-                                    newJSON.optJSONObject(key));
-                                if ((recursiveUpd.keys()).hasNext()) {
-                                    updated.put(key, recursiveUpd);
-                                }
-                            } else {
-                                diff = true;
-                            }
-                            diffCyclic.put(newJSON.opt(key));
-                        } else if (!oldJSON.opt(key).equals(newJSON.opt(key))) {
-                            diff = true;
-                        }
-                    }
-                }
-                if (diff) {
-                    updated.put(key, newJSON.opt(key));
-                    changes++;
-                }
-            }
-        }
-        level -= 1;
-        return updated;
+        return engine.getUpdated(oldJ, newJ);
     }
     
     /**
@@ -206,63 +81,7 @@ public class JSONDiff {
      * @throws JSONException if something failed
      */
     public JSONObject getUpdatedExt() throws JSONException {
-        changes = 0;
-        return getUpdatedExt(oldJ, newJ);
-    }
-
-    /* CHECKSTYLE:OFF */
-    private JSONObject getUpdatedExt(JSONObject oldJSON, JSONObject newJSON) throws JSONException{
-    /* CHECKSTYLE:ON */
-        final JSONObject updatedExt = new JSONObject();
-        boolean diffT;
-        if (level == 0) {
-            diffCyclic = new JSONArray();
-        }
-        level += 1;
-
-        final Iterator<?> keyIt = newJSON.keys();
-        String key = null;
-        while (keyIt.hasNext()) {
-            key = (String) keyIt.next();
-            if (!newJSON.isNull(key)) {
-                diffT = false;
-                if (! oldJSON.isNull(key)) {
-                    if (!oldJSON.opt(key).getClass().isInstance(newJSON.opt(key))) {
-                        diffT = true;
-                    } else if (!oldJSON.opt(key).equals(newJSON.opt(key))) {
-                        if (newJSON.opt(key) instanceof JSONArray || newJSON.opt(key) instanceof JSONObject) {
-                            if (indexOf(diffCyclic, newJSON.opt(key)) >= 0) {
-                                break;
-                            } else if (newJSON.opt(key) instanceof JSONArray) {
-                                if (oldJSON.optJSONArray(key).length() != newJSON.optJSONArray(key).length() 
-                                        || oldJSON.opt(key) != newJSON.opt(key))
-                                    if (!compare(oldJSON.optJSONArray(key), newJSON.optJSONArray(key)))
-                                        diffT = true;
-                            } else if (oldJSON.opt(key) instanceof JSONArray || 
-                                    oldJSON.opt(key) instanceof JSONObject) {
-                                final JSONObject recursiveUpd = getUpdatedExt(
-                                        oldJSON.optJSONObject(key),
-                                        newJSON.optJSONObject(key));
-                                if ((recursiveUpd.keys()).hasNext()) {
-                                    updatedExt.put(key, recursiveUpd);
-                                }
-                            } else {
-                                diffT = true;
-                            }
-                            diffCyclic.put(newJSON.opt(key));
-                        } else if (!oldJSON.opt(key).equals(newJSON.opt(key))) {
-                            diffT = true;
-                        }
-                    }
-                }
-                if (diffT) {
-                    updatedExt.put(key, getUpdatedValue(oldJSON, newJSON, key));
-                    changes++;
-                }
-            }
-        }
-        level -= 1;
-        return updatedExt;
+        return engine.getUpdatedExt(oldJ, newJ);
     }
     
     /**
@@ -272,51 +91,7 @@ public class JSONDiff {
      * @throws JSONException if something failed
      */
     public JSONObject getInserted() throws JSONException {
-        changes = 0;
-        return getInserted(oldJ, newJ);
-    }
-
-    /* CHECKSTYLE:OFF */
-    private JSONObject getInserted(JSONObject oldJSON, JSONObject newJSON) throws JSONException {
-    /* CHECKSTYLE:ON */
-        final JSONObject inserted = new JSONObject();
-        boolean diff;
-        if (level == 0) {
-            diffCyclic = new JSONArray();
-        }
-        level += 1;
-
-        final Iterator<?> keyIt = newJSON.keys();
-        String key = null;
-        while (keyIt.hasNext()) {
-            key = (String) keyIt.next();
-            if (!newJSON.isNull(key)) {
-                diff = false;
-                if (oldJSON.isNull(key)) {
-                    diff = true; 
-                } else if (!oldJSON.opt(key).equals(newJSON.opt(key))) {
-                    if (newJSON.opt(key) instanceof JSONArray || newJSON.opt(key) instanceof JSONObject) {
-                        if (indexOf(diffCyclic, newJSON.opt(key)) >= 0) {
-                            break;
-                        } else if (oldJSON.opt(key) instanceof JSONArray || oldJSON.opt(key) instanceof JSONObject) {
-                            final JSONObject recursiveIns = getInserted(
-                                oldJSON.optJSONObject(key), newJSON.optJSONObject(key));
-                            if ((recursiveIns.keys()).hasNext()) {
-                                inserted.put(key, recursiveIns);
-                            }
-                        }
-                        diffCyclic.put(newJSON.opt(key));
-                    }
-                }
-                if (diff) {
-                    inserted.put(key, newJSON.opt(key));
-                    changes++;
-                }
-            }
-        }
-        
-        level -= 1;
-        return inserted;
+        return engine.getInserted(oldJ, newJ);
     }
     
     /**
@@ -326,94 +101,30 @@ public class JSONDiff {
      * @throws JSONException if something failed
      */
     public JSONObject getDeleted() throws JSONException {
-        changes = 0;
-        return getDeleted(oldJ, newJ);
-    }
-
-    /* CHECKSTYLE:OFF */
-    private JSONObject getDeleted(JSONObject oldJSON, JSONObject newJSON) throws JSONException {
-    /* CHECKSTYLE:ON */        
-        final JSONObject deleted = new JSONObject();
-        boolean diff;
-        if (level == 0) {
-            diffCyclic = new JSONArray();
-        }
-        level += 1;
-        
-        Iterator<?> keyIt = newJSON.keys();
-        String key = null;
-        while (keyIt.hasNext()) {
-            key = (String) keyIt.next();
-            if (!newJSON.isNull(key)) {
-                diff = false;
-                if (!newJSON.opt(key).equals(oldJSON.opt(key))) {
-                    if (newJSON.opt(key) instanceof JSONArray || newJSON.opt(key) instanceof JSONObject) {
-                        if (indexOf(diffCyclic, newJSON.opt(key)) >= 0) {
-                            break;
-                        } else if (oldJSON.opt(key) instanceof JSONArray || oldJSON.opt(key) instanceof JSONObject) {
-                            final JSONObject recursiveDel = getDeleted(
-                                    oldJSON.optJSONObject(key), newJSON.optJSONObject(key));
-                            if ((recursiveDel.keys()).hasNext()) {
-                                deleted.put(key, recursiveDel);
-                            }
-                        }
-                        diffCyclic.put(newJSON.opt(key));
-                    } 
-                }
-                if (diff) {
-                    deleted.put(key, newJSON.opt(key));
-                    changes++;
-                }
-            }
-        }
-        
-        keyIt = oldJSON.keys();
-        while (keyIt.hasNext()) {
-            key = (String) keyIt.next();
-            if (!oldJSON.isNull(key)) {
-                if (newJSON.isNull(key)) {
-                    deleted.put(key, oldJSON.opt(key));
-                    changes++;
-                }
-            }
-        }
-        
-        level -= 1;
-        return deleted;
-    }
-    
-    private boolean compare(JSONArray first, JSONArray second) throws JSONException {
-        if (first.length() == second.length()) {
-            for (int i = 0; i < second.length(); i++) {
-                if (first.opt(i) instanceof JSONArray) {
-                    if (!compare(first.optJSONArray(i), second.optJSONArray(i))) {
-                        return false;
-                    }
-                } else if (!first.opt(i).equals(second.opt(i))) {
-                    return false;
-                }
-            }
-            return true;
-        }
-        
-        return false;
+        return engine.getDeleted(oldJ, newJ);
     }
-
     
-    private int indexOf(JSONArray ja, Object o) {
-        for (int i = 0; i < diffCyclic.length(); i++) {
-            if ((ja.opt(i)).equals(o)) {
-                return i;
-            }
-        }
-        return -1;
+    /**
+     * Calculates inserted, updated and deleted pairs in a single traversal
+     * of both objects.
+     * 
+     * @since 2.2
+     * @return the result containing all changes
+     * @throws JSONException if something failed
+     */
+    public JSONDiffResult getResult() throws JSONException {
+        return engine.getResult(oldJ, newJ);
     }
     
-    private Object getUpdatedValue(JSONObject oldjo, JSONObject newjo, String jokey) throws JSONException {
-        final JSONObject jotemp = new JSONObject();
-        jotemp.put("old", oldjo.get(jokey));
-        jotemp.put("new", newjo.get(jokey));
-        return jotemp;
+    /**
+     * Calculates a json patch which transforms the old into the new object.
+     * 
+     * @since 2.2
+     * @return the patch as specified by {@link JSONPatch}
+     * @throws JSONException if something failed
+     */
+    public JSONArray getPatch() throws JSONException {
+        return engine.getPatch(oldJ, newJ);
     }
     
 }
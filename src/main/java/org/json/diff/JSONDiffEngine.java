@@ -0,0 +1,843 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A stateless engine calculating the differences of two json objects.
+ *
+ * <p>
+ *   All traversal state is kept per call, which makes instances
+ *   thread-safe and allows sharing them, e.g. {@link #getDefault()}.
+ * </p>
+ *
+ * <p>
+ *   Engines created by {@link #parallel(ExecutorService, int)} split large
+ *   objects and arrays into chunks which are compared concurrently.
+ *   Engines created by {@link #hashedBy(JSONHashCache)} skip structurally
+ *   equal subtrees using cached hashes.
+ * </p>
+ *
+ * See also {@link JSONDiff}.
+ *
+ * @since 2.2
+ */
+public final class JSONDiffEngine {
+
+    private static final JSONDiffEngine DEFAULT = new JSONDiffEngine(null, Integer.MAX_VALUE, null, null);
+
+    private final ExecutorService executor;
+
+    private final int threshold;
+
+    private final String identityKey;
+
+    private final JSONHashCache hashes;
+
+    /**
+     * The kinds of changes collected by a single traversal.
+     */
+    private enum Mode {
+
+        DIFFERENCES(true, true, true, false),
+
+        UPDATED(false, true, false, false),
+
+        UPDATED_EXT(false, true, false, true),
+
+        INSERTED(true, false, false, false),
+
+        DELETED(false, false, true, false),
+
+        /**
+         * Collects all changes into a {@link JSONDiffResult}.
+         */
+        RESULT(true, true, true, true);
+
+        private final boolean inserted;
+        private final boolean updated;
+        private final boolean deleted;
+        private final boolean ext;
+
+        private Mode(boolean inserted, boolean updated, boolean deleted, boolean ext) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+            this.ext = ext;
+        }
+
+        /**
+         * Creates an empty collection of changes of this mode.
+         *
+         * @return the new changes
+         */
+        public Changes newChanges() {
+            return this == RESULT ? new ResultChanges() : new ObjectChanges(ext);
+        }
+
+    }
+
+    /**
+     * Receives the changes found by {@link JSONDiffEngine#walk(JSONObject, JSONObject, Mode, Context)},
+     * which allows collecting them either into plain objects or into a {@link JSONDiffResult}
+     * using the same traversal.
+     */
+    private abstract static class Changes {
+
+        public abstract void insert(String key, Object newValue) throws JSONException;
+
+        public abstract void update(String key, Object oldValue, Object newValue) throws JSONException;
+
+        public abstract void delete(String key, Object oldValue) throws JSONException;
+
+        /**
+         * Adds the changes of nested objects using the given key.
+         *
+         * @param key the key of the compared nested objects
+         * @param nested the nested changes of the same type
+         * @throws JSONException if something failed
+         */
+        public abstract void merge(String key, Changes nested) throws JSONException;
+
+        /**
+         * Adds all changes of a disjoint set of keys.
+         *
+         * @param other the changes of the same type
+         * @throws JSONException if something failed
+         */
+        public abstract void addAll(Changes other) throws JSONException;
+
+    }
+
+    /**
+     * Collects changes into a single object, e.g. the result of
+     * {@link JSONDiffEngine#getDifferences(JSONObject, JSONObject)}.
+     */
+    private static final class ObjectChanges extends Changes {
+
+        private final JSONObject object = new JSONObject();
+
+        private final boolean ext;
+
+        public ObjectChanges(boolean ext) {
+            this.ext = ext;
+        }
+
+        @Override
+        public void insert(String key, Object newValue) throws JSONException {
+            object.put(key, newValue);
+        }
+
+        @Override
+        public void update(String key, Object oldValue, Object newValue) throws JSONException {
+            if (ext) {
+                final JSONObject pair = new JSONObject();
+                pair.put("old", oldValue);
+                pair.put("new", newValue);
+                object.put(key, pair);
+            } else {
+                object.put(key, newValue);
+            }
+        }
+
+        @Override
+        public void delete(String key, Object oldValue) throws JSONException {
+            object.put(key, oldValue);
+        }
+
+        @Override
+        public void merge(String key, Changes nested) throws JSONException {
+            final JSONObject changes = ObjectChanges.class.cast(nested).object;
+            if (changes.length() > 0) {
+                object.put(key, changes);
+            }
+        }
+
+        @Override
+        public void addAll(Changes other) throws JSONException {
+            final JSONObject partial = ObjectChanges.class.cast(other).object;
+            final Iterator<?> keyIt = partial.keys();
+            while (keyIt.hasNext()) {
+                final String key = (String) keyIt.next();
+                object.put(key, partial.opt(key));
+            }
+        }
+
+    }
+
+    /**
+     * Collects changes into a {@link JSONDiffResult}.
+     */
+    private static final class ResultChanges extends Changes {
+
+        private final JSONDiffResult result = new JSONDiffResult();
+
+        @Override
+        public void insert(String key, Object newValue) throws JSONException {
+            result.insert(key, newValue);
+        }
+
+        @Override
+        public void update(String key, Object oldValue, Object newValue) throws JSONException {
+            result.update(key, oldValue, newValue);
+        }
+
+        @Override
+        public void delete(String key, Object oldValue) throws JSONException {
+            result.delete(key, oldValue);
+        }
+
+        @Override
+        public void merge(String key, Changes nested) throws JSONException {
+            result.merge(key, ResultChanges.class.cast(nested).result);
+        }
+
+        @Override
+        public void addAll(Changes other) throws JSONException {
+            result.addAll(ResultChanges.class.cast(other).result);
+        }
+
+    }
+
+    /**
+     * Holds the state of a single comparison.
+     */
+    private static final class Context {
+
+        private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+        /**
+         * Only the calling thread splits work, tasks running in the
+         * executor never wait for other tasks.
+         */
+        private final boolean splitting;
+
+        public Context(boolean splitting) {
+            this.splitting = splitting;
+        }
+
+        /**
+         * Marks the given value as visited. Json objects and arrays use
+         * identity based equality, so an identity set provides constant time lookups.
+         *
+         * @param value the nested object or array
+         * @return true if value has not been visited yet, false otherwise
+         */
+        public boolean visit(Object value) {
+            return visited.add(value);
+        }
+
+        /**
+         * Marks the given value as an ancestor of the values being compared next.
+         * Unlike {@link #visit(Object)}, values shared by multiple paths are entered
+         * once per path, only cycles are rejected.
+         *
+         * @param value the nested object or array
+         * @return true if value is not an ancestor already, false otherwise
+         */
+        public boolean enter(Object value) {
+            return visited.add(value);
+        }
+
+        /**
+         * Removes the given value from the ancestors, once all its children have been compared.
+         *
+         * @param value the value passed to {@link #enter(Object)}
+         */
+        public void leave(Object value) {
+            visited.remove(value);
+        }
+
+    }
+
+    private JSONDiffEngine(ExecutorService executor, int threshold, String identityKey, JSONHashCache hashes) {
+        this.executor = executor;
+        this.threshold = threshold;
+        this.identityKey = identityKey;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Provides the default engine.
+     *
+     * @return the shared default engine
+     */
+    public static JSONDiffEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a new engine which compares objects and arrays having at least
+     * threshold entries in parallel, by splitting them into chunks of threshold
+     * entries each. Chunks are submitted to the given executor, e.g. a
+     * ForkJoinPool, and their results are merged in order, which makes the
+     * result independent from scheduling.
+     *
+     * <p>
+     *   An object or array having exactly threshold entries results in a single
+     *   chunk, which is still submitted to the executor as one task.
+     * </p>
+     *
+     * <p>
+     *   Only the calling thread splits objects and arrays, nested values inside
+     *   of a chunk are compared sequentially by the executing task. Tasks
+     *   therefore never block waiting for other tasks.
+     * </p>
+     *
+     * @param executor the executor used to run the chunks
+     * @param threshold the minimum number of entries of split objects and arrays
+     * @return a new engine using the given executor
+     * @throws NullPointerException if executor is null
+     * @throws IllegalArgumentException if threshold is less than 1
+     */
+    public JSONDiffEngine parallel(ExecutorService executor, int threshold) {
+        Preconditions.checkNotNull(executor, "Executor");
+        Preconditions.checkArgument(threshold > 0, "Threshold must be positive");
+        return new JSONDiffEngine(executor, threshold, identityKey, hashes);
+    }
+
+    /**
+     * Creates a new engine which identifies objects inside of arrays using the
+     * value of the given key when calculating {@link #getPatch(JSONObject, JSONObject) patches}.
+     * Objects having equal identities are patched recursively instead
+     * of being removed and added again, as long as they keep their order
+     * relative to the other matched elements. Patches contain no move operations,
+     * objects which moved past other elements are removed and added again.
+     *
+     * @param key the key holding the identity of objects, e.g. "id"
+     * @return a new engine using the given key
+     * @throws NullPointerException if key is null
+     */
+    public JSONDiffEngine identifiedBy(String key) {
+        Preconditions.checkNotNull(key, "Key");
+        return new JSONDiffEngine(executor, threshold, key, hashes);
+    }
+
+    /**
+     * Creates a new engine which skips nested objects and arrays having equal
+     * {@link JSONHashCache#hash(Object) structural hashes}. Sharing the cache
+     * between comparisons makes repeated comparisons against the same snapshot
+     * almost free, as long as compared objects aren't modified after hashing.
+     *
+     * <p>
+     *   Equal hashes are considered equal values, which is subject to
+     *   the (negligible) probability of 64 bit hash collisions.
+     * </p>
+     *
+     * @param cache the cache of hashes
+     * @return a new engine using the given cache
+     * @throws NullPointerException if cache is null
+     */
+    public JSONDiffEngine hashedBy(JSONHashCache cache) {
+        Preconditions.checkNotNull(cache, "Cache");
+        return new JSONDiffEngine(executor, threshold, identityKey, cache);
+    }
+
+    private boolean split(int length, Context context) {
+        return context.splitting && executor != null && length >= threshold;
+    }
+
+    private static void checkArguments(JSONObject oldJson, JSONObject newJson) {
+        if (oldJson == null || newJson == null) {
+            throw new IllegalArgumentException("Given arguments can not be null");
+        }
+    }
+
+    /**
+     * Calculates the differences, containing inserted and updated pairs
+     * with their new values and deleted pairs with their old values.
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @return the differences
+     * @throws JSONException if something failed
+     * @throws IllegalArgumentException if oldJson or newJson is null
+     */
+    public JSONObject getDifferences(JSONObject oldJson, JSONObject newJson) throws JSONException {
+        return changes(oldJson, newJson, Mode.DIFFERENCES);
+    }
+
+    /**
+     * Returns the updated pairs with their new values.
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @return the updated pairs
+     * @throws JSONException if something failed
+     * @throws IllegalArgumentException if oldJson or newJson is null
+     */
+    public JSONObject getUpdated(JSONObject oldJson, JSONObject newJson) throws JSONException {
+        return changes(oldJson, newJson, Mode.UPDATED);
+    }
+
+    /**
+     * Returns the updated pairs, each value being an object containing
+     * the old and the new value using the keys "old" and "new".
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @return the updated pairs
+     * @throws JSONException if something failed
+     * @throws IllegalArgumentException if oldJson or newJson is null
+     */
+    public JSONObject getUpdatedExt(JSONObject oldJson, JSONObject newJson) throws JSONException {
+        return changes(oldJson, newJson, Mode.UPDATED_EXT);
+    }
+
+    /**
+     * Returns the inserted pairs.
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @return the inserted pairs
+     * @throws JSONException if something failed
+     * @throws IllegalArgumentException if oldJson or newJson is null
+     */
+    public JSONObject getInserted(JSONObject oldJson, JSONObject newJson) throws JSONException {
+        return changes(oldJson, newJson, Mode.INSERTED);
+    }
+
+    /**
+     * Returns the deleted pairs.
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @return the deleted pairs
+     * @throws JSONException if something failed
+     * @throws IllegalArgumentException if oldJson or newJson is null
+     */
+    public JSONObject getDeleted(JSONObject oldJson, JSONObject newJson) throws JSONException {
+        return changes(oldJson, newJson, Mode.DELETED);
+    }
+
+    /**
+     * Calculates inserted, updated and deleted pairs in a single traversal
+     * of both objects.
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @return the result containing all changes
+     * @throws JSONException if something failed
+     * @throws IllegalArgumentException if oldJson or newJson is null
+     */
+    public JSONDiffResult getResult(JSONObject oldJson, JSONObject newJson) throws JSONException {
+        return ResultChanges.class.cast(walk(oldJson, newJson, Mode.RESULT)).result;
+    }
+
+    /**
+     * Calculates a json patch which transforms oldJson into newJson, as specified
+     * by {@link JSONPatch}. Nested objects are patched recursively. Arrays are
+     * compared using Myers' difference algorithm, resulting in a minimal number
+     * of added and removed elements, and changed elements are patched recursively.
+     * Arrays differing in more than 1024 elements are patched by position instead.
+     *
+     * <p>
+     *   Pairs having null values are considered absent, like in
+     *   {@link #getDifferences(JSONObject, JSONObject)}.
+     * </p>
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @return the patch, an array of operations
+     * @throws JSONException if something failed
+     * @throws IllegalArgumentException if oldJson or newJson is null
+     */
+    public JSONArray getPatch(JSONObject oldJson, JSONObject newJson) throws JSONException {
+        checkArguments(oldJson, newJson);
+        final JSONArray patch = new JSONArray();
+        if (hashed(oldJson, newJson)) return patch;
+        patch("", oldJson, newJson, patch, new Context(false));
+        return patch;
+    }
+
+    private JSONObject changes(JSONObject oldJson, JSONObject newJson, Mode mode) throws JSONException {
+        return ObjectChanges.class.cast(walk(oldJson, newJson, mode)).object;
+    }
+
+    private Changes walk(JSONObject oldJson, JSONObject newJson, Mode mode) throws JSONException {
+        checkArguments(oldJson, newJson);
+        if (hashed(oldJson, newJson)) return mode.newChanges();
+        return walk(oldJson, newJson, mode, new Context(true));
+    }
+
+    private Changes walk(final JSONObject oldJSON, final JSONObject newJSON, final Mode mode, Context context)
+        throws JSONException {
+
+        if (split(newJSON.length(), context) || (mode.deleted && split(oldJSON.length(), context))) {
+            final List<Callable<Changes>> tasks = Lists.newArrayList();
+            for (final Object[] chunk : chunks(newJSON)) {
+                tasks.add(new Callable<Changes>() {
+
+                    @Override
+                    public Changes call() throws JSONException {
+                        final Changes result = mode.newChanges();
+                        final Context local = new Context(false);
+                        for (Object key : chunk) {
+                            walk((String) key, oldJSON, newJSON, mode, local, result);
+                        }
+                        return result;
+                    }
+
+                });
+            }
+            if (mode.deleted) {
+                for (final Object[] chunk : chunks(oldJSON)) {
+                    tasks.add(new Callable<Changes>() {
+
+                        @Override
+                        public Changes call() throws JSONException {
+                            final Changes result = mode.newChanges();
+                            for (Object key : chunk) {
+                                walkDeleted((String) key, oldJSON, newJSON, result);
+                            }
+                            return result;
+                        }
+
+                    });
+                }
+            }
+            final Changes result = mode.newChanges();
+            for (Changes partial : invokeAll(tasks)) {
+                result.addAll(partial);
+            }
+            return result;
+        }
+
+        final Changes result = mode.newChanges();
+
+        Iterator<?> keyIt = newJSON.keys();
+        while (keyIt.hasNext()) {
+            walk((String) keyIt.next(), oldJSON, newJSON, mode, context, result);
+        }
+
+        if (mode.deleted) {
+            keyIt = oldJSON.keys();
+            while (keyIt.hasNext()) {
+                walkDeleted((String) keyIt.next(), oldJSON, newJSON, result);
+            }
+        }
+
+        return result;
+    }
+
+    /* CHECKSTYLE:OFF */
+    private void walk(String key, JSONObject oldJSON, JSONObject newJSON, Mode mode, Context context,
+        Changes result) throws JSONException {
+    /* CHECKSTYLE:ON */
+        final Object newValue = newJSON.opt(key);
+        if (isNull(newValue)) return;
+        final Object oldValue = oldJSON.opt(key);
+        if (isNull(oldValue)) {
+            if (mode.inserted) {
+                result.insert(key, newValue);
+            }
+        } else if (!oldValue.getClass().isInstance(newValue)) {
+            if (mode.updated) {
+                result.update(key, oldValue, newValue);
+            }
+        } else if (oldValue.equals(newValue) || hashed(oldValue, newValue)) {
+            return;
+        } else if (newValue instanceof JSONObject) {
+            // visit returns false for already visited objects
+            if (context.visit(newValue)) {
+                result.merge(key, walk((JSONObject) oldValue, (JSONObject) newValue, mode, context));
+            }
+        } else if (newValue instanceof JSONArray) {
+            if (mode.updated && context.visit(newValue) &&
+                !compare((JSONArray) oldValue, (JSONArray) newValue, context)) {
+                result.update(key, oldValue, newValue);
+            }
+        } else if (mode.updated) {
+            result.update(key, oldValue, newValue);
+        }
+    }
+
+    private void walkDeleted(String key, JSONObject oldJSON, JSONObject newJSON, Changes result)
+        throws JSONException {
+        final Object oldValue = oldJSON.opt(key);
+        if (!isNull(oldValue) && newJSON.isNull(key)) {
+            result.delete(key, oldValue);
+        }
+    }
+
+    /**
+     * Splits the keys of the given object into chunks of {@link #threshold} keys.
+     *
+     * @param object the object to split
+     * @return the chunks in iteration order
+     */
+    private List<Object[]> chunks(JSONObject object) {
+        final List<Object[]> chunks = Lists.newArrayList();
+        final Iterator<?> keyIt = object.keys();
+        int remaining = object.length();
+        while (remaining > 0) {
+            final Object[] chunk = new Object[Math.min(threshold, remaining)];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = keyIt.next();
+            }
+            chunks.add(chunk);
+            remaining -= chunk.length;
+        }
+        return chunks;
+    }
+
+    /**
+     * Runs all tasks using the {@link #executor} and returns their results
+     * in the order of the given tasks.
+     *
+     * @param <T> the generic result type
+     * @param tasks the tasks to run
+     * @return the results of all tasks
+     * @throws JSONException if any task failed or the calling thread has been interrupted
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws JSONException {
+        final List<Future<T>> futures = Lists.newArrayListWithCapacity(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            final List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSONException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JSONException) {
+                throw (JSONException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw new JSONException(e.getCause());
+            }
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void patch(String path, JSONObject oldJSON, JSONObject newJSON, JSONArray patch, Context context)
+        throws JSONException {
+
+        Iterator<?> keyIt = newJSON.keys();
+        while (keyIt.hasNext()) {
+            final String key = (String) keyIt.next();
+            final Object newValue = newJSON.opt(key);
+            if (isNull(newValue)) continue;
+            final Object oldValue = oldJSON.opt(key);
+            final String pointer = path + "/" + JSONPatch.escape(key);
+            if (isNull(oldValue)) {
+                patch.put(JSONPatch.operation(JSONPatch.ADD, pointer, newValue));
+            } else {
+                patch(pointer, oldValue, newValue, patch, context);
+            }
+        }
+
+        keyIt = oldJSON.keys();
+        while (keyIt.hasNext()) {
+            final String key = (String) keyIt.next();
+            if (!isNull(oldJSON.opt(key)) && newJSON.isNull(key)) {
+                patch.put(JSONPatch.operation(JSONPatch.REMOVE, path + "/" + JSONPatch.escape(key), null));
+            }
+        }
+    }
+
+    private void patch(String path, JSONArray oldJSON, JSONArray newJSON, JSONArray patch, Context context)
+        throws JSONException {
+
+        final List<ArrayDiff.Edit> script = ArrayDiff.diff(oldJSON, newJSON, identityKey, hashes);
+        if (script == null) {
+            patchByPosition(path, oldJSON, newJSON, patch, context);
+            return;
+        }
+
+        // position in the array after applying all previous operations
+        int index = 0;
+        int length = oldJSON.length();
+        final List<ArrayDiff.Edit> removed = Lists.newArrayList();
+        final List<ArrayDiff.Edit> added = Lists.newArrayList();
+        for (int i = 0; i <= script.size(); i++) {
+            final ArrayDiff.Edit edit = i < script.size() ? script.get(i) : null;
+            if (edit != null && edit.getType() == ArrayDiff.Edit.DELETE) {
+                removed.add(edit);
+                continue;
+            } else if (edit != null && edit.getType() == ArrayDiff.Edit.INSERT) {
+                added.add(edit);
+                continue;
+            }
+
+            // replaces pairs of removed and added elements, which keeps the patch compact
+            final int pairs = Math.min(removed.size(), added.size());
+            for (int j = 0; j < pairs; j++) {
+                patch(path + "/" + index, oldJSON.opt(removed.get(j).getOldIndex()),
+                    newJSON.opt(added.get(j).getNewIndex()), patch, context);
+                index++;
+            }
+            for (int j = pairs; j < removed.size(); j++) {
+                patch.put(JSONPatch.operation(JSONPatch.REMOVE, path + "/" + index, null));
+                length--;
+            }
+            for (int j = pairs; j < added.size(); j++) {
+                final String token = index == length ? JSONPatch.END : Integer.toString(index);
+                patch.put(JSONPatch.operation(JSONPatch.ADD, path + "/" + token,
+                    newJSON.opt(added.get(j).getNewIndex())));
+                index++;
+                length++;
+            }
+            removed.clear();
+            added.clear();
+
+            if (edit != null) {
+                // identified objects may differ in other keys
+                patch(path + "/" + index, oldJSON.opt(edit.getOldIndex()), newJSON.opt(edit.getNewIndex()),
+                    patch, context);
+                index++;
+            }
+        }
+    }
+
+    private void patchByPosition(String path, JSONArray oldJSON, JSONArray newJSON, JSONArray patch,
+        Context context) throws JSONException {
+
+        final int common = Math.min(oldJSON.length(), newJSON.length());
+        for (int i = 0; i < common; i++) {
+            patch(path + "/" + i, oldJSON.opt(i), newJSON.opt(i), patch, context);
+        }
+        for (int i = common; i < newJSON.length(); i++) {
+            patch.put(JSONPatch.operation(JSONPatch.ADD, path + "/" + JSONPatch.END, newJSON.opt(i)));
+        }
+        // removing from the end keeps the remaining indices stable
+        for (int i = oldJSON.length() - 1; i >= common; i--) {
+            patch.put(JSONPatch.operation(JSONPatch.REMOVE, path + "/" + i, null));
+        }
+    }
+
+    private void patch(String path, Object oldValue, Object newValue, JSONArray patch, Context context)
+        throws JSONException {
+
+        if (oldValue == newValue || (oldValue != null && oldValue.equals(newValue))) {
+            return;
+        } else if (hashed(oldValue, newValue)) {
+            return;
+        } else if (oldValue instanceof JSONObject && newValue instanceof JSONObject) {
+            // enter returns false for cycles, shared objects are patched at every path
+            if (!context.enter(newValue)) return;
+            try {
+                patch(path, (JSONObject) oldValue, (JSONObject) newValue, patch, context);
+            } finally {
+                context.leave(newValue);
+            }
+        } else if (oldValue instanceof JSONArray && newValue instanceof JSONArray) {
+            if (!context.enter(newValue)) return;
+            try {
+                patch(path, (JSONArray) oldValue, (JSONArray) newValue, patch, context);
+            } finally {
+                context.leave(newValue);
+            }
+        } else {
+            patch.put(JSONPatch.operation(JSONPatch.REPLACE, path, newValue));
+        }
+    }
+
+    /**
+     * Checks whether both values are objects or arrays having
+     * equal structural hashes, if hashing is enabled.
+     *
+     * @param oldValue the old value
+     * @param newValue the new value
+     * @return true if both are known to be equal, false otherwise
+     */
+    private boolean hashed(Object oldValue, Object newValue) {
+        if (hashes == null) return false;
+        if (oldValue instanceof JSONObject && newValue instanceof JSONObject) {
+            return hashes.equal(oldValue, newValue);
+        } else if (oldValue instanceof JSONArray && newValue instanceof JSONArray) {
+            return hashes.equal(oldValue, newValue);
+        } else {
+            return false;
+        }
+    }
+
+    private static boolean isNull(Object value) {
+        return value == null || JSONObject.NULL.equals(value);
+    }
+
+    private boolean compare(final JSONArray first, final JSONArray second, Context context) throws JSONException {
+        if (first.length() != second.length()) return false;
+        if (split(second.length(), context)) {
+            final List<Callable<Boolean>> tasks = Lists.newArrayList();
+            for (int from = 0; from < second.length(); from += threshold) {
+                final int start = from;
+                final int end = Math.min(from + threshold, second.length());
+                tasks.add(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() {
+                        return Boolean.valueOf(compare(first, second, start, end));
+                    }
+
+                });
+            }
+            for (Boolean equal : invokeAll(tasks)) {
+                if (!equal.booleanValue()) return false;
+            }
+            return true;
+        } else {
+            return compare(first, second, 0, second.length());
+        }
+    }
+
+    private static boolean compare(JSONArray first, JSONArray second, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (first.opt(i) instanceof JSONArray) {
+                if (!(second.opt(i) instanceof JSONArray)) {
+                    return false;
+                }
+                final JSONArray left = first.optJSONArray(i);
+                final JSONArray right = second.optJSONArray(i);
+                if (left.length() != right.length() || !compare(left, right, 0, right.length())) {
+                    return false;
+                }
+            } else if (!first.opt(i).equals(second.opt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
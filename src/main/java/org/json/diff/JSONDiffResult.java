@@ -0,0 +1,155 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.util.Iterator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The result of a complete comparison of two json objects,
+ * containing inserted, updated and deleted pairs.
+ *
+ * <p>
+ *   Changes in nested objects are contained in nested objects
+ *   using the same key as in the compared objects.
+ * </p>
+ *
+ * See also {@link JSONDiff#getResult()}.
+ *
+ * @since 2.2
+ */
+public final class JSONDiffResult {
+
+    private final JSONObject inserted = new JSONObject();
+    private final JSONObject updated = new JSONObject();
+    private final JSONObject deleted = new JSONObject();
+    private int changes;
+
+    JSONDiffResult() {
+
+    }
+
+    void insert(String key, Object value) throws JSONException {
+        inserted.put(key, value);
+        changes++;
+    }
+
+    void update(String key, Object oldValue, Object newValue) throws JSONException {
+        final JSONObject pair = new JSONObject();
+        pair.put("old", oldValue);
+        pair.put("new", newValue);
+        updated.put(key, pair);
+        changes++;
+    }
+
+    void delete(String key, Object value) throws JSONException {
+        deleted.put(key, value);
+        changes++;
+    }
+
+    /**
+     * Adds the result of a nested comparison using the given key.
+     *
+     * @param key the key of the compared nested objects
+     * @param nested the nested result
+     * @throws JSONException if something failed
+     */
+    void merge(String key, JSONDiffResult nested) throws JSONException {
+        if (nested.inserted.length() > 0) inserted.put(key, nested.inserted);
+        if (nested.updated.length() > 0) updated.put(key, nested.updated);
+        if (nested.deleted.length() > 0) deleted.put(key, nested.deleted);
+        changes += nested.changes;
+    }
+
+    /**
+     * Adds all changes of the given result, which must not
+     * contain any of the keys of this result.
+     *
+     * @param other the result of a disjoint set of keys
+     * @throws JSONException if something failed
+     */
+    void addAll(JSONDiffResult other) throws JSONException {
+        putAll(inserted, other.inserted);
+        putAll(updated, other.updated);
+        putAll(deleted, other.deleted);
+        changes += other.changes;
+    }
+
+    private static void putAll(JSONObject target, JSONObject source) throws JSONException {
+        final Iterator<?> keyIt = source.keys();
+        while (keyIt.hasNext()) {
+            final String key = (String) keyIt.next();
+            target.put(key, source.opt(key));
+        }
+    }
+
+    /**
+     * Returns the pairs which exist in the new object only.
+     *
+     * @return the inserted pairs
+     */
+    public JSONObject getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Returns the updated pairs. Every value is an object containing
+     * the previous value using the key "old" and the current one
+     * using the key "new", like {@link JSONDiff#getUpdatedExt()}.
+     *
+     * @return the updated pairs
+     */
+    public JSONObject getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Returns the pairs which exist in the old object only.
+     *
+     * @return the deleted pairs
+     */
+    public JSONObject getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Returns the total number of inserted, updated and deleted pairs, including
+     * all nested ones.
+     *
+     * @return the number of changes
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    /**
+     * Checks whether both compared objects were equal.
+     *
+     * @return true if there are no changes at all, false otherwise
+     */
+    public boolean isEmpty() {
+        return changes == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "JSONDiffResult [inserted=" + inserted + ", updated=" + updated + ", deleted=" + deleted + "]";
+    }
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A thread-safe cache of 64 bit structural hashes of json objects and arrays.
+ *
+ * <p>
+ *   Hashes are calculated bottom up, like a merkle tree, and memoized per
+ *   object and array instance, so hashes of nested values are calculated only
+ *   once. Structurally equal values have equal hashes, independent from the
+ *   order of keys. Pairs having null values are ignored, like in
+ *   {@link JSONDiffEngine}. Numbers of different types, e.g. 1 and 1L, are not
+ *   considered equal.
+ * </p>
+ *
+ * <p>
+ *   Instances are weakly referenced, which allows caching hashes of stored
+ *   snapshots as long as they are in use. Cached hashes are not updated when
+ *   objects or arrays are modified, {@link #invalidate(Object)} or
+ *   {@link #clear()} have to be called in that case. Cyclic structures are
+ *   not supported.
+ * </p>
+ *
+ * See also {@link JSONDiffEngine#hashedBy(JSONHashCache)}.
+ *
+ * @since 2.2
+ */
+public final class JSONHashCache {
+
+    private static final long OBJECT = 0x6a09e667f3bcc908L;
+    private static final long ARRAY = 0xbb67ae8584caa73bL;
+    private static final long STRING = 0x3c6ef372fe94f82bL;
+    private static final long INTEGER = 0xa54ff53a5f1d36f1L;
+    private static final long LONG = 0x510e527fade682d1L;
+    private static final long DOUBLE = 0x9b05688c2b3e6c1fL;
+    private static final long BOOLEAN = 0x1f83d9abfb41bd6bL;
+    private static final long NULL = 0x5be0cd19137e2179L;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // weak keys are compared by identity
+    private final ConcurrentMap<Object, Long> hashes = new MapMaker().weakKeys().makeMap();
+
+    /**
+     * Returns the structural hash of the given value, which may be any
+     * value allowed in json objects and arrays.
+     *
+     * @param value the value, null is treated like {@link JSONObject#NULL}
+     * @return the hash
+     */
+    public long hash(Object value) {
+        if (value instanceof JSONObject || value instanceof JSONArray) {
+            final Long cached = hashes.get(value);
+            if (cached != null) return cached.longValue();
+            final long hash;
+            if (value instanceof JSONObject) {
+                hash = hash((JSONObject) value);
+            } else {
+                hash = hash((JSONArray) value);
+            }
+            hashes.put(value, Long.valueOf(hash));
+            return hash;
+        } else {
+            return scalar(value);
+        }
+    }
+
+    private long hash(JSONObject object) {
+        // the sum is independent from the iteration order
+        long hash = OBJECT;
+        final Iterator<?> keyIt = object.keys();
+        while (keyIt.hasNext()) {
+            final String key = (String) keyIt.next();
+            final Object value = object.opt(key);
+            if (value == null || JSONObject.NULL.equals(value)) continue;
+            hash += mix(string(key) * FNV_PRIME ^ hash(value));
+        }
+        return mix(hash);
+    }
+
+    private long hash(JSONArray array) {
+        long hash = ARRAY;
+        for (int i = 0; i < array.length(); i++) {
+            hash = mix(hash ^ hash(array.opt(i))) * FNV_PRIME;
+        }
+        return mix(hash + array.length());
+    }
+
+    private static long scalar(Object value) {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            return NULL;
+        } else if (value instanceof String) {
+            return mix(STRING ^ string((String) value));
+        } else if (value instanceof Integer) {
+            return mix(INTEGER ^ ((Integer) value).longValue());
+        } else if (value instanceof Long) {
+            return mix(LONG ^ ((Long) value).longValue());
+        } else if (value instanceof Double) {
+            return mix(DOUBLE ^ Double.doubleToLongBits(((Double) value).doubleValue()));
+        } else if (value instanceof Boolean) {
+            return mix(BOOLEAN ^ (((Boolean) value).booleanValue() ? 1L : 0L));
+        } else {
+            return mix(((long) value.getClass().hashCode() << 32) ^ value.hashCode());
+        }
+    }
+
+    /**
+     * Calculates the 64 bit FNV-1a hash of the given string.
+     *
+     * @param value the string
+     * @return the hash
+     */
+    private static long string(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads the bits of the given value, using the finalizer of MurmurHash3.
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Checks whether both values have the same structural hash.
+     *
+     * @param first the first value
+     * @param second the second value
+     * @return true if both hashes are equal, false otherwise
+     */
+    public boolean equal(Object first, Object second) {
+        return first == second || hash(first) == hash(second);
+    }
+
+    /**
+     * Removes the cached hash of the given object or array. Cached hashes
+     * of all objects and arrays containing value have to be invalidated as well.
+     *
+     * @param value the modified object or array
+     */
+    public void invalidate(Object value) {
+        hashes.remove(value);
+    }
+
+    /**
+     * Removes all cached hashes.
+     */
+    public void clear() {
+        hashes.clear();
+    }
+
+    /**
+     * Returns the number of cached hashes.
+     *
+     * @return the number of cached objects and arrays
+     */
+    public int size() {
+        return hashes.size();
+    }
+
+}
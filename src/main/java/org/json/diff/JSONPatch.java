@@ -0,0 +1,212 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import de.cosmocode.json.JSON;
+
+/**
+ * Static utility methods for json patches as defined by
+ * <a href="http://tools.ietf.org/html/rfc6902">RFC 6902</a>.
+ *
+ * <p>
+ *   A patch is a {@link JSONArray} of operations, each being an object
+ *   containing the keys "op", "path" and, except for "remove", "value".
+ *   Paths are json pointers as defined by
+ *   <a href="http://tools.ietf.org/html/rfc6901">RFC 6901</a>.
+ *   Patches can be calculated using {@link JSONDiffEngine#getPatch(JSONObject, JSONObject)}.
+ * </p>
+ *
+ * <p>
+ *   Only the operations "add", "remove" and "replace" are supported.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class JSONPatch {
+
+    public static final String ADD = "add";
+
+    public static final String REMOVE = "remove";
+
+    public static final String REPLACE = "replace";
+
+    /**
+     * Token used to append to an array.
+     */
+    public static final String END = "-";
+
+    private JSONPatch() {
+
+    }
+
+    /**
+     * Escapes the given key to be used as a single json pointer token.
+     *
+     * @param key the key
+     * @return the escaped token
+     * @throws NullPointerException if key is null
+     */
+    public static String escape(String key) {
+        if (key.indexOf('~') == -1 && key.indexOf('/') == -1) return key;
+        return key.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Unescapes the given json pointer token.
+     *
+     * @param token the escaped token
+     * @return the key
+     * @throws NullPointerException if token is null
+     */
+    public static String unescape(String token) {
+        if (token.indexOf('~') == -1) return token;
+        return token.replace("~1", "/").replace("~0", "~");
+    }
+
+    /**
+     * Creates a single operation.
+     *
+     * @param op the operation, one of {@link #ADD}, {@link #REMOVE} and {@link #REPLACE}
+     * @param path the json pointer
+     * @param value the value, ignored for {@link #REMOVE}
+     * @return a new operation
+     * @throws JSONException if value is an invalid number
+     */
+    static JSONObject operation(String op, String path, Object value) throws JSONException {
+        final JSONObject operation = new JSONObject();
+        operation.put("op", op);
+        operation.put("path", path);
+        if (!REMOVE.equals(op)) {
+            operation.put("value", value == null ? JSONObject.NULL : value);
+        }
+        return operation;
+    }
+
+    /**
+     * Applies all operations of the given patch in order to the given document.
+     * The document is modified in place, values of added and replaced pairs are
+     * inserted as is and not copied.
+     *
+     * <p>
+     *   Operations applied before a failing operation are not rolled back.
+     * </p>
+     *
+     * @param document the document to modify
+     * @param patch the patch to apply
+     * @throws JSONException if any operation is invalid or can't be applied
+     * @throws NullPointerException if document or patch is null
+     */
+    public static void apply(JSONObject document, JSONArray patch) throws JSONException {
+        if (document == null) throw new NullPointerException("Document");
+        for (int i = 0; i < patch.length(); i++) {
+            final JSONObject operation = patch.getJSONObject(i);
+            apply(document, operation.getString("op"), operation.getString("path"), operation);
+        }
+    }
+
+    private static void apply(JSONObject document, String op, String path, JSONObject operation)
+        throws JSONException {
+
+        if (!path.startsWith("/")) throw new JSONException("Invalid or unsupported path '" + path + "'");
+        final int last = path.lastIndexOf('/');
+        final Object parent = resolve(document, path.substring(0, last));
+        final String token = unescape(path.substring(last + 1));
+
+        if (parent instanceof JSONObject) {
+            final JSONObject object = (JSONObject) parent;
+            if (ADD.equals(op)) {
+                object.put(token, operation.get("value"));
+            } else if (REMOVE.equals(op)) {
+                if (object.remove(token) == null) throw new JSONException("No such key at '" + path + "'");
+            } else if (REPLACE.equals(op)) {
+                if (!object.has(token)) throw new JSONException("No such key at '" + path + "'");
+                object.put(token, operation.get("value"));
+            } else {
+                throw new JSONException("Unsupported operation '" + op + "'");
+            }
+        } else if (parent instanceof JSONArray) {
+            final JSONArray array = (JSONArray) parent;
+            if (ADD.equals(op)) {
+                if (END.equals(token)) {
+                    array.put(operation.get("value"));
+                } else {
+                    JSON.asList(array).add(index(array, token, path, true), operation.get("value"));
+                }
+            } else if (REMOVE.equals(op)) {
+                remove(array, index(array, token, path, false));
+            } else if (REPLACE.equals(op)) {
+                array.put(index(array, token, path, false), operation.get("value"));
+            } else {
+                throw new JSONException("Unsupported operation '" + op + "'");
+            }
+        } else {
+            throw new JSONException("No container at '" + path + "'");
+        }
+    }
+
+    private static Object resolve(JSONObject document, String pointer) throws JSONException {
+        Object current = document;
+        int start = 1;
+        while (start <= pointer.length()) {
+            final int end = pointer.indexOf('/', start) == -1 ? pointer.length() : pointer.indexOf('/', start);
+            final String token = unescape(pointer.substring(start, end));
+            if (current instanceof JSONObject) {
+                current = ((JSONObject) current).opt(token);
+            } else if (current instanceof JSONArray) {
+                final JSONArray array = (JSONArray) current;
+                current = array.opt(index(array, token, pointer, false));
+            } else {
+                current = null;
+            }
+            if (current == null) throw new JSONException("No such path '" + pointer + "'");
+            start = end + 1;
+        }
+        return current;
+    }
+
+    private static int index(JSONArray array, String token, String path, boolean inclusive)
+        throws JSONException {
+
+        final int length = token.length();
+        if (length == 0 || length > 9 || (length > 1 && token.charAt(0) == '0')) {
+            throw new JSONException("Invalid array index '" + token + "' in '" + path + "'");
+        }
+        int index = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = token.charAt(i);
+            if (c < '0' || c > '9') throw new JSONException("Invalid array index '" + token + "' in '" + path + "'");
+            index = index * 10 + (c - '0');
+        }
+        if (index > array.length() || (index == array.length() && !inclusive)) {
+            throw new JSONException("Array index " + index + " out of bounds in '" + path + "'");
+        }
+        return index;
+    }
+
+    private static void remove(JSONArray array, int index) throws JSONException {
+        try {
+            JSON.asList(array).remove(index);
+        } catch (UnsupportedOperationException e) {
+            throw new JSONException(e);
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.JSONException;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.json.JSON;
+import de.cosmocode.json.JsonReader;
+import de.cosmocode.json.JsonToken;
+import de.cosmocode.rendering.Renderer;
+
+/**
+ * Calculates the differences of two json documents by reading both in lockstep,
+ * without building objects or arrays. Memory usage only depends on the nesting
+ * depth, which allows comparing documents of arbitrary size.
+ *
+ * <p>
+ *   Keys of all objects have to be sorted in natural order, like in objects created
+ *   by {@link JSON#createSortedJSONObject(java.util.Map)}. The differences are
+ *   rendered as a json patch as specified by {@link JSONPatch}, while reading the
+ *   documents. Arrays are compared by position, because a minimal diff of arrays
+ *   requires random access to their elements.
+ * </p>
+ *
+ * @since 2.2
+ */
+public final class JSONStreamDiff {
+
+    private final JsonReader oldReader;
+
+    private final JsonReader newReader;
+
+    private final Renderer renderer;
+
+    private JSONStreamDiff(JsonReader oldReader, JsonReader newReader, Renderer renderer) {
+        this.oldReader = oldReader;
+        this.newReader = newReader;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Compares the json objects of both readers and renders the resulting
+     * patch as a list of operations to the given renderer. The readers are
+     * not closed.
+     *
+     * @param oldJson the old object
+     * @param newJson the new object
+     * @param renderer the renderer the patch will be rendered to
+     * @throws IOException if reading failed
+     * @throws JSONException if any input is no valid json object or contains unsorted keys
+     * @throws NullPointerException if any argument is null
+     */
+    public static void diff(Reader oldJson, Reader newJson, Renderer renderer) throws IOException, JSONException {
+        diff(new JsonReader(oldJson), new JsonReader(newJson), renderer);
+    }
+
+    /**
+     * Compares the json objects of both readers and renders the resulting
+     * patch as a list of operations to the given renderer.
+     *
+     * @param oldJson the old object, not yet read
+     * @param newJson the new object, not yet read
+     * @param renderer the renderer the patch will be rendered to
+     * @throws IOException if reading failed
+     * @throws JSONException if any input is no valid json object or contains unsorted keys
+     * @throws NullPointerException if any argument is null
+     */
+    public static void diff(JsonReader oldJson, JsonReader newJson, Renderer renderer)
+        throws IOException, JSONException {
+
+        Preconditions.checkNotNull(oldJson, "OldJson");
+        Preconditions.checkNotNull(newJson, "NewJson");
+        Preconditions.checkNotNull(renderer, "Renderer");
+        if (oldJson.next() != JsonToken.START_OBJECT || newJson.next() != JsonToken.START_OBJECT) {
+            throw new JSONException("Expected objects");
+        }
+        renderer.list();
+        new JSONStreamDiff(oldJson, newJson, renderer).object("");
+        renderer.endList();
+        if (oldJson.next() != JsonToken.END_DOCUMENT || newJson.next() != JsonToken.END_DOCUMENT) {
+            throw new JSONException("Expected end of input");
+        }
+    }
+
+    /**
+     * Reads the next key having a non null value, which becomes the current token.
+     *
+     * @param reader the reader
+     * @param previous the previous key, may be null
+     * @return the key or null if the object ended
+     */
+    private static String nextKey(JsonReader reader, String previous) throws IOException, JSONException {
+        String last = previous;
+        while (reader.next() == JsonToken.KEY) {
+            final String key = reader.getString();
+            if (last != null && last.compareTo(key) >= 0) {
+                throw new JSONException("Key '" + key + "' is not sorted");
+            }
+            last = key;
+            if (reader.next() != JsonToken.NULL) return key;
+        }
+        return null;
+    }
+
+    private void object(String path) throws IOException, JSONException {
+        String oldKey = nextKey(oldReader, null);
+        String newKey = nextKey(newReader, null);
+        while (oldKey != null || newKey != null) {
+            final int comparison;
+            if (oldKey == null) {
+                comparison = 1;
+            } else if (newKey == null) {
+                comparison = -1;
+            } else {
+                comparison = oldKey.compareTo(newKey);
+            }
+            if (comparison < 0) {
+                remove(path + "/" + JSONPatch.escape(oldKey));
+                oldReader.skipValue();
+                oldKey = nextKey(oldReader, oldKey);
+            } else if (comparison > 0) {
+                operation(JSONPatch.ADD, path + "/" + JSONPatch.escape(newKey));
+                newKey = nextKey(newReader, newKey);
+            } else {
+                value(path + "/" + JSONPatch.escape(newKey));
+                oldKey = nextKey(oldReader, oldKey);
+                newKey = nextKey(newReader, newKey);
+            }
+        }
+    }
+
+    private void array(String path) throws IOException, JSONException {
+        int index = 0;
+        while (true) {
+            final JsonToken oldToken = oldReader.next();
+            final JsonToken newToken = newReader.next();
+            if (oldToken == JsonToken.END_ARRAY && newToken == JsonToken.END_ARRAY) {
+                return;
+            } else if (oldToken == JsonToken.END_ARRAY) {
+                do {
+                    operation(JSONPatch.ADD, path + "/" + JSONPatch.END);
+                } while (newReader.next() != JsonToken.END_ARRAY);
+                return;
+            } else if (newToken == JsonToken.END_ARRAY) {
+                // removing from the same index keeps the patch valid
+                final String pointer = path + "/" + index;
+                do {
+                    remove(pointer);
+                    oldReader.skipValue();
+                } while (oldReader.next() != JsonToken.END_ARRAY);
+                return;
+            } else {
+                value(path + "/" + index);
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Compares the values starting with the current tokens of both readers.
+     *
+     * @param path the path of both values
+     */
+    private void value(String path) throws IOException, JSONException {
+        final JsonToken oldToken = oldReader.getToken();
+        final JsonToken newToken = newReader.getToken();
+        if (oldToken != newToken) {
+            oldReader.skipValue();
+            operation(JSONPatch.REPLACE, path);
+            return;
+        }
+        switch (newToken) {
+            case START_OBJECT: {
+                object(path);
+                break;
+            }
+            case START_ARRAY: {
+                array(path);
+                break;
+            }
+            case STRING: {
+                if (!oldReader.getString().equals(newReader.getString())) {
+                    operation(JSONPatch.REPLACE, path);
+                }
+                break;
+            }
+            case NUMBER: {
+                if (!oldReader.getNumber().equals(newReader.getNumber())) {
+                    operation(JSONPatch.REPLACE, path);
+                }
+                break;
+            }
+            case BOOLEAN: {
+                if (oldReader.getBoolean() != newReader.getBoolean()) {
+                    operation(JSONPatch.REPLACE, path);
+                }
+                break;
+            }
+            default: {
+                break;
+            }
+        }
+    }
+
+    private void remove(String path) {
+        renderer.map().key("op").value(JSONPatch.REMOVE).key("path").value(path).endMap();
+    }
+
+    /**
+     * Renders an operation using the value starting with the current token of the new reader.
+     *
+     * @param op the operation
+     * @param path the path
+     */
+    private void operation(String op, String path) throws IOException, JSONException {
+        renderer.map().key("op").value(op).key("path").value(path).key("value");
+        newReader.renderValue(renderer);
+        renderer.endMap();
+    }
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link JSON#toBinary(JSONObject)} and {@link JSON#asMap(ByteBuffer)}.
+ */
+public final class BinaryJsonTest {
+
+    private static final String JSON_TEXT = 
+        "{\"s\":\"x\",\"u\":\"\\u00e4\\u20ac\\ud83d\\ude00\",\"\\u00e4\":1,\"n\":null,\"o\":{\"b\":true,\"a\":false}," + 
+        "\"l\":12345678901,\"d\":-1.5,\"a\":[1,\"a\",false,{\"z\":[]},[2.5]],\"e\":{}}";
+
+    /**
+     * Tests that the decoded view equals the original document.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void roundTrip() throws JSONException {
+        final JSONObject object = new JSONObject(JSON_TEXT);
+        final ByteBuffer buffer = JSON.toBinary(object);
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertTrue(buffer.isReadOnly());
+        final Map<String, Object> map = JSON.asMap(buffer);
+        Assert.assertEquals(JSON.asMap(object), map);
+        Assert.assertEquals(map, JSON.asMap(object));
+        Assert.assertEquals("\u00e4\u20ac\ud83d\ude00", map.get("u"));
+        Assert.assertEquals(Integer.valueOf(1), map.get("\u00e4"));
+        Assert.assertEquals(Long.valueOf(12345678901L), map.get("l"));
+        Assert.assertEquals(Double.valueOf(-1.5), map.get("d"));
+        Assert.assertTrue(map.containsKey("n"));
+        Assert.assertNull(map.get("n"));
+        Assert.assertFalse(map.containsKey("m"));
+        Assert.assertFalse(map.containsKey(Integer.valueOf(1)));
+        Assert.assertEquals(Boolean.TRUE, ((Map<?, ?>) map.get("o")).get("b"));
+        final List<?> list = (List<?>) map.get("a");
+        Assert.assertEquals(5, list.size());
+        Assert.assertEquals(Boolean.FALSE, list.get(2));
+        Assert.assertEquals(Arrays.asList(2.5), list.get(4));
+        Assert.assertEquals(0, buffer.position());
+    }
+
+    /**
+     * Tests that the encoding is written into a buffer of the exact size,
+     * including unpaired surrogates.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void exactSize() throws JSONException {
+        final JSONObject object = new JSONObject(JSON_TEXT);
+        object.put("x\ud800", "\udc00y\ud83d");
+        final ByteBuffer buffer = JSON.toBinary(object);
+        Assert.assertEquals(buffer.capacity(), buffer.limit());
+        final Map<String, Object> map = JSON.asMap(buffer);
+        Assert.assertEquals("?y?", map.get("x?"));
+        Assert.assertEquals("\u00e4\u20ac\ud83d\ude00", map.get("u"));
+    }
+
+    /**
+     * Tests that keys are found in objects of various sizes.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void lookup() throws JSONException {
+        for (int size = 0; size < 40; size++) {
+            final JSONObject object = new JSONObject();
+            for (int i = 0; i < size; i++) {
+                object.put("key" + i, i);
+            }
+            final Map<String, Object> map = JSON.asMap(JSON.toBinary(object));
+            Assert.assertEquals(size, map.size());
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(Integer.valueOf(i), map.get("key" + i));
+            }
+            Assert.assertNull(map.get("key"));
+            Assert.assertNull(map.get("key" + size));
+            Assert.assertNull(map.get(""));
+        }
+    }
+
+    /**
+     * Tests views on arrays and on values stored at an offset of a larger buffer.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void embedded() throws JSONException {
+        final JSONArray array = new JSONArray("[1,[true],{\"a\":\"b\"}]");
+        final ByteBuffer encoded = JSON.toBinary(array);
+        final ByteBuffer file = ByteBuffer.allocate(encoded.remaining() + 10);
+        file.position(7);
+        file.put(encoded);
+        file.position(7);
+        final List<Object> list = JSON.asList(file);
+        Assert.assertEquals(JSON.asList(array), list);
+        Assert.assertEquals("b", ((Map<?, ?>) list.get(2)).get("a"));
+        try {
+            JSON.asMap(file);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(7, file.position());
+        }
+    }
+
+    /**
+     * Tests that views can't be modified.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() throws JSONException {
+        JSON.asMap(JSON.toBinary(new JSONObject(JSON_TEXT))).put("s", "y");
+    }
+
+    /**
+     * Tests that unsupported values are rejected.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupported() throws JSONException {
+        JSON.toBinary(new JSONObject().put("a", new Object()));
+    }
+
+}
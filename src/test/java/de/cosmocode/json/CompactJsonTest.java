@@ -0,0 +1,125 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link JSON#compact(JSONObject)} and {@link JSON#compact(JSONArray)}.
+ */
+public final class CompactJsonTest {
+
+    private static final String JSON_TEXT = 
+        "{\"s\":\"x\",\"n\":null,\"o\":{\"b\":true,\"a\":1}," + 
+        "\"ints\":[1,2,3],\"longs\":[12345678901,-12345678901],\"doubles\":[1.5,2.5],\"booleans\":[true,false]," + 
+        "\"mixed\":[1,\"a\",null,{\"a\":2,\"b\":false},[]],\"empty\":[]}";
+
+    /**
+     * Tests that compact copies are equal to the views.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void equal() throws JSONException {
+        final JSONObject object = new JSONObject(JSON_TEXT);
+        final Map<String, Object> compact = JSON.compact(object);
+        Assert.assertEquals(JSON.asMap(object).keySet(), compact.keySet());
+        Assert.assertEquals(compact, JSON.compact(new JSONObject(JSON_TEXT)));
+        Assert.assertEquals(compact.hashCode(), JSON.compact(new JSONObject(JSON_TEXT)).hashCode());
+        Assert.assertEquals("x", compact.get("s"));
+        Assert.assertTrue(compact.containsKey("n"));
+        Assert.assertNull(compact.get("n"));
+        Assert.assertFalse(compact.containsKey("missing"));
+        Assert.assertNull(compact.get(Integer.valueOf(1)));
+        Assert.assertEquals(Arrays.asList(1, 2, 3), compact.get("ints"));
+        Assert.assertEquals(Arrays.asList(12345678901L, -12345678901L), compact.get("longs"));
+        Assert.assertEquals(Arrays.asList(1.5, 2.5), compact.get("doubles"));
+        Assert.assertEquals(Arrays.asList(true, false), compact.get("booleans"));
+        Assert.assertEquals(Arrays.asList(), compact.get("empty"));
+        final List<?> mixed = (List<?>) compact.get("mixed");
+        Assert.assertEquals(5, mixed.size());
+        Assert.assertNull(mixed.get(2));
+        Assert.assertEquals(JSON.asMap(new JSONObject("{\"a\":2,\"b\":false}")), mixed.get(3));
+    }
+
+    /**
+     * Tests that keys are iterated in natural order.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void sorted() throws JSONException {
+        final Map<String, Object> compact = JSON.compact(new JSONObject("{\"c\":1,\"a\":2,\"b\":3}"));
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(compact.keySet().toArray()));
+        Assert.assertEquals(Arrays.asList(2, 3, 1), Arrays.asList(compact.values().toArray()));
+    }
+
+    /**
+     * Tests that objects having the same keys share their key table.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void shared() throws JSONException {
+        final List<?> list = JSON.compact(new JSONArray("[{\"a\":1,\"b\":2},{\"b\":3,\"a\":4},{\"a\":5}]"));
+        final CompactJsonMap first = (CompactJsonMap) list.get(0);
+        final CompactJsonMap second = (CompactJsonMap) list.get(1);
+        final CompactJsonMap third = (CompactJsonMap) list.get(2);
+        Assert.assertSame(first.getKeys(), second.getKeys());
+        Assert.assertNotSame(first.getKeys(), third.getKeys());
+        Assert.assertSame(first.getKeys().get(0), third.getKeys().get(0));
+    }
+
+    /**
+     * Tests that compact copies can't be modified.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void immutable() throws JSONException {
+        final Map<String, Object> compact = JSON.compact(new JSONObject(JSON_TEXT));
+        try {
+            compact.put("s", "y");
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals("x", compact.get("s"));
+        }
+        try {
+            compact.entrySet().iterator().remove();
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(9, compact.size());
+        }
+        @SuppressWarnings("unchecked")
+        final List<Object> ints = (List<Object>) compact.get("ints");
+        try {
+            ints.set(0, 5);
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(1, ints.get(0));
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.StringWriter;
+
+import org.json.JSONException;
+import org.json.extension.JSONConstructor;
+import org.json.extension.JSONEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.cosmocode.rendering.Renderable;
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Tests {@link FragmentCache}.
+ */
+@SuppressWarnings("deprecation")
+public final class FragmentCacheTest {
+
+    /**
+     * An encoder counting its invocations.
+     */
+    private static final class Encoder implements JSONEncoder, FragmentCache.Versioned {
+
+        private final String name;
+
+        private long version;
+
+        private int encoded;
+
+        public Encoder(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void encodeJSON(JSONConstructor json) throws JSONException {
+            encoded++;
+            json.object().key("name").value(name).key("version").value(version).endObject();
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+    }
+
+    /**
+     * Tests that cached fragments are rendered like the values themselves.
+     */
+    @Test
+    public void render() {
+        final FragmentCache cache = new FragmentCache(1024);
+        final Encoder encoder = new Encoder("\u00e4\"");
+        final Renderable renderable = new Renderable() {
+
+            @Override
+            public void render(Renderer renderer) throws RenderingException {
+                renderer.list().value(1L).value("x").endList();
+            }
+
+        };
+        final RawRenderer[] renderers = {
+            new JsonRenderer(), new JsonStreamingRenderer(new StringWriter()), new JsonUtf8Renderer(0)
+        };
+        for (RawRenderer renderer : renderers) {
+            renderer.list();
+            cache.render(renderer, encoder);
+            cache.render(renderer, renderable);
+            cache.render(renderer, null);
+            cache.render(renderer, encoder);
+            renderer.endList();
+            final String expected = new JsonRenderer().list().value(encoder).value(renderable).nullValue().
+                value(encoder).endList().build().toString();
+            Assert.assertEquals(expected, renderer.build().toString());
+        }
+        // 1 rendering per expectation and 1 miss
+        Assert.assertEquals(2 * renderers.length + 1, encoder.encoded);
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(3 * renderers.length - 2, cache.getHitCount());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    /**
+     * Tests that changed versions and invalidation cause rendering.
+     */
+    @Test
+    public void versions() {
+        final FragmentCache cache = new FragmentCache(1024);
+        final Encoder encoder = new Encoder("a");
+        final JsonUtf8Renderer renderer = new JsonUtf8Renderer();
+        renderer.list();
+        cache.render(renderer, encoder);
+        encoder.version = 1;
+        cache.render(renderer, encoder);
+        cache.render(renderer, encoder);
+        cache.invalidate(encoder);
+        cache.render(renderer, encoder);
+        renderer.endList();
+        Assert.assertEquals(3, encoder.encoded);
+        Assert.assertEquals(3, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals("[{\"name\":\"a\",\"version\":0},{\"name\":\"a\",\"version\":1}," + 
+            "{\"name\":\"a\",\"version\":1},{\"name\":\"a\",\"version\":1}]", renderer.build());
+    }
+
+    /**
+     * Tests that least recently used fragments are evicted.
+     */
+    @Test
+    public void eviction() {
+        final int length = "{\"name\":\"a\",\"version\":0}".length();
+        final FragmentCache cache = new FragmentCache(2 * length);
+        final Encoder a = new Encoder("a");
+        final Encoder b = new Encoder("b");
+        final Encoder c = new Encoder("c");
+        final JsonUtf8Renderer renderer = new JsonUtf8Renderer();
+        renderer.list();
+        cache.render(renderer, a);
+        cache.render(renderer, b);
+        cache.render(renderer, a);
+        cache.render(renderer, c);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(2 * length, cache.getBytes());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        cache.render(renderer, a);
+        cache.render(renderer, b);
+        Assert.assertEquals(1, a.encoded);
+        Assert.assertEquals(2, b.encoded);
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getBytes());
+    }
+
+}
@@ -54,10 +54,15 @@ public final class JSONArrayListTest implements TestListGenerator<Object> {
                 CollectionFeature.NON_STANDARD_TOSTRING,
                 CollectionFeature.SUPPORTS_ADD,
                 CollectionFeature.SUPPORTS_ADD_ALL,
+                CollectionFeature.SUPPORTS_REMOVE,
+                CollectionFeature.SUPPORTS_REMOVE_ALL,
+                CollectionFeature.SUPPORTS_RETAIN_ALL,
+                CollectionFeature.SUPPORTS_CLEAR,
                 CollectionFeature.KNOWN_ORDER,
                 ListFeature.SUPPORTS_SET,
                 ListFeature.SUPPORTS_ADD_WITH_INDEX,
-                ListFeature.SUPPORTS_ADD_ALL_WITH_INDEX
+                ListFeature.SUPPORTS_ADD_ALL_WITH_INDEX,
+                ListFeature.SUPPORTS_REMOVE_WITH_INDEX
             ).createTestSuite();
     }
 
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the handling of null elements in {@link JsonArrayList}.
+ */
+public final class JsonArrayListNullTest {
+
+    /**
+     * Tests that views on arrays containing nulls can be created.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void create() throws JSONException {
+        final List<Object> list = JSON.asList(new JSONArray("[1,null,3]"));
+        Assert.assertEquals(3, list.size());
+        Assert.assertEquals(Integer.valueOf(1), list.get(0));
+        Assert.assertEquals(Integer.valueOf(3), list.get(2));
+    }
+
+    /**
+     * Tests that accessing a null element fails.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test(expected = NullPointerException.class)
+    public void get() throws JSONException {
+        JSON.asList(new JSONArray("[1,null,3]")).get(1);
+    }
+
+    /**
+     * Tests that iterating over null elements fails.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test(expected = NullPointerException.class)
+    public void iterate() throws JSONException {
+        for (Object element : JSON.asList(new JSONArray("[1,null]"))) {
+            Assert.assertNotNull(element);
+        }
+    }
+
+    /**
+     * Tests that null elements can be replaced and removed.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void replace() throws JSONException {
+        final JSONArray array = new JSONArray("[1,null,null]");
+        final List<Object> list = JSON.asList(array);
+        Assert.assertNull(list.set(1, Integer.valueOf(2)));
+        Assert.assertNull(list.remove(2));
+        Assert.assertEquals("[1,2]", array.toString());
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.nio.ByteBuffer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Tests {@link JsonFeedParser}.
+ */
+public final class JsonFeedParserTest {
+
+    private static final String JSON_TEXT =
+        " {\"name\" : \"a \\\"b\\\" \\\\ \\/ \\b\\f\\n\\r\\t \\u00e4\\u20AC \u00f6\u20ac\ud83d\ude00\"," +
+        "\"numbers\":[0,-1,2147483648,-0.5,1e3,1.5E-2], \"flags\" :\n[true,false],\"n\":null," +
+        "\"empty\":{},\"list\":[],\"nested\":{\"a\":[[],{\"b\":1}]}}\t";
+
+    private static final byte[] BYTES = JSON_TEXT.getBytes(Charsets.UTF_8);
+
+    private JSONObject parse(byte[] bytes, int chunkSize, boolean direct) throws JSONException {
+        final JsonFeedParser parser = new JsonFeedParser();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            final int length = Math.min(chunkSize, bytes.length - i);
+            final ByteBuffer chunk;
+            if (direct) {
+                chunk = ByteBuffer.allocateDirect(length);
+                chunk.put(bytes, i, length).flip();
+            } else {
+                chunk = ByteBuffer.wrap(bytes, i, length).slice();
+            }
+            parser.feed(chunk);
+            Assert.assertFalse(chunk.hasRemaining());
+        }
+        return (JSONObject) parser.finish();
+    }
+
+    /**
+     * Tests that chunks of any size produce the same tree.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void chunks() throws JSONException {
+        final JSONObject expected = new JSONObject(JSON_TEXT);
+        for (int size = 1; size <= BYTES.length; size++) {
+            final JSONObject object = parse(BYTES, size, false);
+            Assert.assertEquals("Chunk size " + size, JSON.asMap(expected), JSON.asMap(object));
+            Assert.assertEquals(Long.valueOf(2147483648L), object.getJSONArray("numbers").get(2));
+            Assert.assertSame(JSONObject.NULL, object.get("n"));
+        }
+        Assert.assertEquals(JSON.asMap(expected), JSON.asMap(parse(BYTES, 7, true)));
+    }
+
+    /**
+     * Tests that values are rendered as soon as they are complete.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void incremental() throws JSONException {
+        final JsonTreeRenderer renderer = new JsonTreeRenderer();
+        final JsonFeedParser parser = new JsonFeedParser(renderer);
+        parser.feed(ByteBuffer.wrap("[1, \"a".getBytes(Charsets.UTF_8)));
+        Assert.assertFalse(parser.isComplete());
+        parser.feed(ByteBuffer.wrap("b\", tr".getBytes(Charsets.UTF_8)));
+        parser.feed(ByteBuffer.wrap("ue]".getBytes(Charsets.UTF_8)));
+        Assert.assertTrue(parser.isComplete());
+        final JSONArray array = (JSONArray) parser.finish();
+        Assert.assertEquals("[1,\"ab\",true]", array.toString());
+
+        final JsonFeedParser number = new JsonFeedParser();
+        number.feed(ByteBuffer.wrap("-1".getBytes(Charsets.UTF_8)));
+        number.feed(ByteBuffer.wrap("2.5".getBytes(Charsets.UTF_8)));
+        Assert.assertFalse(number.isComplete());
+        Assert.assertEquals(Double.valueOf(-12.5), number.finish());
+    }
+
+    /**
+     * Tests that malformed utf-8 is replaced.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void malformed() throws JSONException {
+        final byte[] bytes = {
+            '[', '"', 'a', (byte) 0xC3, '"', ',', '"', (byte) 0xFF, (byte) 0xE2, (byte) 0x82, 'b', '"', ']'
+        };
+        final JsonFeedParser parser = new JsonFeedParser();
+        parser.feed(ByteBuffer.wrap(bytes));
+        final JSONArray array = (JSONArray) parser.finish();
+        Assert.assertEquals("a\ufffd", array.getString(0));
+        Assert.assertEquals("\ufffd\ufffdb", array.getString(1));
+    }
+
+    /**
+     * Tests that invalid input is rejected.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void invalid() throws JSONException {
+        final String[] inputs = {
+            "{\"a\" 1}", "[1,]", "[01]", "[1.]", "[-]", "[1e]", "[tru]", "{\"a\":1", "\"a", "[\"\t\"]", "[\"\\x\"]",
+            "[\"\\u12g4\"]", "{1:2}", "[] []", ""
+        };
+        for (String input : inputs) {
+            final JsonFeedParser parser = new JsonFeedParser();
+            try {
+                parser.feed(ByteBuffer.wrap(input.getBytes(Charsets.UTF_8)));
+                parser.finish();
+                Assert.fail("Expected JSONException for " + input);
+            } catch (JSONException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains(" at byte "));
+            }
+            try {
+                parser.feed(ByteBuffer.wrap(new byte[1]));
+                Assert.fail("Expected IllegalStateException for " + input);
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("Parser failed before", e.getMessage());
+            }
+        }
+    }
+
+}
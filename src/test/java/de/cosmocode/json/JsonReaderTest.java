@@ -0,0 +1,217 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import org.json.JSONException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Tests {@link JsonReader}.
+ */
+public final class JsonReaderTest {
+
+    private static final String JSON = " {\"name\" : \"a \\\"b\\\" \\\\ \\/ \\b\\f\\n\\r\\t \\u00e4\\u20AC\"," +
+        "\"numbers\":[0,-1,2147483648,-0.5,1e3,1.5E-2], \"flags\" :\n[true,false,null],\"empty\":{},\"list\":[]}\t";
+
+    private JsonReader reader(String json) {
+        // a tiny buffer tests refilling inside of tokens
+        return new JsonReader(new StringReader(json), 3);
+    }
+
+    private void expect(JsonReader reader, JsonToken... tokens) throws IOException, JSONException {
+        for (JsonToken token : tokens) {
+            Assert.assertSame(token, reader.next());
+        }
+    }
+
+    /**
+     * Tests reading all kinds of tokens.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void tokens() throws IOException, JSONException {
+        final JsonReader reader = reader(JSON);
+        expect(reader, JsonToken.START_OBJECT, JsonToken.KEY);
+        Assert.assertEquals("name", reader.getString());
+        Assert.assertEquals(1, reader.getDepth());
+        expect(reader, JsonToken.STRING);
+        Assert.assertEquals("a \"b\" \\ / \b\f\n\r\t \u00e4\u20ac", reader.getString());
+        expect(reader, JsonToken.KEY, JsonToken.START_ARRAY);
+        Assert.assertEquals(2, reader.getDepth());
+        final Object[] numbers = {
+            Integer.valueOf(0), Integer.valueOf(-1), Long.valueOf(2147483648L),
+            Double.valueOf(-0.5), Double.valueOf(1e3), Double.valueOf(1.5e-2)
+        };
+        for (Object number : numbers) {
+            expect(reader, JsonToken.NUMBER);
+            Assert.assertEquals(number, reader.getNumber());
+        }
+        expect(reader, JsonToken.END_ARRAY, JsonToken.KEY, JsonToken.START_ARRAY, JsonToken.BOOLEAN);
+        Assert.assertTrue(reader.getBoolean());
+        expect(reader, JsonToken.BOOLEAN);
+        Assert.assertFalse(reader.getBoolean());
+        expect(reader, JsonToken.NULL, JsonToken.END_ARRAY);
+        expect(reader, JsonToken.KEY, JsonToken.START_OBJECT, JsonToken.END_OBJECT);
+        expect(reader, JsonToken.KEY, JsonToken.START_ARRAY, JsonToken.END_ARRAY);
+        expect(reader, JsonToken.END_OBJECT, JsonToken.END_DOCUMENT, JsonToken.END_DOCUMENT);
+    }
+
+    /**
+     * Tests {@link JsonReader#skipValue()}.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void skipValue() throws IOException, JSONException {
+        final JsonReader reader = reader("[{\"a\":[1,{\"b\":[]}]},\"c\"]");
+        expect(reader, JsonToken.START_ARRAY, JsonToken.START_OBJECT);
+        reader.skipValue();
+        Assert.assertSame(JsonToken.END_OBJECT, reader.getToken());
+        expect(reader, JsonToken.STRING);
+        Assert.assertEquals("c", reader.getString());
+        reader.skipValue();
+        expect(reader, JsonToken.END_ARRAY, JsonToken.END_DOCUMENT);
+    }
+
+    /**
+     * Tests that scalar top level values are supported.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void scalar() throws IOException, JSONException {
+        final JsonReader reader = reader(" 12345678901234567890 ");
+        expect(reader, JsonToken.NUMBER);
+        Assert.assertEquals(Double.valueOf(12345678901234567890d), reader.getNumber());
+        Assert.assertEquals("12345678901234567890", reader.getString());
+        expect(reader, JsonToken.END_DOCUMENT);
+    }
+
+    /**
+     * Tests that invalid input is rejected.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void invalid() throws IOException {
+        final String[] inputs = {
+            "", "{", "{\"a\"}", "{\"a\":1,}", "[1,]", "[1 2]", "{a:1}", "'a'", "01", "1.", "-", "1e", ".5",
+            "tru", "nul", "\"a", "\"\\x\"", "\"\\u12g4\"", "\"\u0001\"", "{} {}", "[}", "{]", "+1"
+        };
+        for (String input : inputs) {
+            final JsonReader reader = reader(input);
+            try {
+                while (reader.next() != JsonToken.END_DOCUMENT) {
+                    continue;
+                }
+                Assert.fail("JSONException expected for " + input);
+            } catch (JSONException e) {
+                // expected
+            }
+        }
+    }
+
+    private static String render(JsonReader reader) throws IOException, JSONException {
+        final JsonRenderer renderer = new JsonRenderer();
+        reader.next();
+        reader.renderValue(renderer);
+        Assert.assertSame(JsonToken.END_DOCUMENT, reader.next());
+        return renderer.build();
+    }
+
+    /**
+     * Tests rendering values to a renderer.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void renderValue() throws IOException, JSONException {
+        final String expected = "{\"name\":\"a \\\"b\\\" \\\\ / \\b\\f\\n\\r\\t \u00e4\\u20ac\"," + 
+            "\"numbers\":[0,-1,2147483648,-0.5,1000,0.015],\"flags\":[true,false,null],\"empty\":{},\"list\":[]}";
+        Assert.assertEquals(expected, render(reader(JSON)));
+        Assert.assertEquals("[1]", render(reader("[1]")));
+    }
+
+    /**
+     * Tests decoding utf-8 from streams and buffers, including characters
+     * split across reads and malformed input.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void utf8() throws IOException, JSONException {
+        final String text = "a\u00e4\u20ac\ud834\udd1e\u007f\u0080\u07ff\u0800\uffff\udbff\udfff";
+        final String json = "[\"" + text + "\",\"" + text + "\"]";
+        final byte[] bytes = json.getBytes(Charsets.UTF_8);
+        final String expected = new JsonRenderer().list().value(text).value(text).endList().build().toString();
+        Assert.assertEquals(expected, render(new JsonReader(new ByteArrayInputStream(bytes))));
+        Assert.assertEquals(expected, render(new JsonReader(ByteBuffer.wrap(bytes))));
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertEquals(expected, render(new JsonReader(direct)));
+        Assert.assertEquals(0, direct.position());
+
+        // single bytes per read and a char buffer of 1 split all sequences and surrogate pairs
+        final InputStream trickle = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+
+        };
+        Assert.assertEquals(expected, render(new JsonReader(new Utf8Reader(trickle), 1)));
+
+        final byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '[', '1', ']'};
+        Assert.assertEquals("[1]", render(new JsonReader(new ByteArrayInputStream(bom))));
+
+        final byte[] malformed = {'[', '"', (byte) 0xC3, '"', ',', '"', (byte) 0xE2, (byte) 0x82, '"', ',', 
+            '"', (byte) 0xC0, (byte) 0x80, '"', ',', '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"', ']'};
+        Assert.assertEquals("[\"\ufffd\",\"\ufffd\",\"\ufffd\ufffd\",\"\ufffd\"]", 
+            render(new JsonReader(ByteBuffer.wrap(malformed))));
+    }
+
+    /**
+     * Tests that accessors check the current token.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test(expected = IllegalStateException.class)
+    public void wrongAccessor() throws IOException, JSONException {
+        final JsonReader reader = reader("[1]");
+        reader.next();
+        reader.getString();
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Tests {@link JsonStreamingRenderer}.
+ */
+public final class JsonStreamingRendererTest {
+
+    private static final int SMALL_BUFFER = 3;
+
+    /**
+     * Renders the same structure on the given renderer.
+     *
+     * @param r the renderer to render to
+     */
+    private void render(Renderer r) {
+        r.map();
+        r.key("name").value("</script> \"quoted\" \\ \n\t\u0007 \u0085 \u2028 \u00e4\u00f6\u00fc");
+        r.key("long").value(Long.MIN_VALUE);
+        r.key("double").value(1.50);
+        r.key("whole").value(2.0);
+        r.key("tiny").value(1.0E-12);
+        r.key("flag").value(true);
+        r.key("nothing").nullValue();
+        r.key("empty").map().endMap();
+        r.key("list").list();
+        r.value(1L).value("two").list().endList().map().key("a").value(false).endMap().nullValue();
+        r.endList();
+        r.key(null).value("null key");
+        r.endMap();
+    }
+
+    /**
+     * Tests that the output is identical to the one of {@link JsonRenderer}.
+     */
+    @Test
+    public void sameAsJsonRenderer() {
+        final Renderer expected = new JsonRenderer();
+        render(expected);
+        final StringWriter writer = new StringWriter();
+        final Renderer renderer = new JsonStreamingRenderer(writer, SMALL_BUFFER);
+        render(renderer);
+        renderer.build();
+        Assert.assertEquals(expected.build(), writer.toString());
+    }
+
+    /**
+     * Tests escaping of all characters.
+     */
+    @Test
+    public void escaping() {
+        final StringBuilder builder = new StringBuilder();
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            if (c >= '\ud800' && c <= '\udfff') continue;
+            builder.append(c);
+            if (c == '<') builder.append('/');
+        }
+        final Renderer expected = new JsonRenderer();
+        expected.list().value(builder).endList();
+        final StringWriter writer = new StringWriter();
+        JSON.newRenderer(writer).list().value(builder).endList().build();
+        Assert.assertEquals(expected.build(), writer.toString());
+    }
+
+    /**
+     * Tests {@link JSON#newRenderer(java.io.OutputStream, java.nio.charset.Charset)}.
+     */
+    @Test
+    public void outputStream() {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JSON.newRenderer(stream, Charsets.UTF_8).list().value("\u00e4").endList().build();
+        Assert.assertEquals("[\"\u00e4\"]", new String(stream.toByteArray(), Charsets.UTF_8));
+    }
+
+    /**
+     * Tests that values outside of any list or map are rejected.
+     */
+    @Test(expected = RenderingException.class)
+    public void valueOutOfSequence() {
+        JSON.newRenderer(new StringWriter()).value(1L);
+    }
+
+    /**
+     * Tests that keys inside of lists are rejected.
+     */
+    @Test(expected = RenderingException.class)
+    public void misplacedKey() {
+        JSON.newRenderer(new StringWriter()).list().key("key");
+    }
+
+    /**
+     * Tests that non-finite numbers are rejected.
+     */
+    @Test(expected = RenderingException.class)
+    public void notANumber() {
+        JSON.newRenderer(new StringWriter()).list().value(Double.NaN);
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Tests {@link JsonTreeRenderer}.
+ */
+@SuppressWarnings("deprecation")
+public final class JsonTreeRendererTest {
+
+    private static final String JSON_TEXT = 
+        "{\"s\":\"x\\u00e4\",\"n\":null,\"o\":{\"b\":true,\"a\":false},\"l\":12345678901,\"i\":-7," + 
+        "\"d\":-1.5e2,\"a\":[1,\"a\",false,{\"z\":[]},[2.5]],\"e\":{}}";
+
+    /**
+     * Tests that streamed trees equal parsed trees.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void stream() throws IOException, JSONException {
+        final JsonReader reader = new JsonReader(new ByteArrayInputStream(JSON_TEXT.getBytes(Charsets.UTF_8)));
+        reader.next();
+        final JsonTreeRenderer renderer = JSON.newTreeRenderer();
+        reader.renderValue(renderer);
+        final JSONObject object = (JSONObject) renderer.build();
+        final JSONObject expected = new JSONObject(JSON_TEXT);
+        Assert.assertEquals(JSON.asMap(expected), JSON.asMap(object));
+        Assert.assertSame(JSONObject.NULL, object.get("n"));
+        Assert.assertEquals(Integer.valueOf(-7), object.get("i"));
+        Assert.assertEquals(Long.valueOf(12345678901L), object.get("l"));
+    }
+
+    /**
+     * Tests that plain values are streamed into renderers without raw support.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void plain() throws JSONException {
+        final JsonTreeRenderer renderer = new JsonTreeRenderer();
+        JSON.asConstructor(renderer).array().plain(JSON_TEXT).plain("[]").value(new JSONArray("[1]")).endArray();
+        final JSONArray array = (JSONArray) renderer.build();
+        Assert.assertEquals(3, array.length());
+        Assert.assertEquals(JSON.asMap(new JSONObject(JSON_TEXT)), JSON.asMap(array.getJSONObject(0)));
+        Assert.assertEquals(0, array.getJSONArray(1).length());
+        Assert.assertEquals(1, array.getJSONArray(2).getInt(0));
+        try {
+            JSON.asConstructor(new JsonTreeRenderer()).plain("{\"a\":1}}");
+            Assert.fail("Expected JSONException");
+        } catch (JSONException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("at character"));
+        }
+    }
+
+    /**
+     * Tests that misplaced calls are rejected.
+     */
+    @Test
+    public void sequence() {
+        try {
+            new JsonTreeRenderer().map().value(1L);
+            Assert.fail("Expected RenderingException");
+        } catch (RenderingException e) {
+            Assert.assertEquals("Value out of sequence", e.getMessage());
+        }
+        try {
+            new JsonTreeRenderer().list().endMap();
+            Assert.fail("Expected RenderingException");
+        } catch (RenderingException e) {
+            Assert.assertEquals("Misplaced endMap", e.getMessage());
+        }
+        try {
+            new JsonTreeRenderer().list().build();
+            Assert.fail("Expected RenderingException");
+        } catch (RenderingException e) {
+            Assert.assertEquals("Unclosed list", e.getMessage());
+        }
+        Assert.assertEquals("a", new JsonTreeRenderer().value("a").build());
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+import de.cosmocode.rendering.Renderer;
+
+/**
+ * Tests {@link JsonUtf8Renderer}.
+ */
+public final class JsonUtf8RendererTest {
+
+    private static final long[] LONGS = {
+        0L, 1L, -1L, 9L, 10L, 99L, 100L, 123456789L, 999999999999999999L,
+        1000000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1
+    };
+
+    private static final double[] DOUBLES = {
+        0.0, -0.0, 1.0, -1.0, 1.5, 0.001, 1e-4, 9999999.0, 1e7, 1e21, 123.456, -2.5e-10
+    };
+
+    /**
+     * Tests numbers against {@link JsonRenderer}.
+     */
+    @Test
+    public void numbers() {
+        final Renderer expected = new JsonRenderer().list();
+        final Renderer renderer = new JsonUtf8Renderer(0).list();
+        for (long value : LONGS) {
+            expected.value(value);
+            renderer.value(value);
+        }
+        for (double value : DOUBLES) {
+            expected.value(value);
+            renderer.value(value);
+        }
+        Assert.assertEquals(expected.endList().build(), renderer.endList().build());
+    }
+
+    /**
+     * Tests escaping and encoding of all characters.
+     */
+    @Test
+    public void encoding() {
+        final StringBuilder builder = new StringBuilder("ascii prefix </");
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            if (c >= '\ud800' && c <= '\udfff') continue;
+            builder.append(c);
+        }
+        builder.append("\ud834\udd1e");
+        final Renderer expected = new JsonRenderer();
+        expected.map().key(builder).value(builder).endMap();
+        final JsonUtf8Renderer renderer = JSON.newUtf8Renderer();
+        renderer.map().key(builder).value(builder).endMap();
+        final String json = expected.build().toString();
+        Assert.assertArrayEquals(json.getBytes(Charsets.UTF_8), renderer.toByteArray());
+        Assert.assertEquals(json, renderer.build());
+    }
+
+    /**
+     * Tests that multi-byte characters and escapes spanning the boundaries
+     * of the chunks reserved while encoding are written correctly.
+     */
+    @Test
+    public void chunks() {
+        for (int offset = 1020; offset < 1030; offset++) {
+            final StringBuilder builder = new StringBuilder("\u00e4");
+            for (int i = 1; i < offset; i++) {
+                builder.append('<');
+            }
+            builder.append("/\ud834\udd1e\n\u20ac");
+            final Renderer expected = new JsonRenderer();
+            expected.list().value(builder).endList();
+            final JsonUtf8Renderer renderer = new JsonUtf8Renderer(0);
+            renderer.list().value(builder).endList();
+            Assert.assertArrayEquals(expected.build().toString().getBytes(Charsets.UTF_8), renderer.toByteArray());
+        }
+    }
+
+    /**
+     * Tests that large ascii strings don't reserve space for escaping,
+     * which would prevent pooling the renderer afterwards.
+     */
+    @Test
+    public void largeString() {
+        final char[] chars = new char[256 * 1024];
+        Arrays.fill(chars, 'a');
+        final JsonUtf8Renderer renderer = JsonUtf8Renderer.acquire();
+        renderer.list().value(new String(chars)).endList();
+        Assert.assertEquals(chars.length + 4, renderer.size());
+        renderer.release();
+        final JsonUtf8Renderer pooled = JsonUtf8Renderer.acquire();
+        Assert.assertSame(renderer, pooled);
+        pooled.release();
+    }
+
+    /**
+     * Tests {@link JsonUtf8Renderer#writeTo(java.io.OutputStream)}.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void writeTo() throws IOException {
+        final JsonUtf8Renderer renderer = new JsonUtf8Renderer();
+        renderer.map().key("key").value("\u00e4").endMap();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        renderer.writeTo(stream);
+        Assert.assertEquals(renderer.size(), stream.size());
+        Assert.assertEquals("{\"key\":\"\u00e4\"}", new String(stream.toByteArray(), Charsets.UTF_8));
+    }
+
+    /**
+     * Tests {@link JsonUtf8Renderer#acquire()} and {@link JsonUtf8Renderer#release()}.
+     */
+    @Test
+    public void pooling() {
+        final JsonUtf8Renderer first = JsonUtf8Renderer.acquire();
+        first.list().value(1L).endList();
+        Assert.assertNotSame(first, JsonUtf8Renderer.acquire());
+        first.release();
+        final JsonUtf8Renderer second = JsonUtf8Renderer.acquire();
+        Assert.assertSame(first, second);
+        Assert.assertEquals(0, second.size());
+        Assert.assertEquals("[true]", second.list().value(true).endList().build());
+        second.release();
+    }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the caching of child views in {@link JsonObjectMap} and {@link JsonArrayList}.
+ */
+public final class JsonViewCacheTest {
+
+    private static final String JSON_TEXT = "{\"a\":{\"b\":[1,{\"c\":true},[2]]},\"d\":[{\"e\":1}]}";
+
+    /**
+     * Tests that repeated navigation returns the same views.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void cached() throws JSONException {
+        final Map<String, Object> map = JSON.asMap(new JSONObject(JSON_TEXT));
+        Assert.assertSame(map.get("a"), map.get("a"));
+        final List<?> list = (List<?>) ((Map<?, ?>) map.get("a")).get("b");
+        Assert.assertSame(list, ((Map<?, ?>) map.get("a")).get("b"));
+        Assert.assertSame(list.get(1), list.get(1));
+        Assert.assertSame(list.get(2), list.get(2));
+        Assert.assertSame(map.get("d"), map.get("d"));
+    }
+
+    /**
+     * Tests that writes through the views invalidate cached views.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void writeThrough() throws JSONException {
+        final Map<String, Object> map = JSON.asMap(new JSONObject(JSON_TEXT));
+        final Object a = map.get("a");
+        map.put("a", new JSONObject("{\"x\":1}"));
+        Assert.assertNotSame(a, map.get("a"));
+        Assert.assertEquals(Integer.valueOf(1), ((Map<?, ?>) map.get("a")).get("x"));
+        map.remove("a");
+        Assert.assertNull(map.get("a"));
+
+        @SuppressWarnings("unchecked")
+        final List<Object> list = (List<Object>) map.get("d");
+        final Object first = list.get(0);
+        list.set(0, new JSONArray("[3]"));
+        Assert.assertNotSame(first, list.get(0));
+        Assert.assertEquals(Integer.valueOf(3), ((List<?>) list.get(0)).get(0));
+        list.add(0, new JSONObject("{\"y\":2}"));
+        Assert.assertEquals(Integer.valueOf(2), ((Map<?, ?>) list.get(0)).get("y"));
+        Assert.assertEquals(Integer.valueOf(3), ((List<?>) list.get(1)).get(0));
+    }
+
+    /**
+     * Tests that cached views move along with inserted and removed elements.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void shifted() throws JSONException {
+        final JSONArray array = new JSONArray();
+        for (int i = 0; i < 20; i++) {
+            array.put(new JSONObject().put("i", i));
+        }
+        final List<Object> list = JSON.asList(array);
+        final Object last = list.get(19);
+        final Object third = list.get(2);
+        list.add(0, "head");
+        list.addAll(1, Arrays.asList("x", "y"));
+        Assert.assertSame(last, list.get(22));
+        Assert.assertSame(third, list.get(5));
+        list.remove(0);
+        list.subList(0, 2).clear();
+        Assert.assertSame(last, list.get(19));
+        Assert.assertSame(third, list.get(2));
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(Integer.valueOf(i), ((Map<?, ?>) list.get(i)).get("i"));
+        }
+        list.add("tail");
+        Assert.assertEquals("tail", list.get(20));
+        list.clear();
+        Assert.assertTrue(list.isEmpty());
+    }
+
+    /**
+     * Tests that colliding keys grow the cache instead of evicting each others views.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void collisions() throws JSONException {
+        final JSONObject object = new JSONObject();
+        for (int i = 0; i < 20; i++) {
+            object.put("k" + i, i);
+        }
+        // same slot in a cache of 8, different slots in a cache of 16
+        object.put("a", new JSONObject()).put("i", new JSONArray());
+        final Map<String, Object> map = JSON.asMap(object);
+        final Object a = map.get("a");
+        final Object i = map.get("i");
+        Assert.assertSame(a, map.get("a"));
+        Assert.assertSame(i, map.get("i"));
+        map.put("a", new JSONObject());
+        Assert.assertNotSame(a, map.get("a"));
+        Assert.assertSame(i, map.get("i"));
+    }
+
+    /**
+     * Tests that direct modifications of the backing objects are visible.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void direct() throws JSONException {
+        final JSONObject object = new JSONObject(JSON_TEXT);
+        final Map<String, Object> map = JSON.asMap(object);
+        final Object a = map.get("a");
+        object.put("a", new JSONObject("{\"x\":1}"));
+        Assert.assertNotSame(a, map.get("a"));
+        Assert.assertEquals(Integer.valueOf(1), ((Map<?, ?>) map.get("a")).get("x"));
+        object.put("a", "scalar");
+        Assert.assertEquals("scalar", map.get("a"));
+    }
+
+    /**
+     * Tests that {@link JSON#forEach(Map, EntryVisitor)} visits the same pairs as the entry set.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void forEach() throws JSONException {
+        final JSONObject object = new JSONObject(JSON_TEXT);
+        object.put("f", JSONObject.NULL);
+        final Map<String, Object> map = JSON.asMap(object);
+        final Map<String, Object> visited = new HashMap<String, Object>();
+        JSON.forEach(map, new EntryVisitor<String, Object>() {
+
+            @Override
+            public void visit(String key, Object value) {
+                visited.put(key, value);
+            }
+
+        });
+        Assert.assertEquals(map, visited);
+        Assert.assertTrue(visited.containsKey("f"));
+        Assert.assertNull(visited.get("f"));
+        Assert.assertSame(map.get("a"), visited.get("a"));
+    }
+
+    /**
+     * Tests that entries returned by the entry set write through.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void setValue() throws JSONException {
+        final JSONObject object = new JSONObject(JSON_TEXT);
+        final Map<String, Object> map = JSON.asMap(object);
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if ("d".equals(entry.getKey())) {
+                Assert.assertTrue(entry.getValue() instanceof List<?>);
+                entry.setValue("x");
+                Assert.assertEquals("x", entry.getValue());
+            }
+        }
+        Assert.assertEquals("x", object.opt("d"));
+        Assert.assertEquals("x", map.get("d"));
+    }
+
+}
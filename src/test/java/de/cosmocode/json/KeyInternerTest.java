@@ -0,0 +1,191 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+import de.cosmocode.collections.utility.UtilityMap;
+
+/**
+ * Tests {@link KeyInterner}.
+ */
+public final class KeyInternerTest {
+
+    /**
+     * Tests that equal keys are shared.
+     */
+    @Test
+    public void intern() {
+        final KeyInterner interner = new KeyInterner();
+        final String key = interner.intern(new StringBuilder("name"));
+        Assert.assertEquals("name", key);
+        Assert.assertSame(key, interner.intern(new String("name")));
+        Assert.assertSame(key, interner.intern(new StringBuilder("name")));
+        Assert.assertNotSame(key, interner.intern("other"));
+        Assert.assertEquals("", interner.intern(""));
+        Assert.assertEquals(3, interner.size());
+    }
+
+    /**
+     * Tests that unknown keys are not interned once the interner is full.
+     */
+    @Test
+    public void bounded() {
+        final KeyInterner interner = new KeyInterner(2).seed(Arrays.asList("a", "b"));
+        Assert.assertEquals(2, interner.size());
+        final String c = interner.intern(new StringBuilder("c"));
+        Assert.assertEquals("c", c);
+        Assert.assertNotSame(c, interner.intern(new StringBuilder("c")));
+        Assert.assertEquals(2, interner.size());
+        Assert.assertSame(interner.intern("a"), interner.intern(new StringBuilder("a")));
+    }
+
+    /**
+     * Tests that the seed is used as is.
+     */
+    @Test
+    public void seed() {
+        final String id = new String("id");
+        final KeyInterner interner = new KeyInterner().seed(Arrays.asList(id, "name"));
+        Assert.assertSame(id, interner.intern(new StringBuilder("id")));
+    }
+
+    /**
+     * Tests that concurrent threads agree on a single instance per key.
+     *
+     * @throws InterruptedException should not happen
+     * @throws ExecutionException should not happen
+     */
+    @Test
+    public void concurrent() throws InterruptedException, ExecutionException {
+        final KeyInterner interner = new KeyInterner();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String[]>> futures = Lists.newArrayList();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<String[]>() {
+
+                    @Override
+                    public String[] call() {
+                        final String[] keys = new String[100];
+                        for (int j = 0; j < keys.length; j++) {
+                            keys[j] = interner.intern(new StringBuilder("key").append(j));
+                        }
+                        return keys;
+                    }
+
+                }));
+            }
+            final String[] expected = futures.get(0).get();
+            for (Future<String[]> future : futures) {
+                final String[] keys = future.get();
+                for (int i = 0; i < expected.length; i++) {
+                    Assert.assertSame(expected[i], keys[i]);
+                }
+            }
+            Assert.assertEquals(100, interner.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that parsers share keys.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void parsers() throws IOException, JSONException {
+        final KeyInterner interner = new KeyInterner();
+        final String text = "{\"id\":1,\"items\":[{\"id\":2}]}";
+
+        final JsonReader reader = new JsonReader(ByteBuffer.wrap(text.getBytes(Charsets.UTF_8)));
+        reader.setKeyInterner(interner);
+        reader.next();
+        final JsonTreeRenderer renderer = JSON.newTreeRenderer();
+        reader.renderValue(renderer);
+        final JSONObject read = (JSONObject) renderer.build();
+
+        final JsonFeedParser parser = new JsonFeedParser(interner);
+        parser.feed(ByteBuffer.wrap(text.getBytes(Charsets.UTF_8)));
+        final JSONObject fed = (JSONObject) parser.finish();
+
+        final String id = interner.intern("id");
+        Assert.assertSame(id, firstKey(read));
+        Assert.assertSame(id, firstKey(fed));
+        Assert.assertSame(id, firstKey(fed.getJSONArray("items").getJSONObject(0)));
+
+        final JsonTreeRenderer tree = JSON.newTreeRenderer(interner);
+        tree.map().key(new StringBuilder("id")).value(3).endMap();
+        Assert.assertSame(id, firstKey((JSONObject) tree.build()));
+    }
+
+    /**
+     * Tests {@link JSON#createLinkedJSONObject(KeyInterner)}.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void linked() throws JSONException {
+        final KeyInterner interner = new KeyInterner();
+        final JSONObject object = JSON.createLinkedJSONObject(interner);
+        object.put(new String("b"), 1).put(new String("a"), 2);
+        final Iterator<?> keys = object.keys();
+        Assert.assertSame(interner.intern("b"), keys.next());
+        Assert.assertSame(interner.intern("a"), keys.next());
+    }
+
+    /**
+     * Tests that records read by {@link NdJson} share keys.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void records() throws JSONException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap("{\"id\":1}\n{\"id\":2}\n".getBytes(Charsets.UTF_8));
+            final List<UtilityMap<String, Object>> records = NdJson.read(buffer, executor);
+            Assert.assertSame(records.get(0).keySet().iterator().next(), records.get(1).keySet().iterator().next());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Object firstKey(JSONObject object) {
+        return object.keys().next();
+    }
+
+}
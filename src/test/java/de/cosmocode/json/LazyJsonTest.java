@@ -0,0 +1,167 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link JSON#asMap(CharSequence)} and {@link JSON#asList(CharSequence)}.
+ */
+public final class LazyJsonTest {
+
+    private static final String JSON_TEXT = 
+        " {\"s\" : \"x\\\"\\u00e4\\n\", \"n\":null,\"o\":{\"b\":true,\"a\":false}, \"l\":12345678901," + 
+        "\"d\":-1.5e2,\"a\":[1, \"]}\" ,false,{\"z\":[]},[2.5]],\"e\":{}, \"i\" : 0 } ";
+
+    /**
+     * Tests that the lazy view equals the parsed document.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void equal() throws JSONException {
+        final Map<String, Object> map = JSON.asMap(JSON_TEXT);
+        Assert.assertEquals(JSON.asMap(new JSONObject(JSON_TEXT)), map);
+        Assert.assertEquals(map, JSON.asMap(new JSONObject(JSON_TEXT)));
+        Assert.assertEquals("x\"\u00e4\n", map.get("s"));
+        Assert.assertTrue(map.containsKey("n"));
+        Assert.assertNull(map.get("n"));
+        Assert.assertEquals(Long.valueOf(12345678901L), map.get("l"));
+        Assert.assertEquals(Double.valueOf(-150), map.get("d"));
+        Assert.assertEquals(Integer.valueOf(0), map.get("i"));
+        final List<?> keys = Arrays.asList(map.keySet().toArray());
+        Assert.assertEquals(Arrays.asList("s", "n", "o", "l", "d", "a", "e", "i"), keys);
+        final List<?> list = (List<?>) map.get("a");
+        Assert.assertEquals("]}", list.get(1));
+        Assert.assertSame(list, map.get("a"));
+        Assert.assertSame(list.get(3), list.get(3));
+    }
+
+    /**
+     * Tests objects having more keys than being searched linearly and duplicate keys.
+     */
+    @Test
+    public void keys() {
+        final StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < 20; i++) {
+            builder.append("\"key").append(i).append("\":").append(i).append(',');
+        }
+        builder.append("\"key3\":\"last\",\"key19\":\"last\"}");
+        final Map<String, Object> map = JSON.asMap(builder);
+        Assert.assertEquals(20, map.size());
+        Assert.assertEquals(Integer.valueOf(0), map.get("key0"));
+        Assert.assertEquals("last", map.get("key3"));
+        Assert.assertEquals("last", map.get("key19"));
+        Assert.assertNull(map.get("key20"));
+        Assert.assertEquals(1, JSON.asMap("{\"a\":1,\"a\":2}").size());
+        Assert.assertEquals(Integer.valueOf(2), JSON.asMap("{\"a\":1,\"a\":2}").get("a"));
+    }
+
+    /**
+     * Tests that invalid nested values are only detected when being accessed.
+     */
+    @Test
+    public void lazyErrors() {
+        final Map<String, Object> map = JSON.asMap("{\"a\":1,\"b\":{\"c\":01},\"d\":tru,\"e\":[1 2]}");
+        Assert.assertEquals(Integer.valueOf(1), map.get("a"));
+        final Map<?, ?> b = (Map<?, ?>) map.get("b");
+        for (String key : Arrays.asList("d", "e")) {
+            try {
+                if ("e".equals(key)) {
+                    ((List<?>) map.get(key)).size();
+                } else {
+                    map.get(key);
+                }
+                Assert.fail("Expected IllegalArgumentException for " + key);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("at character"));
+            }
+        }
+        try {
+            b.get("c");
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Invalid value at character 16", e.getMessage());
+        }
+    }
+
+    /**
+     * Tests that malformed documents are rejected on creation.
+     */
+    @Test
+    public void invalid() {
+        for (String text : Arrays.asList("", "[]", "{", "{\"a\":\"}", "{} x", "{}}")) {
+            try {
+                JSON.asMap(text);
+                Assert.fail("Expected IllegalArgumentException for " + text);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("at character"));
+            }
+        }
+        Assert.assertEquals(Arrays.asList(1, null, "a"), JSON.asList(" [1,null,\"a\"]\n"));
+        Assert.assertTrue(JSON.asList("[ ]").isEmpty());
+    }
+
+
+    /**
+     * Tests that accessing deeply nested values doesn't scan the text once per level.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void scannedOnce() throws JSONException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("{\"a\":\"[{\",\"b\":[1,2,3]},");
+        }
+        final String filler = builder.substring(0, builder.length() - 1);
+        final String text = "{\"x\":{\"y\":{\"z\":[" + filler + "],\"v\":1},\"w\":[" + filler + "]},\"u\":2}";
+        final int[] reads = new int[1];
+        final CharSequence counting = new CharSequence() {
+
+            @Override
+            public char charAt(int index) {
+                reads[0]++;
+                return text.charAt(index);
+            }
+
+            @Override
+            public int length() {
+                return text.length();
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return text.subSequence(start, end);
+            }
+
+        };
+        final Map<String, Object> map = JSON.asMap(counting);
+        final Map<?, ?> y = (Map<?, ?>) ((Map<?, ?>) map.get("x")).get("y");
+        Assert.assertEquals(Integer.valueOf(1), y.get("v"));
+        Assert.assertTrue("Read " + reads[0] + " of " + text.length(), reads[0] < text.length() * 3 / 2);
+        Assert.assertEquals(JSON.asMap(new JSONObject(text)), map);
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Tests {@link MappedJson}.
+ */
+public final class MappedJsonTest {
+
+    private static final String JSON_TEXT =
+        " {\"s\" : \"\u00e4x\\\"\u20ac\\n\ud83d\ude00\", \"\u00f6\":null,\"o\":{\"b\":true,\"a\":\"\u00e4\"}," +
+        "\"l\":12345678901,\"d\":-1.5e2,\"a\":[1, \"]}\" ,false,{\"z\":[]},[2.5]],\"e\":{}, \"i\" : 0 } ";
+
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /**
+     * Tests views on a mapped file.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void file() throws IOException, JSONException {
+        final File file = File.createTempFile("mapped", ".json");
+        try {
+            final OutputStream stream = new FileOutputStream(file);
+            try {
+                stream.write(BOM);
+                stream.write(JSON_TEXT.getBytes(Charsets.UTF_8));
+            } finally {
+                stream.close();
+            }
+            final Map<String, Object> map = MappedJson.asMap(file);
+            Assert.assertEquals(JSON.asMap(JSON_TEXT), map);
+            Assert.assertEquals("\u00e4x\"\u20ac\n\ud83d\ude00", map.get("s"));
+            Assert.assertTrue(map.containsKey("\u00f6"));
+            Assert.assertEquals("\u00e4", ((Map<?, ?>) map.get("o")).get("a"));
+            Assert.assertEquals("]}", ((List<?>) map.get("a")).get(1));
+
+            final JsonReader reader = MappedJson.newReader(file);
+            try {
+                reader.next();
+                final JsonTreeRenderer renderer = JSON.newTreeRenderer();
+                reader.renderValue(renderer);
+                Assert.assertEquals(JSON.asMap(new JSONObject(JSON_TEXT)), JSON.asMap((JSONObject) renderer.build()));
+            } finally {
+                reader.close();
+            }
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Tests views on heap and direct buffers.
+     */
+    @Test
+    public void buffers() {
+        final byte[] bytes = "xx[\"\u00e4\", {\"\u20ac\":[]}]".getBytes(Charsets.UTF_8);
+        final ByteBuffer heap = ByteBuffer.wrap(bytes);
+        heap.position(2);
+        final List<Object> list = MappedJson.asList(heap);
+        Assert.assertEquals(2, heap.position());
+        Assert.assertEquals(JSON.asList("[\"\u00e4\", {\"\u20ac\":[]}]"), list);
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).position(2);
+        Assert.assertEquals(list, MappedJson.asList(direct));
+    }
+
+    /**
+     * Tests that syntax errors are reported with byte offsets.
+     */
+    @Test
+    public void invalid() {
+        try {
+            MappedJson.asMap(ByteBuffer.wrap("{\"\u00e4\":1} x".getBytes(Charsets.UTF_8)));
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Expected end of input at character 9", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import de.cosmocode.collections.utility.UtilityMap;
+import de.cosmocode.rendering.Renderable;
+import de.cosmocode.rendering.Renderer;
+import de.cosmocode.rendering.RenderingException;
+
+/**
+ * Tests {@link NdJson} and {@link NdJsonWriter}.
+ */
+public final class NdJsonTest {
+
+    private List<JSONObject> records(int count) throws JSONException {
+        final List<JSONObject> records = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            final JSONObject record = new JSONObject();
+            record.put("id", i);
+            record.put("name", "record \u00e4 " + i);
+            record.put("nested", new JSONObject().put("even", i % 2 == 0).put("list", new JSONArray("[1,2]")));
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Tests writing and reading a file.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void file() throws IOException, JSONException {
+        final List<JSONObject> records = records(1000);
+        final File file = File.createTempFile("records", ".ndjson");
+        try {
+            final NdJsonWriter writer = new NdJsonWriter(new FileOutputStream(file), 100);
+            for (JSONObject record : records) {
+                writer.write(record);
+            }
+            writer.close();
+            Assert.assertEquals(1000, writer.getCount());
+            final List<UtilityMap<String, Object>> read = NdJson.read(file);
+            Assert.assertEquals(records.size(), read.size());
+            for (int i = 0; i < records.size(); i++) {
+                Assert.assertEquals(JSON.asMap(records.get(i)), read.get(i));
+            }
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Tests that small partitions produce the same records in order.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void partitions() throws JSONException {
+        final StringBuilder text = new StringBuilder();
+        for (JSONObject record : records(100)) {
+            text.append(record).append(record.getInt("id") % 3 == 0 ? "\r\n\n  \n" : "\n");
+        }
+        text.setLength(text.length() - 1);
+        final byte[] bytes = text.toString().getBytes(Charsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int size : new int[] {1, 7, 100, bytes.length}) {
+                final List<UtilityMap<String, Object>> records = Lists.newArrayList();
+                NdJson.read(buffer, executor, new KeyInterner(), 0, size, records);
+                Assert.assertEquals(100, records.size());
+                for (int i = 0; i < 100; i++) {
+                    Assert.assertEquals(Integer.valueOf(i), records.get(i).get("id"));
+                }
+            }
+            Assert.assertEquals(0, buffer.position());
+            Assert.assertEquals(100, NdJson.read(buffer, executor).size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that invalid lines are reported with their offset.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void invalid() throws JSONException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            NdJson.read(ByteBuffer.wrap("{}\n{\"a\":}\n".getBytes(Charsets.UTF_8)), executor);
+            Assert.fail("Expected JSONException");
+        } catch (JSONException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid line at byte 3: "));
+        }
+        try {
+            NdJson.read(ByteBuffer.wrap("{}\n[]\n".getBytes(Charsets.UTF_8)), executor);
+            Assert.fail("Expected JSONException");
+        } catch (JSONException e) {
+            Assert.assertEquals("Expected object in line at byte 3", e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that failing records are discarded completely.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void discard() throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final NdJsonWriter writer = NdJson.newWriter(stream);
+        final Map<String, Object> record = ImmutableMap.<String, Object>of("a", 1);
+        writer.write(record);
+        try {
+            writer.write(ImmutableMap.<String, Object>of("b", Double.NaN));
+            Assert.fail("Expected RenderingException");
+        } catch (RenderingException e) {
+            Assert.assertEquals(1, writer.getCount());
+        }
+        writer.write(record);
+        writer.flush();
+        Assert.assertEquals("{\"a\":1}\n{\"a\":1}\n", new String(stream.toByteArray(), Charsets.UTF_8));
+    }
+
+    /**
+     * Tests that records failing with other exceptions than {@link RenderingException}
+     * are discarded completely as well.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void discardRuntimeException() throws IOException, JSONException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final NdJsonWriter writer = NdJson.newWriter(stream);
+        try {
+            writer.write(new Renderable() {
+
+                @Override
+                public void render(Renderer renderer) throws RenderingException {
+                    renderer.map().key("a");
+                    throw new IllegalStateException();
+                }
+
+            });
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(0, writer.getCount());
+        }
+        writer.write(new JSONObject().put("b", new JSONArray("[1,2]")));
+        writer.flush();
+        Assert.assertEquals("{\"b\":[1,2]}\n", new String(stream.toByteArray(), Charsets.UTF_8));
+    }
+
+    /**
+     * Tests that json nulls in arrays are written and read again.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void nulls() throws IOException, JSONException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final NdJsonWriter writer = NdJson.newWriter(stream);
+        writer.write(new JSONObject("{\"b\":[1,null]}"));
+        writer.close();
+        Assert.assertEquals("{\"b\":[1,null]}\n", new String(stream.toByteArray(), Charsets.UTF_8));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<UtilityMap<String, Object>> read = NdJson.read(ByteBuffer.wrap(stream.toByteArray()), executor);
+            Assert.assertEquals(1, read.size());
+            final List<?> list = List.class.cast(read.get(0).get("b"));
+            Assert.assertEquals(2, list.size());
+            Assert.assertEquals(1, list.get(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that arrays are rejected, because {@link NdJson#read(File)} only reads objects.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void arrays() throws IOException, JSONException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final NdJsonWriter writer = NdJson.newWriter(stream);
+        for (Object record : new Object[] {new JSONArray("[1]"), Arrays.asList(1, 2)}) {
+            try {
+                writer.write(record);
+                Assert.fail("Expected RenderingException");
+            } catch (RenderingException e) {
+                Assert.assertEquals(0, writer.getCount());
+            }
+        }
+        writer.write(new JSONObject().put("a", new JSONArray("[1]")));
+        writer.close();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<UtilityMap<String, Object>> read = NdJson.read(ByteBuffer.wrap(stream.toByteArray()), executor);
+            Assert.assertEquals(1, read.size());
+            Assert.assertEquals(Arrays.asList(1), read.get(0).get("a"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
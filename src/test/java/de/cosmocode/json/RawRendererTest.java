@@ -0,0 +1,164 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.json;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONStringer;
+import org.json.extension.JSONConstructor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Tests {@link RawRenderer#raw(CharSequence)} and
+ * {@link org.json.extension.JSONConstructor#plain(String)}.
+ */
+@SuppressWarnings("deprecation")
+public final class RawRendererTest {
+
+    private static final String FRAGMENT = "{\"a\" : [1, \"]}\\\"\", {}], \"\\u00e4\u00e4\ud834\udd1e\":null}";
+
+    private static final String EXPECTED = "[1," + FRAGMENT + ", [] ,\"x\"]";
+
+    private static List<RawRenderer> renderers() {
+        return Arrays.<RawRenderer>asList(
+            new JsonRenderer(), new JsonStreamingRenderer(new StringWriter()), new JsonUtf8Renderer(0)
+        );
+    }
+
+    /**
+     * Tests that fragments are copied verbatim.
+     */
+    @Test
+    public void verbatim() {
+        for (RawRenderer renderer : renderers()) {
+            renderer.list().value(1L);
+            renderer.raw(FRAGMENT).raw(" [] ").value("x").endList();
+            Assert.assertEquals(EXPECTED, renderer.build().toString());
+        }
+        final JsonUtf8Renderer utf8 = new JsonUtf8Renderer();
+        utf8.list();
+        utf8.raw(FRAGMENT).endList();
+        Assert.assertArrayEquals(("[" + FRAGMENT + "]").getBytes(Charsets.UTF_8), utf8.toByteArray());
+    }
+
+    /**
+     * Tests that both constructors copy plain values verbatim.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void plain() throws JSONException {
+        final String expected = "[" + FRAGMENT + ",[ 1 ]]";
+        Assert.assertEquals(expected, JSON.newConstructor().array().plain(FRAGMENT).plain("[ 1 ]").endArray().toString());
+        Assert.assertEquals(expected, 
+            JSON.asJSONConstructor(new JSONStringer()).array().plain(FRAGMENT).plain("[ 1 ]").endArray().toString());
+    }
+
+    /**
+     * Tests that {@code "</"} is escaped like in rendered strings.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void escaped() throws JSONException {
+        final String fragment = "{\"a\":\"</script><</\"}";
+        final String expected = "[{\"a\":\"<\\/script><<\\/\"},\"<\\/\"]";
+        for (RawRenderer renderer : renderers()) {
+            renderer.list();
+            renderer.raw(fragment).value("</").endList();
+            Assert.assertEquals(expected, renderer.build().toString());
+        }
+        Assert.assertEquals(expected, JSON.newConstructor().array().plain(fragment).value("</").endArray().toString());
+        Assert.assertEquals(expected, JSON.asJSONConstructor(new JSONStringer()).array().plain(fragment).
+            value("</").endArray().toString());
+    }
+
+    /**
+     * Tests that validating constructors reject syntax errors inside of objects and arrays.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void validating() throws JSONException {
+        final String invalid = "{\"a\" 1}";
+        Assert.assertEquals("[" + invalid + "]", JSON.newConstructor().array().plain(invalid).endArray().toString());
+        try {
+            JSON.newConstructor(true).array().plain(invalid);
+            Assert.fail("Expected JSONException");
+        } catch (JSONException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+        try {
+            JSON.asJSONConstructor(new JSONStringer(), true).array().plain(invalid);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+        Assert.assertEquals("[{\"a\":1}]",
+            JSON.newConstructor(true).array().plain("{\"a\" : 1}").endArray().toString());
+        Assert.assertEquals("[{\"a\":1}]",
+            JSON.asJSONConstructor(new JSONStringer(), true).array().plain("{\"a\" : 1}").endArray().toString());
+    }
+
+    /**
+     * Tests that invalid fragments leave no partial output in validating mode.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void validatingAtomic() throws JSONException {
+        final JSONConstructor constructor = JSON.newConstructor(true).array();
+        try {
+            constructor.plain("[1,{\"a\" 1}]");
+            Assert.fail("Expected JSONException");
+        } catch (JSONException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+        Assert.assertEquals("[[2,null]]", constructor.plain("[2,null]").endArray().toString());
+    }
+
+    /**
+     * Tests that structurally invalid fragments are rejected.
+     */
+    @Test
+    public void invalid() {
+        for (String json : Arrays.asList("", " ", "{", "[}", "{]", "{\"a\":\"}", "{}}", "{} {}", "1 2", "tru", "[1]x")) {
+            for (RawRenderer renderer : renderers()) {
+                try {
+                    renderer.list();
+                    renderer.raw(json);
+                    Assert.fail("Expected IllegalArgumentException for '" + json + "' using " + renderer);
+                } catch (IllegalArgumentException e) {
+                    Assert.assertTrue(e.getMessage(), e.getMessage().contains("at character"));
+                }
+            }
+        }
+        try {
+            JSON.newConstructor().plain("{]");
+            Assert.fail("Expected JSONException");
+        } catch (JSONException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("at character"));
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link JSONDiff}.
+ */
+public final class JSONDiffTest {
+
+    private static final String OLD = "{\"same\":1,\"changed\":\"a\",\"deleted\":true,\"list\":[1,2]," +
+        "\"nested\":{\"same\":1,\"changed\":2,\"deleted\":3},\"type\":1,\"nulled\":5}";
+
+    private static final String NEW = "{\"same\":1,\"changed\":\"b\",\"inserted\":false,\"list\":[1,3]," +
+        "\"nested\":{\"same\":1,\"changed\":4,\"inserted\":5},\"type\":\"1\",\"nulled\":null}";
+
+    /**
+     * Asserts that both json values are structurally equal.
+     *
+     * @param expected the expected json text
+     * @param actual the actual value
+     * @throws JSONException if expected is no valid json
+     */
+    static void assertJSONEquals(String expected, Object actual) throws JSONException {
+        final Object parsed = expected.startsWith("[") ? new JSONArray(expected) : new JSONObject(expected);
+        Assert.assertTrue("expected " + expected + " but was " + actual, deepEquals(parsed, actual));
+    }
+
+    private static boolean deepEquals(Object first, Object second) throws JSONException {
+        if (first instanceof JSONObject && second instanceof JSONObject) {
+            final JSONObject left = (JSONObject) first;
+            final JSONObject right = (JSONObject) second;
+            if (left.length() != right.length()) return false;
+            final Iterator<?> keys = left.keys();
+            while (keys.hasNext()) {
+                final String key = keys.next().toString();
+                if (!right.has(key) || !deepEquals(left.get(key), right.get(key))) return false;
+            }
+            return true;
+        } else if (first instanceof JSONArray && second instanceof JSONArray) {
+            final JSONArray left = (JSONArray) first;
+            final JSONArray right = (JSONArray) second;
+            if (left.length() != right.length()) return false;
+            for (int i = 0; i < left.length(); i++) {
+                if (!deepEquals(left.get(i), right.get(i))) return false;
+            }
+            return true;
+        } else if (first instanceof Number && second instanceof Number) {
+            return ((Number) first).doubleValue() == ((Number) second).doubleValue();
+        } else {
+            return first.equals(second);
+        }
+    }
+
+    private JSONDiff diff() throws JSONException {
+        return new JSONDiff(new JSONObject(OLD), new JSONObject(NEW));
+    }
+
+    /**
+     * Tests {@link JSONDiff#getResult()}.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void result() throws JSONException {
+        final JSONDiffResult result = diff().getResult();
+        assertJSONEquals("{\"inserted\":false,\"nested\":{\"inserted\":5}}", result.getInserted());
+        assertJSONEquals("{\"changed\":{\"old\":\"a\",\"new\":\"b\"},\"list\":{\"old\":[1,2],\"new\":[1,3]}," +
+            "\"type\":{\"old\":1,\"new\":\"1\"},\"nested\":{\"changed\":{\"old\":2,\"new\":4}}}", result.getUpdated());
+        assertJSONEquals("{\"deleted\":true,\"nulled\":5,\"nested\":{\"deleted\":3}}", result.getDeleted());
+        Assert.assertEquals(9, result.getChanges());
+        Assert.assertFalse(result.isEmpty());
+    }
+
+    /**
+     * Tests {@link JSONDiff#getResult()} on equal objects.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void resultEqual() throws JSONException {
+        final JSONDiffResult result = new JSONDiff(new JSONObject(OLD), new JSONObject(OLD)).getResult();
+        Assert.assertTrue(result.isEmpty());
+        Assert.assertEquals(0, result.getInserted().length());
+        Assert.assertEquals(0, result.getUpdated().length());
+        Assert.assertEquals(0, result.getDeleted().length());
+    }
+
+    /**
+     * Tests that {@link JSONDiff#getResult()} matches {@link JSONDiff#getInserted()},
+     * {@link JSONDiff#getUpdatedExt()} and {@link JSONDiff#getDeleted()}.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void resultMatchesSinglePasses() throws JSONException {
+        final JSONDiffResult result = diff().getResult();
+        assertJSONEquals(diff().getInserted().toString(), result.getInserted());
+        assertJSONEquals(diff().getUpdatedExt().toString(), result.getUpdated());
+        assertJSONEquals(diff().getDeleted().toString(), result.getDeleted());
+    }
+
+    /**
+     * Tests {@link JSONDiff#getDifferences()}.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void differences() throws JSONException {
+        assertJSONEquals("{\"changed\":\"b\",\"inserted\":false,\"list\":[1,3],\"type\":\"1\"," +
+            "\"nested\":{\"changed\":4,\"inserted\":5,\"deleted\":3},\"deleted\":true,\"nulled\":5}",
+            diff().getDifferences());
+    }
+
+    /**
+     * Tests {@link JSONDiff#getDeleted()}.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void deleted() throws JSONException {
+        assertJSONEquals("{\"deleted\":true,\"nulled\":5,\"nested\":{\"deleted\":3}}", diff().getDeleted());
+    }
+
+    /**
+     * Tests {@link JSONDiff#getInserted()}.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void inserted() throws JSONException {
+        assertJSONEquals("{\"inserted\":false,\"nested\":{\"inserted\":5}}", diff().getInserted());
+    }
+
+    /**
+     * Tests that the shared {@link JSONDiffEngine} can be reused after a failed comparison.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void engineReusable() throws JSONException {
+        final JSONDiffEngine engine = JSONDiffEngine.getDefault();
+        try {
+            engine.getResult(new JSONObject(OLD), null);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(9, engine.getResult(new JSONObject(OLD), new JSONObject(NEW)).getChanges());
+    }
+
+    private static JSONObject large(int size, boolean modified) throws JSONException {
+        final JSONObject object = new JSONObject();
+        for (int i = 0; i < size; i++) {
+            if (modified && i % 7 == 0) continue;
+            object.put("key" + i, modified && i % 5 == 0 ? "changed" + i : Integer.valueOf(i));
+            object.put("nested" + i, new JSONObject(modified && i % 3 == 0 ? NEW : OLD));
+        }
+        final JSONArray array = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            array.put(modified && i == size - 1 ? -1 : i);
+        }
+        object.put("array", array);
+        if (modified) object.put("inserted", true);
+        return object;
+    }
+
+    /**
+     * Tests that a parallel {@link JSONDiffEngine} produces the same results as
+     * the sequential one.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void parallel() throws JSONException {
+        final JSONObject oldJson = large(100, false);
+        final JSONObject newJson = large(100, true);
+        final JSONDiffEngine sequential = JSONDiffEngine.getDefault();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final JSONDiffEngine engine = sequential.parallel(executor, 8);
+            final JSONDiffResult expected = sequential.getResult(oldJson, newJson);
+            final JSONDiffResult actual = engine.getResult(oldJson, newJson);
+            Assert.assertEquals(expected.getChanges(), actual.getChanges());
+            assertJSONEquals(expected.getInserted().toString(), actual.getInserted());
+            assertJSONEquals(expected.getUpdated().toString(), actual.getUpdated());
+            assertJSONEquals(expected.getDeleted().toString(), actual.getDeleted());
+            assertJSONEquals(sequential.getDifferences(oldJson, newJson).toString(),
+                engine.getDifferences(oldJson, newJson));
+            assertJSONEquals(sequential.getUpdatedExt(oldJson, newJson).toString(),
+                engine.getUpdatedExt(oldJson, newJson));
+            Assert.assertTrue(engine.getResult(oldJson, large(100, false)).isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link JSONHashCache}.
+ */
+public final class JSONHashCacheTest {
+
+    private static final String JSON = "{\"a\":1,\"b\":[1,2.5,\"c\",true,null,{\"d\":{}}],\"e\":{\"f\":\"g\"}}";
+
+    private long hash(String json) throws JSONException {
+        return new JSONHashCache().hash(new JSONObject(json));
+    }
+
+    /**
+     * Tests that structurally equal objects have equal hashes.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void equal() throws JSONException {
+        Assert.assertEquals(hash(JSON), hash(JSON));
+        Assert.assertEquals(hash("{\"a\":1,\"b\":2}"), hash("{\"b\":2,\"a\":1}"));
+        Assert.assertEquals(hash("{\"a\":1}"), hash("{\"a\":1,\"b\":null}"));
+    }
+
+    /**
+     * Tests that different objects have different hashes.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void different() throws JSONException {
+        Assert.assertFalse(hash("{\"a\":1}") == hash("{\"a\":2}"));
+        Assert.assertFalse(hash("{\"a\":1}") == hash("{\"b\":1}"));
+        Assert.assertFalse(hash("{\"a\":1}") == hash("{\"a\":\"1\"}"));
+        Assert.assertFalse(hash("{\"a\":[1,2]}") == hash("{\"a\":[2,1]}"));
+        Assert.assertFalse(hash("{\"a\":[]}") == hash("{\"a\":{}}"));
+        Assert.assertFalse(hash("{\"a\":{\"b\":1},\"c\":2}") == hash("{\"a\":{\"c\":2},\"b\":1}"));
+        final JSONHashCache cache = new JSONHashCache();
+        Assert.assertFalse(cache.hash(Integer.valueOf(1)) == cache.hash(Long.valueOf(1)));
+    }
+
+    /**
+     * Tests that hashes are cached per instance until invalidated.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void cached() throws JSONException {
+        final JSONHashCache cache = new JSONHashCache();
+        final JSONObject object = new JSONObject(JSON);
+        final long hash = cache.hash(object);
+        Assert.assertTrue(cache.size() > 1);
+        object.put("a", 2);
+        Assert.assertEquals(hash, cache.hash(object));
+        cache.invalidate(object);
+        Assert.assertFalse(hash == cache.hash(object));
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that an engine using hashes produces the same results as the default engine.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void engine() throws JSONException {
+        final JSONObject oldJson = new JSONObject(JSON.replace("\"f\"", "\"x\":[{}],\"f\""));
+        final JSONObject newJson = new JSONObject(JSON.replace("2.5", "3.5"));
+        final JSONDiffEngine plain = JSONDiffEngine.getDefault();
+        final JSONDiffEngine hashed = plain.hashedBy(new JSONHashCache());
+        for (int i = 0; i < 2; i++) {
+            JSONDiffTest.assertJSONEquals(plain.getDifferences(oldJson, newJson).toString(),
+                hashed.getDifferences(oldJson, newJson));
+            JSONDiffTest.assertJSONEquals(plain.getResult(oldJson, newJson).getUpdated().toString(),
+                hashed.getResult(oldJson, newJson).getUpdated());
+            JSONDiffTest.assertJSONEquals(plain.getPatch(oldJson, newJson).toString(),
+                hashed.getPatch(oldJson, newJson));
+        }
+        Assert.assertTrue(hashed.getResult(oldJson, new JSONObject(oldJson.toString())).isEmpty());
+        Assert.assertEquals(0, hashed.getPatch(new JSONObject(JSON), new JSONObject(JSON)).length());
+        Assert.assertEquals(new JSONArray().length(), hashed.getDifferences(newJson, newJson).length());
+    }
+
+}
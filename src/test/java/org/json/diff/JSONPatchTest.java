@@ -0,0 +1,239 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link JSONPatch} and {@link JSONDiffEngine#getPatch(JSONObject, JSONObject)}.
+ */
+public final class JSONPatchTest {
+
+    private static final String OLD = "{\"same\":1,\"changed\":\"a\",\"deleted\":true,\"list\":[1,2,{\"a\":1}]," +
+        "\"nested\":{\"same\":1,\"changed\":2,\"deleted\":3},\"type\":1,\"nulled\":5,\"a/b~c\":1," +
+        "\"grown\":[1],\"shrunk\":[1,2,3]}";
+
+    private static final String NEW = "{\"same\":1,\"changed\":\"b\",\"inserted\":false,\"list\":[1,3,{\"a\":2}]," +
+        "\"nested\":{\"same\":1,\"changed\":4,\"inserted\":5},\"type\":\"1\",\"nulled\":null,\"a/b~c\":2," +
+        "\"grown\":[1,2,3],\"shrunk\":[1]}";
+
+    private static final String EXPECTED = "{\"same\":1,\"changed\":\"b\",\"inserted\":false," +
+        "\"list\":[1,3,{\"a\":2}],\"nested\":{\"same\":1,\"changed\":4,\"inserted\":5},\"type\":\"1\"," +
+        "\"a/b~c\":2,\"grown\":[1,2,3],\"shrunk\":[1]}";
+
+    private JSONArray patch() throws JSONException {
+        return new JSONDiff(new JSONObject(OLD), new JSONObject(NEW)).getPatch();
+    }
+
+    private static JSONObject apply(String document, String patch) throws JSONException {
+        final JSONObject object = new JSONObject(document);
+        JSONPatch.apply(object, new JSONArray(patch));
+        return object;
+    }
+
+    /**
+     * Tests that applying a calculated patch to the old object results in the new one.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void roundTrip() throws JSONException {
+        final JSONObject document = new JSONObject(OLD);
+        JSONPatch.apply(document, patch());
+        JSONDiffTest.assertJSONEquals(EXPECTED, document);
+    }
+
+    /**
+     * Tests that changed array elements are patched individually.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void arrayElements() throws JSONException {
+        final String patch = patch().toString();
+        Assert.assertTrue(patch, patch.contains("\"path\":\"/list/1\""));
+        Assert.assertTrue(patch, patch.contains("\"path\":\"/list/2/a\""));
+        Assert.assertTrue(patch, patch.contains("\"path\":\"/grown/-\""));
+        Assert.assertTrue(patch, patch.contains("\"path\":\"/shrunk/1\""));
+        Assert.assertTrue(patch, patch.contains("\"path\":\"/a~1b~0c\""));
+        Assert.assertFalse(patch, patch.contains("\"path\":\"/list\""));
+    }
+
+    /**
+     * Tests that equal objects result in an empty patch.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void equal() throws JSONException {
+        Assert.assertEquals(0, new JSONDiff(new JSONObject(OLD), new JSONObject(OLD)).getPatch().length());
+    }
+
+    /**
+     * Tests {@link JSONPatch#escape(String)} and {@link JSONPatch#unescape(String)}.
+     */
+    @Test
+    public void escape() {
+        Assert.assertEquals("a~1b~0c~01", JSONPatch.escape("a/b~c~1"));
+        Assert.assertEquals("a/b~c~1", JSONPatch.unescape("a~1b~0c~01"));
+        Assert.assertEquals("plain", JSONPatch.escape("plain"));
+    }
+
+    /**
+     * Tests {@link JSONPatch#apply(JSONObject, JSONArray)} on arrays.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void applyArray() throws JSONException {
+        JSONDiffTest.assertJSONEquals("{\"a\":[0,1,2,3]}", apply("{\"a\":[1,3]}",
+            "[{\"op\":\"add\",\"path\":\"/a/0\",\"value\":0},{\"op\":\"add\",\"path\":\"/a/2\",\"value\":2}]"));
+        JSONDiffTest.assertJSONEquals("{\"a\":[1,3]}", apply("{\"a\":[1,2,3]}",
+            "[{\"op\":\"remove\",\"path\":\"/a/1\"}]"));
+        JSONDiffTest.assertJSONEquals("{\"a\":[1,{\"b\":true}]}", apply("{\"a\":[1,{\"b\":false}]}",
+            "[{\"op\":\"replace\",\"path\":\"/a/1/b\",\"value\":true}]"));
+    }
+
+    /**
+     * Tests that {@link JSONPatch#apply(JSONObject, JSONArray)} rejects invalid operations.
+     */
+    @Test
+    public void applyInvalid() {
+        final String[] patches = {
+            "[{\"op\":\"remove\",\"path\":\"/missing\"}]",
+            "[{\"op\":\"replace\",\"path\":\"/missing\",\"value\":1}]",
+            "[{\"op\":\"add\",\"path\":\"/missing/a\",\"value\":1}]",
+            "[{\"op\":\"add\",\"path\":\"/a/3\",\"value\":1}]",
+            "[{\"op\":\"remove\",\"path\":\"/a/01\"}]",
+            "[{\"op\":\"remove\",\"path\":\"/a/-\"}]",
+            "[{\"op\":\"move\",\"path\":\"/a\",\"from\":\"/b\"}]",
+            "[{\"op\":\"remove\",\"path\":\"\"}]"
+        };
+        for (String patch : patches) {
+            try {
+                apply("{\"a\":[1,2]}", patch);
+                Assert.fail("JSONException expected for " + patch);
+            } catch (JSONException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests that inserting into and removing from a large array results in single operations.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void arrayMinimal() throws JSONException {
+        final JSONArray oldArray = new JSONArray();
+        final JSONArray newArray = new JSONArray();
+        newArray.put("head");
+        for (int i = 0; i < 50000; i++) {
+            oldArray.put(i);
+            if (i != 25000) newArray.put(i);
+        }
+        final JSONObject oldJson = new JSONObject().put("array", oldArray);
+        final JSONObject newJson = new JSONObject().put("array", newArray);
+        final JSONArray patch = new JSONDiff(oldJson, newJson).getPatch();
+        JSONDiffTest.assertJSONEquals("[{\"op\":\"add\",\"path\":\"/array/0\",\"value\":\"head\"}," +
+            "{\"op\":\"remove\",\"path\":\"/array/25001\"}]", patch);
+        JSONPatch.apply(oldJson, patch);
+        JSONDiffTest.assertJSONEquals(newJson.toString(), oldJson);
+    }
+
+    /**
+     * Tests {@link JSONDiffEngine#identifiedBy(String)}.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void identifiedBy() throws JSONException {
+        final JSONObject oldJson = new JSONObject("{\"items\":[{\"id\":1,\"v\":1},{\"id\":2,\"v\":2}," +
+            "{\"id\":3,\"v\":3}]}");
+        final JSONObject newJson = new JSONObject("{\"items\":[{\"id\":1,\"v\":1},{\"id\":3,\"v\":4}]}");
+        final JSONArray patch = JSONDiffEngine.getDefault().identifiedBy("id").getPatch(oldJson, newJson);
+        JSONDiffTest.assertJSONEquals("[{\"op\":\"remove\",\"path\":\"/items/1\"}," +
+            "{\"op\":\"replace\",\"path\":\"/items/1/v\",\"value\":4}]", patch);
+        JSONPatch.apply(oldJson, patch);
+        JSONDiffTest.assertJSONEquals(newJson.toString(), oldJson);
+    }
+
+    /**
+     * Tests {@link JSONDiffEngine#identifiedBy(String)} with reordered objects,
+     * which are removed and added again.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void identifiedByReordered() throws JSONException {
+        final JSONObject oldJson = new JSONObject("{\"l\":[{\"id\":1},{\"id\":2}]}");
+        final JSONObject newJson = new JSONObject("{\"l\":[{\"id\":2},{\"id\":1,\"v\":9}]}");
+        final JSONArray patch = JSONDiffEngine.getDefault().identifiedBy("id").getPatch(oldJson, newJson);
+        JSONDiffTest.assertJSONEquals("[{\"op\":\"remove\",\"path\":\"/l/0\"}," +
+            "{\"op\":\"add\",\"path\":\"/l/-\",\"value\":{\"id\":1,\"v\":9}}]", patch);
+        JSONPatch.apply(oldJson, patch);
+        JSONDiffTest.assertJSONEquals(newJson.toString(), oldJson);
+    }
+
+    /**
+     * Tests that an object shared by multiple paths is patched at every path.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void shared() throws JSONException {
+        final JSONObject oldJson = new JSONObject("{\"a\":{\"v\":1},\"b\":{\"v\":2}}");
+        final JSONObject child = new JSONObject("{\"v\":3}");
+        final JSONObject newJson = new JSONObject().put("a", child).put("b", child);
+        final JSONArray patch = JSONDiffEngine.getDefault().getPatch(oldJson, newJson);
+        Assert.assertEquals(2, patch.length());
+        JSONPatch.apply(oldJson, patch);
+        JSONDiffTest.assertJSONEquals(newJson.toString(), oldJson);
+    }
+
+    /**
+     * Tests that patches of random arrays transform the old into the new array.
+     *
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void arrayRandom() throws JSONException {
+        final Random random = new Random(42L);
+        for (int run = 0; run < 500; run++) {
+            final JSONArray oldArray = new JSONArray();
+            final JSONArray newArray = new JSONArray();
+            final int length = random.nextInt(run < 480 ? 20 : 3000);
+            for (int i = 0; i < length; i++) {
+                final int value = random.nextInt(10);
+                if (random.nextInt(4) != 0) oldArray.put(value);
+                if (random.nextInt(4) != 0) newArray.put(random.nextInt(8) == 0 ? value + 1 : value);
+            }
+            final JSONObject oldJson = new JSONObject().put("a", oldArray);
+            final JSONObject newJson = new JSONObject().put("a", newArray);
+            JSONPatch.apply(oldJson, JSONDiffEngine.getDefault().getPatch(oldJson, newJson));
+            JSONDiffTest.assertJSONEquals(newJson.toString(), oldJson);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json.diff;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.cosmocode.json.JSON;
+import de.cosmocode.rendering.Renderer;
+
+/**
+ * Tests {@link JSONStreamDiff}.
+ */
+public final class JSONStreamDiffTest {
+
+    private static final String OLD = "{\"a/b~c\":1,\"changed\":\"a\",\"deleted\":true,\"grown\":[1]," +
+        "\"list\":[1,2,{\"a\":1}],\"nested\":{\"changed\":2,\"deleted\":[3],\"same\":1},\"nulled\":5," +
+        "\"same\":{\"x\":[1,{}]},\"shrunk\":[1,2,3],\"type\":1}";
+
+    private static final String NEW = "{\"a/b~c\":2,\"changed\":\"b\",\"grown\":[1,2,{\"x\":[]}]," +
+        "\"inserted\":{\"y\":null},\"list\":[1,3,{\"a\":2}],\"nested\":{\"changed\":4,\"inserted\":5,\"same\":1}," +
+        "\"nulled\":null,\"same\":{\"x\":[1,{}]},\"shrunk\":[1],\"type\":\"1\"}";
+
+    private static JSONArray diff(String oldJson, String newJson) throws IOException, JSONException {
+        final Renderer renderer = JSON.newRenderer();
+        JSONStreamDiff.diff(new StringReader(oldJson), new StringReader(newJson), renderer);
+        return new JSONArray(renderer.build().toString());
+    }
+
+    /**
+     * Tests that applying the streamed patch to the old object results in the new one.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void roundTrip() throws IOException, JSONException {
+        final JSONObject document = new JSONObject(OLD);
+        JSONPatch.apply(document, diff(OLD, NEW));
+        final JSONObject expected = new JSONObject(NEW);
+        expected.remove("nulled");
+        JSONDiffTest.assertJSONEquals(expected.toString(), document);
+    }
+
+    /**
+     * Tests that the streamed patch matches {@link JSONDiffEngine#getPatch(JSONObject, JSONObject)}
+     * if no array changes its length.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void matchesEngine() throws IOException, JSONException {
+        final String oldJson = "{\"a\":1,\"b\":{\"c\":[1,2],\"d\":true},\"e\":\"f\"}";
+        final String newJson = "{\"a\":2,\"b\":{\"c\":[1,3],\"g\":false},\"h\":\"f\"}";
+        final JSONArray expected = JSONDiffEngine.getDefault().getPatch(new JSONObject(oldJson),
+            new JSONObject(newJson));
+        final JSONArray actual = diff(oldJson, newJson);
+        Assert.assertEquals(expected.length(), actual.length());
+        for (int i = 0; i < expected.length(); i++) {
+            Assert.assertTrue(actual.toString(), actual.toString().contains(expected.getJSONObject(i).toString()));
+        }
+    }
+
+    /**
+     * Tests that equal documents result in an empty patch.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException should not happen
+     */
+    @Test
+    public void equal() throws IOException, JSONException {
+        Assert.assertEquals(0, diff(OLD, OLD).length());
+    }
+
+    /**
+     * Tests that unsorted keys are rejected.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException expected
+     */
+    @Test(expected = JSONException.class)
+    public void unsorted() throws IOException, JSONException {
+        diff("{\"b\":1,\"a\":2}", "{\"a\":2,\"b\":1}");
+    }
+
+    /**
+     * Tests that non-object documents are rejected.
+     *
+     * @throws IOException should not happen
+     * @throws JSONException expected
+     */
+    @Test(expected = JSONException.class)
+    public void array() throws IOException, JSONException {
+        diff("[]", "{}");
+    }
+
+}